@@ -0,0 +1,92 @@
+/**
+ * AiOpponentBenchmark.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * How long the hard bot thinks about one shot on a 10x10 board (the Monte Carlo sampling
+ * on the "ai" pool, see AiOpponent) with the server's time budget. The grids are taken
+ * from real games at the opening, the middle (some ships sunk, hits still open) and late
+ * in the game. SampleTime, so the output has the p99 per position.
+ *
+ *   mvn -Pbench package
+ *   java -jar target/benchmarks.jar AiOpponentBenchmark
+ *   java -jar target/benchmarks.jar AiOpponentBenchmark -jvmArgs -Dbattleship.ai-samples=8000
+ *
+ * main() plays whole games per difficulty against random fleets, shots to sink them:
+ *   java -cp target/benchmarks.jar battleship.AiOpponentBenchmark [games=200]
+ */
+
+package battleship;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AiOpponentBenchmark {
+
+    @Param({"0", "25", "50"})
+    public int shots; // fired before the measured one
+
+    private AiOpponent ai;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ai = new AiOpponent(AiOpponent.Difficulty.HARD, Rules.CLASSIC);
+        // Position from a medium game, so there are open hits to follow up
+        play(new AiOpponent(AiOpponent.Difficulty.MEDIUM, Rules.CLASSIC), ai, new Random(42), shots);
+    }
+
+    @Benchmark
+    public int hardMove() {
+        long now = System.nanoTime();
+        return ai.target(now, now + AiOpponent.BUDGET_NANOS, random);
+    }
+
+    // Lets `player` shoot at a random fleet, what it learns is also written into `copy`.
+    // Returns the shots taken (stops after `limit` or when the fleet is sunk).
+    static int play(AiOpponent player, AiOpponent copy, Random random, int limit) {
+        Rules rules = Rules.CLASSIC;
+        Board board = BoardBenchmark.newBoard(rules, rules.randomFleet(random));
+        SplittableRandom choices = new SplittableRandom(random.nextLong());
+        int shots = 0;
+        while (shots < limit && !board.fleetSunk()) {
+            long now = System.nanoTime();
+            int cell = player.target(now, now + AiOpponent.BUDGET_NANOS, choices);
+            int result = board.fire(cell / rules.size, cell % rules.size);
+            shots++;
+            for (AiOpponent ai : copy == null ? new AiOpponent[]{player} : new AiOpponent[]{player, copy}) {
+                ai.grid[cell] = result == Board.MISS ? AiOpponent.MISS : AiOpponent.HIT;
+                if (result == Board.SUNK) ai.sunk(cell, board.lastSunkLength());
+            }
+        }
+        return shots;
+    }
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        System.out.printf("%-8s %10s %8s %8s %12s%n", "bot", "games", "avg", "worst", "ms per game");
+        for (AiOpponent.Difficulty difficulty : AiOpponent.Difficulty.values()) {
+            Random random = new Random(7);
+            long total = 0, worst = 0, start = System.nanoTime();
+            for (int g = 0; g < games; g++) {
+                int shots = play(new AiOpponent(difficulty, Rules.CLASSIC), null, random, Integer.MAX_VALUE);
+                total += shots;
+                worst = Math.max(worst, shots);
+            }
+            System.out.printf("%-8s %10d %8.1f %8d %12.2f%n", difficulty, games, (double) total / games, worst,
+                    (System.nanoTime() - start) / 1e6 / games);
+        }
+        System.exit(0); // the ai pool threads
+    }
+}
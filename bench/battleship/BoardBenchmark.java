@@ -0,0 +1,105 @@
+/**
+ * BoardBenchmark.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * Cost of a shot as the board grows: fire() on a 10x10 BitBoard and on 100x100 and
+ * 1000x1000 SparseBoards, every cell once in random order. When the board is used up a
+ * new one is made and the fleet placed again, so that cost is spread over the shots.
+ * The fleet is size / 2 ships of 5, 4, 3, 2 and 1 (the classic fleet on 10x10).
+ *
+ *   mvn -Pbench package
+ *   java -jar target/benchmarks.jar BoardBenchmark -prof gc
+ *
+ * main() measures the heap of a board per size, empty and after every cell was shot:
+ *   java -cp target/benchmarks.jar battleship.BoardBenchmark
+ */
+
+package battleship;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BoardBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    private Rules rules;
+    private int[][] fleet;
+    private int[] order;   // every cell once, shuffled
+    private int next;
+    private Board board;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        rules = rules(size);
+        fleet = rules.randomFleet(random);
+        order = new int[size * size];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = order[i]; order[i] = order[j]; order[j] = t;
+        }
+        board = newBoard(rules, fleet);
+    }
+
+    @Benchmark
+    public int fire() {
+        if (next == order.length) { board = newBoard(rules, fleet); next = 0; }
+        int cell = order[next++];
+        return board.fire(cell / size, cell % size);
+    }
+
+    static Rules rules(int size) {
+        if (size == BitBoard.SIZE) return Rules.CLASSIC;
+        int[] fleet = new int[size / 2];
+        for (int i = 0; i < fleet.length; i++) fleet[i] = 5 - i % 5;
+        return Rules.of(size, fleet);
+    }
+
+    static Board newBoard(Rules rules, int[][] fleet) {
+        Board board = Board.create(rules);
+        for (int s = 0; s < fleet.length; s++) board.placeShip(fleet[s][0], fleet[s][1], rules.fleet[s], fleet[s][2] == 1);
+        return board;
+    }
+
+    // Heap per board: many boards at once, so the per object overhead is in the average
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        System.out.printf("%-10s %8s %14s %14s %14s%n", "board", "ships", "empty", "all shot", "byte[] grid");
+        for (int size : new int[]{10, 100, 1000}) {
+            Rules rules = rules(size);
+            int[][] fleet = rules.randomFleet(random);
+            int count = size == 1000 ? 50 : 1000;
+            Board[] boards = new Board[count];
+            long before = usedHeap();
+            for (int i = 0; i < count; i++) boards[i] = newBoard(rules, fleet);
+            long empty = (usedHeap() - before) / count;
+            for (Board board : boards) {
+                for (int r = 0; r < size; r++) for (int c = 0; c < size; c++) board.fire(r, c);
+            }
+            long shot = (usedHeap() - before) / count;
+            System.out.printf("%-10s %8d %,12d B %,12d B %,12d B%n",
+                    size + "x" + size, rules.fleet.length, empty, shot, (long) size * size);
+            if (!boards[0].fleetSunk()) System.out.println("  fleet not sunk?");
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * CommandBenchmark.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * JMH benchmarks for the command path of a connection: decoding text lines and binary
+ * frames into a Command, and a whole ClientHandler.onLine() (logging, decoding and
+ * dispatch) for a typical in-game line. The command log is written to a temp file.
+ *
+ *   mvn -Pbench package
+ *   java -jar target/benchmarks.jar CommandBenchmark -prof gc
+ */
+
+package battleship;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandBenchmark {
+
+    @Param({"FIRE:B,5", "PLACE_SHIP:A,0,V", "LOGIN:player1@secret", "CHALLENGE:player2"})
+    public String line;
+
+    private byte[] text;
+    private byte[] frame;
+    private final CommandDecoder.Command command = new CommandDecoder.Command();
+    private BattleShipServer.ClientHandler handler;
+    private File logFile;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        text = line.getBytes(StandardCharsets.US_ASCII);
+        byte[] framed = BinaryProtocol.encodeCommand(line);
+        frame = java.util.Arrays.copyOfRange(framed, 2, framed.length); // without the length prefix
+        handler = new BattleShipServer.ClientHandler(new GameSessionBenchmark.NullConnection());
+        // The command log goes to a temp file (set before Log is first used)
+        try {
+            logFile = File.createTempFile("bench", ".log");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        System.setProperty("battleship.log-file", logFile.getPath());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        logFile.delete();
+    }
+
+    @Benchmark
+    public CommandDecoder.Command decodeText() {
+        CommandDecoder.decode(text, 0, text.length, command);
+        return command;
+    }
+
+    @Benchmark
+    public CommandDecoder.Command decodeBinary() {
+        BinaryProtocol.decodeCommand(frame, 0, frame.length, command);
+        return command;
+    }
+
+    // What the connection engine calls per received line. A guest without a game and an
+    // empty user database, so every command is rejected cheaply and the per-line overhead shows.
+    @Benchmark
+    public void onLine() {
+        handler.onLine(text, 0, text.length);
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * GameSessionBenchmark.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * JMH benchmarks for the game hot paths: placing a fleet (GameSession.placeShip ship by
+ * ship, or GameSession.placeFleet all at once) and taking shots (GameSession.processMove), in the text and binary protocol. The players
+ * are ClientHandlers on a NullConnection, so only the game logic and the reply encoding
+ * are measured, not the network. journal=on also appends every move to a MatchJournal
+ * in a temporary directory.
+ *
+ *   mvn -Pbench package
+ *   java -jar target/benchmarks.jar GameSessionBenchmark -prof gc
+ */
+
+package battleship;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GameSessionBenchmark {
+
+    // Fleet of each player: {row, col, vertical}. Player 2's last ship sits on J,9 so a
+    // row by row shooter sinks it with its very last shot and a match is 199 moves long.
+    private static final int[][] FLEET_1 = {{0, 0, 0}, {2, 0, 0}, {4, 0, 0}, {6, 0, 0}, {8, 0, 0}};
+    private static final int[][] FLEET_2 = {{0, 0, 1}, {0, 2, 1}, {0, 4, 1}, {0, 6, 1}, {9, 9, 0}};
+    private static final int[] FLAT_1 = flat(FLEET_1), FLAT_2 = flat(FLEET_2);
+    private static final int MOVES = 2 * BitBoard.SIZE * BitBoard.SIZE;
+
+    @Param({"text", "binary"})
+    public String protocol;
+
+    @Param({"off", "on"})
+    public String journal;
+    private Path journalDir;
+
+    private BattleShipServer.ClientHandler player1, player2;
+    private NullConnection connection1, connection2;
+    private BattleShipServer.GameSession session;
+    private int move;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (journal.equals("on")) {
+            journalDir = Files.createTempDirectory("session-bench");
+            MatchJournal.SERVER = MatchJournal.openAt(journalDir, 64 << 20, 0);
+        }
+        connection1 = new NullConnection();
+        connection2 = new NullConnection();
+        player1 = new BattleShipServer.ClientHandler(connection1);
+        player2 = new BattleShipServer.ClientHandler(connection2);
+        if (protocol.equals("binary")) {
+            NullConnection.quietly(() -> {
+                byte[] proto = BinaryProtocol.HANDSHAKE.getBytes(StandardCharsets.US_ASCII);
+                player1.onLine(proto, 0, proto.length);
+                player2.onLine(proto, 0, proto.length);
+            });
+        }
+        session = newMatch();
+    }
+
+    private BattleShipServer.GameSession newMatch() {
+        BattleShipServer.GameSession s = new BattleShipServer.GameSession(player1, player2);
+        for (int i = 0; i < FLEET_1.length; i++) {
+            s.placeShip(player1, FLEET_1[i][0], FLEET_1[i][1], FLEET_1[i][2] == 1);
+            s.placeShip(player2, FLEET_2[i][0], FLEET_2[i][1], FLEET_2[i][2] == 1);
+        }
+        return s;
+    }
+
+    // A new session and both fleets, 10 placeShip calls
+    @Benchmark
+    @OperationsPerInvocation(10)
+    public BattleShipServer.GameSession placeFleet() {
+        return newMatch();
+    }
+
+    // The same with one PLACE_FLEET per player (validated on a fresh board, then swapped in)
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public BattleShipServer.GameSession placeFleetAtomic() {
+        BattleShipServer.GameSession s = new BattleShipServer.GameSession(player1, player2);
+        s.placeFleet(player1, FLAT_1, 0);
+        s.placeFleet(player2, FLAT_2, 0);
+        return s;
+    }
+
+    private static int[] flat(int[][] fleet) {
+        int[] flat = new int[fleet.length * 3];
+        for (int i = 0; i < fleet.length; i++) System.arraycopy(fleet[i], 0, flat, i * 3, 3);
+        return flat;
+    }
+
+    // One shot; both players fire row by row, a new match starts once the board is used up
+    @Benchmark
+    public void processMove() {
+        if (move == MOVES) {
+            session = newMatch();
+            move = 0;
+        }
+        int shot = move++;
+        int cell = shot / 2;
+        session.processMove(shot % 2 == 0 ? player1 : player2, cell / BitBoard.SIZE, cell % BitBoard.SIZE);
+    }
+
+    @TearDown(Level.Trial)
+    public void check() throws IOException {
+        if (connection1.sent == 0 || connection2.sent == 0) throw new IllegalStateException("no replies sent");
+        if (journalDir != null) MatchJournalBenchmark.delete(journalDir);
+    }
+
+
+    // NULL CONNECTION -> Swallows everything the server sends, only counts the bytes
+    static final class NullConnection implements ConnectionEngine.Connection {
+        long sent;
+
+        @Override public void send(String line) { sent += line.length() + 1; }
+        @Override public void sendBytes(byte[] data) { sent += data.length; }
+        @Override public void useBinaryFraming() { }
+        @Override public void close() { }
+        @Override public String remoteAddress() { return "bench"; }
+        @Override public int pendingBytes() { return 0; }
+
+        // Runs code that logs to System.out without printing anything
+        static void quietly(Runnable code) {
+            java.io.PrintStream out = System.out;
+            System.setOut(new java.io.PrintStream(java.io.OutputStream.nullOutputStream()));
+            try { code.run(); } finally { System.setOut(out); }
+        }
+    }
+}
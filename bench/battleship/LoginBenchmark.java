@@ -0,0 +1,85 @@
+/**
+ * LoginBenchmark.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * Measures UserDatabase.checkLogin throughput with a large user base and many threads,
+ * next to the old implementation (synchronized ArrayList.contains) for comparison.
+ *
+ * Run from the project root:
+ *   mvn -Pbench package
+ *   java -cp target/benchmarks.jar battleship.LoginBenchmark [users=1000000] [threads=8] [seconds=5]
+ */
+
+package battleship;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LoginBenchmark {
+
+    interface Login { boolean check(String user, String pass); }
+
+    public static void main(String[] args) throws Exception {
+        int userCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        // Users file in a temp directory so the real users.txt is never touched
+        File file = File.createTempFile("users-bench", ".txt");
+        file.deleteOnExit();
+        new File(file.getPath() + ".journal").deleteOnExit();
+        String[] names = new String[userCount];
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(file))) {
+            for (int i = 0; i < userCount; i++) {
+                names[i] = "user" + i;
+                bw.write(names[i] + ":pw" + i);
+                bw.newLine();
+            }
+        }
+        String[] passwords = new String[userCount];
+        for (int i = 0; i < userCount; i++) passwords[i] = "pw" + i;
+
+        System.setProperty("battleship.users", file.getPath());
+        long start = System.nanoTime();
+        BattleShipServer.UserDatabase.loadUsers();
+        System.out.printf("Loaded %d users in %d ms%n", BattleShipServer.UserDatabase.size(), (System.nanoTime() - start) / 1_000_000);
+
+        System.out.printf("%nIndexed UserDatabase, %d threads, %d s:%n", threads, seconds);
+        run(BattleShipServer.UserDatabase::checkLogin, names, passwords, threads, seconds);
+
+        // The previous implementation: linear contains() under one class-wide lock
+        ArrayList<String> legacy = new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++) legacy.add(names[i] + ":" + passwords[i]);
+        Object lock = new Object();
+        System.out.printf("%nLegacy ArrayList scan, %d threads, %d s:%n", threads, Math.min(seconds, 2));
+        run((u, p) -> { synchronized (lock) { return legacy.contains(u + ":" + p); } },
+                names, passwords, threads, Math.min(seconds, 2));
+    }
+
+    static void run(Login login, String[] names, String[] passwords, int threads, int seconds) throws InterruptedException {
+        LongAdder ops = new LongAdder();
+        LongAdder failures = new LongAdder();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long done = 0;
+                while (System.nanoTime() < deadline) {
+                    int i = random.nextInt(names.length);
+                    if (!login.check(names[i], passwords[i])) failures.increment();
+                    done++;
+                }
+                ops.add(done);
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) worker.join();
+        System.out.printf("  %,d logins, %,.0f logins/s, %d failed%n", ops.sum(), ops.sum() / (double) seconds, failures.sum());
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * MatchJournalBenchmark.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * JMH benchmarks for the MatchJournal append path: shot() is what processMove pays per
+ * move, place() what placeShip pays. The journal lives in a temporary directory with
+ * small segments, so segment rolls are part of the measurement. sharedShot() has four
+ * threads shooting into one journal, like the game shards do.
+ *
+ *   mvn -Pbench package
+ *   java -jar target/benchmarks.jar MatchJournalBenchmark -prof gc
+ *
+ * main() writes a directory of played-looking games for JournalScan to chew on:
+ *   java -cp target/benchmarks.jar battleship.MatchJournalBenchmark <dir> [games=1000000]
+ *   java -cp target/benchmarks.jar battleship.JournalScan --dir=<dir>
+ */
+
+package battleship;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MatchJournalBenchmark {
+
+    private Path dir;
+    private MatchJournal journal;
+    private int game, cell;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("journal-bench");
+        journal = MatchJournal.openAt(dir, 16 << 20, 0);
+        game = journal.start("alice", "bob");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        delete(dir);
+    }
+
+    @Benchmark
+    public void shot() {
+        cell = (cell + 1) % 100;
+        journal.shot(game, (cell & 1) == 0, (cell & 3) == 0, cell / 10, cell % 10);
+    }
+
+    @Benchmark
+    public void place() {
+        cell = (cell + 1) % 100;
+        journal.place(game, (cell & 1) == 0, cell % 5, cell / 10, cell % 10, (cell & 2) == 0);
+    }
+
+    // One journal for all threads of a benchmark
+    @State(Scope.Benchmark)
+    public static class Shared {
+        Path dir;
+        MatchJournal journal;
+        int game;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            dir = Files.createTempDirectory("journal-bench-shared");
+            journal = MatchJournal.openAt(dir, 16 << 20, 0);
+            game = journal.start("alice", "bob");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            delete(dir);
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void sharedShot(Shared shared) {
+        cell = (cell + 1) % 100;
+        shared.journal.shot(shared.game, (cell & 1) == 0, (cell & 3) == 0, cell / 10, cell % 10);
+    }
+
+    static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+        }
+    }
+
+    // Random players, fleets and shots until one fleet is gone, like LoadGenerator bots
+    public static void main(String[] args) throws IOException {
+        Path dir = Paths.get(args.length > 0 ? args[0] : "matches-bench");
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        System.setProperty("battleship.log-level", "warn");
+        MatchJournal journal = MatchJournal.openAt(dir, 64 << 20, 0);
+        Random random = new Random(42);
+        int[] order = new int[100];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+
+        long start = System.nanoTime(), records = 0;
+        for (int g = 0; g < games; g++) {
+            int id = journal.start("bot" + random.nextInt(1000), "bot" + random.nextInt(1000));
+            Board[] boards = {new BitBoard(), new BitBoard()};
+            for (int p = 0; p < 2; p++) {
+                int[][] fleet = Rules.CLASSIC.randomFleet(random);
+                for (int s = 0; s < fleet.length; s++) {
+                    boards[p].placeShip(fleet[s][0], fleet[s][1], Rules.CLASSIC.fleet[s], fleet[s][2] == 1);
+                    journal.place(id, p == 1, s, fleet[s][0], fleet[s][1], fleet[s][2] == 1);
+                }
+            }
+            records += 11;
+            for (int i = order.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int t = order[i]; order[i] = order[j]; order[j] = t;
+            }
+            int winner = 0;
+            for (int shot = 0; shot < 200 && winner == 0; shot++) {
+                int p = shot & 1, cell = order[((shot >> 1) + p * 37) % 100];
+                Board target = boards[1 - p];
+                int result = target.fire(cell / 10, cell % 10);
+                if (result == Board.ALREADY_FIRED) continue;
+                journal.shot(id, p == 1, result != Board.MISS, cell / 10, cell % 10);
+                records++;
+                if (target.fleetSunk()) winner = p + 1;
+            }
+            journal.end(id, winner, "Fleet sunk", 60_000 + random.nextInt(240_000));
+            records++;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%,d games, %,d records in %.2f s (%,.0f records/s, %.0f ns per record)%n",
+                games, records, seconds, records / seconds, seconds * 1e9 / records);
+        System.exit(0);
+    }
+}
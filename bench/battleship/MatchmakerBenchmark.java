@@ -0,0 +1,46 @@
+/**
+ * MatchmakerBenchmark.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * Measures how many quick matches the Matchmaker can create per second: N players send
+ * QUICKPLAY (joinQueue) and one matchmaking round pairs them all, each pair getting a
+ * GameSession, its shard, its clock and the MATCHED / GAME_START messages. The players
+ * are handlers on null connections, so no sockets are involved.
+ *
+ * Run from the project root:
+ *   mvn -Pbench package
+ *   java -cp target/benchmarks.jar battleship.MatchmakerBenchmark [players=100000] [runs=5]
+ *   (add -Dbattleship.rating-bucket=200 to pair by rating band)
+ */
+
+package battleship;
+
+public class MatchmakerBenchmark {
+
+    public static void main(String[] args) {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        System.setProperty("battleship.log-level", "warn");
+        GameEngine.start();
+
+        for (int run = 1; run <= runs; run++) {
+            Matchmaker matchmaker = new Matchmaker(); // no thread, we run the round ourselves
+            BattleShipServer.ClientHandler[] handlers = new BattleShipServer.ClientHandler[players];
+            for (int i = 0; i < players; i++) handlers[i] = new BattleShipServer.ClientHandler(new GameSessionBenchmark.NullConnection());
+
+            long start = System.nanoTime();
+            for (BattleShipServer.ClientHandler handler : handlers) handler.joinQueue(matchmaker);
+            long queued = System.nanoTime();
+            matchmaker.round(queued);
+            long paired = System.nanoTime();
+
+            int matches = (players - matchmaker.waiting()) / 2;
+            System.out.printf("Run %d: %,d players queued in %d ms, %,d matches created in %d ms -> %,.0f matches/s%n",
+                    run, players, (queued - start) / 1_000_000, matches, (paired - queued) / 1_000_000,
+                    matches / ((paired - start) / 1e9));
+        }
+    }
+}
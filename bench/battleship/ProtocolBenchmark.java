@@ -0,0 +1,133 @@
+/**
+ * ProtocolBenchmark.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * Compares the text protocol with the binary one (BinaryProtocol):
+ *   1. bytes on the wire for a whole scripted match, both directions
+ *   2. server side parse time of FIRE / PLACE_SHIP commands
+ *   3. producing the HIT / ENEMY_HIT replies (text line vs. ready made frame)
+ *
+ * Run from the project root:
+ *   mvn -Pbench package
+ *   java -cp target/benchmarks.jar battleship.ProtocolBenchmark
+ */
+
+package battleship;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProtocolBenchmark {
+    static volatile Object sink;
+
+    public static void main(String[] args) {
+        // --- 1. Bytes per match ---
+        List<String> commands = new ArrayList<>();
+        List<String> replies = new ArrayList<>();
+        commands.add("LOGIN:alice@secret"); replies.add("LOGIN_SUCCESS");
+        commands.add("CHALLENGE:bob"); replies.add("CHALLENGE_FROM:alice");
+        commands.add("CHALLENGE_ACCEPTED:alice"); replies.add("GAME_START:You go first"); replies.add("GAME_START:Opponent goes first");
+        for (int i = 0; i < 10; i++) { commands.add("PLACE_SHIP:" + (char) ('A' + i % 5) + ",0,H"); replies.add("SHIP_PLACED"); }
+        replies.add("GAME_STARTED:Your turn"); replies.add("GAME_STARTED:Enemy turn");
+        for (int r = 0; r < 10; r++) {
+            for (int c = 0; c < 10; c++) {
+                String cell = (char) ('A' + r) + "," + c;
+                commands.add("FIRE:" + cell);
+                replies.add((c % 3 == 0 ? "HIT:" : "MISS:") + cell);
+                replies.add((c % 3 == 0 ? "ENEMY_HIT:" : "ENEMY_MISSED:") + cell);
+            }
+        }
+        replies.add("GAME_OVER:YOU_WON"); replies.add("GAME_OVER:YOU_LOST");
+
+        long textUp = 0, binaryUp = 0, textDown = 0, binaryDown = 0;
+        for (String c : commands) {
+            textUp += c.getBytes(StandardCharsets.UTF_8).length + 1;
+            binaryUp += BinaryProtocol.encodeCommand(c).length;
+        }
+        for (String r : replies) {
+            textDown += r.getBytes(StandardCharsets.UTF_8).length + 1;
+            binaryDown += BinaryProtocol.encodeReply(r).length;
+        }
+        System.out.printf("Match of %d commands / %d replies:%n", commands.size(), replies.size());
+        System.out.printf("  client -> server: text %,d bytes, binary %,d bytes (%.0f%%)%n", textUp, binaryUp, 100.0 * binaryUp / textUp);
+        System.out.printf("  server -> client: text %,d bytes, binary %,d bytes (%.0f%%)%n", textDown, binaryDown, 100.0 * binaryDown / textDown);
+
+        // --- 2. Parse time ---
+        byte[][] textFire = new byte[100][];
+        byte[][] binaryFire = new byte[100][];
+        byte[][] textPlace = new byte[100][];
+        byte[][] binaryPlace = new byte[100][];
+        for (int i = 0; i < 100; i++) {
+            String cell = (char) ('A' + i / 10) + "," + i % 10;
+            textFire[i] = ("FIRE:" + cell).getBytes(StandardCharsets.US_ASCII);
+            binaryFire[i] = BinaryProtocol.encodeCommand("FIRE:" + cell);
+            textPlace[i] = ("PLACE_SHIP:" + cell + ",V").getBytes(StandardCharsets.US_ASCII);
+            binaryPlace[i] = BinaryProtocol.encodeCommand("PLACE_SHIP:" + cell + ",V");
+        }
+        CommandDecoder.Command cmd = new CommandDecoder.Command();
+        int rounds = 20_000_000;
+        for (int warmup = 0; warmup < 2; warmup++) {
+            long start = System.nanoTime();
+            long check = 0;
+            for (int i = 0; i < rounds; i++) {
+                byte[] line = textFire[i % 100];
+                CommandDecoder.decode(line, 0, line.length, cmd);
+                check += cmd.row + cmd.col;
+            }
+            double textNs = (System.nanoTime() - start) / (double) rounds;
+
+            start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                byte[] frame = binaryFire[i % 100];
+                BinaryProtocol.decodeCommand(frame, 2, frame.length - 2, cmd);
+                check += cmd.row + cmd.col;
+            }
+            double binaryNs = (System.nanoTime() - start) / (double) rounds;
+
+            start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                byte[] line = textPlace[i % 100];
+                CommandDecoder.decode(line, 0, line.length, cmd);
+                check += cmd.row + cmd.col;
+            }
+            double textPlaceNs = (System.nanoTime() - start) / (double) rounds;
+
+            start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                byte[] frame = binaryPlace[i % 100];
+                BinaryProtocol.decodeCommand(frame, 2, frame.length - 2, cmd);
+                check += cmd.row + cmd.col;
+            }
+            double binaryPlaceNs = (System.nanoTime() - start) / (double) rounds;
+            sink = check;
+            if (warmup == 1) {
+                System.out.printf("%nDecode FIRE:       text %.1f ns, binary %.1f ns%n", textNs, binaryNs);
+                System.out.printf("Decode PLACE_SHIP: text %.1f ns, binary %.1f ns%n", textPlaceNs, binaryPlaceNs);
+            }
+        }
+
+        // --- 3. Reply encoding (what reaches the outbound queue) ---
+        for (int warmup = 0; warmup < 2; warmup++) {
+            long start = System.nanoTime();
+            long bytes = 0;
+            for (int i = 0; i < rounds; i++) {
+                int r = i % 10, c = (i / 10) % 10;
+                String line = "ENEMY_HIT:" + (char) ('A' + r) + "," + c; // old per move string building
+                bytes += line.getBytes(StandardCharsets.UTF_8).length + 1;
+            }
+            double textNs = (System.nanoTime() - start) / (double) rounds;
+
+            start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                bytes += BinaryProtocol.cellFrame(BinaryProtocol.Reply.ENEMY_HIT, i % 10, (i / 10) % 10).length;
+            }
+            double binaryNs = (System.nanoTime() - start) / (double) rounds;
+            sink = bytes;
+            if (warmup == 1) System.out.printf("Encode ENEMY_HIT:  text %.1f ns, binary %.1f ns%n", textNs, binaryNs);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * RenderBenchmark.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * JMH benchmark for the client's board rendering (BattleShipClient.renderBoards, the
+ * body of displayBoards) on an empty and on a mid-game board.
+ *
+ *   mvn -Pbench package
+ *   java -jar target/benchmarks.jar RenderBenchmark -prof gc
+ */
+
+package battleship;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RenderBenchmark {
+
+    @Param({"empty", "midgame"})
+    public String board;
+
+    private final StringBuilder screen = new StringBuilder(8192);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BattleShipClient.newGame();
+        if (board.equals("midgame")) {
+            // Some hits and misses on both grids
+            for (int i = 0; i < 40; i++) {
+                String cell = (char) ('A' + i % 10) + "," + (i * 3) % 10;
+                BattleShipClient.updateGrid(i % 2 == 0, cell, i % 3 == 0 ? 'X' : 'O');
+            }
+        }
+    }
+
+    @Benchmark
+    public int renderBoards() {
+        screen.setLength(0);
+        BattleShipClient.renderBoards(screen);
+        return screen.length();
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * TimerWheelBenchmark.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * JMH benchmarks for the TimerWheel with 100k active deadlines (1 s to 5 min, like the
+ * idle, turn and challenge clocks). Every expired timeout schedules a new one, so the
+ * wheel stays at the same size. The wheel runs on a simulated clock: tick() is one
+ * 100 ms tick of the timer thread, scheduleAndCancel() what a handler pays per timeout.
+ * The setup prints the heap used per deadline.
+ *
+ *   mvn -Pbench package
+ *   java -jar target/benchmarks.jar TimerWheelBenchmark -prof gc
+ */
+
+package battleship;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TimerWheelBenchmark {
+
+    @Param({"100000"})
+    public int deadlines;
+
+    private long now;
+    private TimerWheel wheel;
+    private final Random random = new Random(42);
+    private final Runnable rearm = this::rearm;
+    private final Runnable nothing = () -> {};
+    private int operations = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long before = usedHeap();
+        wheel = new TimerWheel(TimeUnit.MILLISECONDS.toNanos(100), 512, () -> now);
+        for (int i = 0; i < deadlines; i++) rearm();
+        now = wheel.nextTickTime();
+        wheel.tick(now); // moves them into the wheel
+        long after = usedHeap();
+        System.out.printf("%n%d deadlines in the wheel, %.1f bytes each%n", wheel.size(), (after - before) / (double) deadlines);
+    }
+
+    private void rearm() {
+        wheel.schedule(rearm, 1000 + random.nextInt(299_000), TimeUnit.MILLISECONDS);
+    }
+
+    // One tick of the timer thread: about deadlines / 1500 expire and re-arm per tick
+    @Benchmark
+    public int tick() {
+        now = wheel.nextTickTime();
+        wheel.tick(now);
+        return wheel.size();
+    }
+
+    // A timeout that is answered before it expires (a CHALLENGE_ACCEPTED, a re-armed clock)
+    @Benchmark
+    public boolean scheduleAndCancel() {
+        TimerWheel.Timeout timeout = wheel.schedule(nothing, 30, TimeUnit.SECONDS);
+        boolean cancelled = timeout.cancel();
+        if ((++operations & 1023) == 0) tick(); // drains the queues, part of the cost
+        return cancelled;
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
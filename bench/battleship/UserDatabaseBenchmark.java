@@ -0,0 +1,92 @@
+/**
+ * UserDatabaseBenchmark.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * JMH benchmarks for UserDatabase.checkLogin (hit and miss) with a preloaded user base
+ * and for UserDatabase.register, which includes the round trip through the journal
+ * writer. The users file lives in a temp directory, the real users.txt is never touched.
+ *
+ *   mvn -Pbench package
+ *   java -jar target/benchmarks.jar UserDatabaseBenchmark -prof gc
+ */
+
+package battleship;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserDatabaseBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Users {
+        @Param({"1000000"})
+        public int users;
+
+        // never: measures the database + journal hand-off, not the disk
+        @Param({"never", "interval"})
+        public String fsync;
+
+        String[] names, passwords;
+        File file;
+
+        @Setup(Level.Trial)
+        public void load() throws IOException {
+            file = File.createTempFile("users-jmh", ".txt");
+            names = new String[users];
+            passwords = new String[users];
+            try (BufferedWriter bw = new BufferedWriter(new FileWriter(file))) {
+                for (int i = 0; i < users; i++) {
+                    names[i] = "user" + i;
+                    passwords[i] = "pw" + i;
+                    bw.write(names[i] + ":" + passwords[i]);
+                    bw.newLine();
+                }
+            }
+            System.setProperty("battleship.users", file.getPath());
+            System.setProperty("battleship.fsync", fsync);
+            BattleShipServer.UserDatabase.loadUsers();
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() {
+            file.delete();
+            new File(file.getPath() + ".journal").delete();
+        }
+    }
+
+    // Per thread position in the user list and counter for fresh registrations
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+        int registered;
+        final String prefix = "new" + Thread.currentThread().getId() + "_";
+    }
+
+    @Benchmark
+    public boolean checkLogin(Users db, Cursor cursor) {
+        int i = cursor.next;
+        cursor.next = i + 7919 < db.users ? i + 7919 : (i + 7919) % db.users; // jump around the table
+        return BattleShipServer.UserDatabase.checkLogin(db.names[i], db.passwords[i]);
+    }
+
+    @Benchmark
+    public boolean checkLoginUnknownUser(Users db) {
+        return BattleShipServer.UserDatabase.checkLogin("nobody", "pw");
+    }
+
+    // Each call stores a new user and waits for the journal to acknowledge it
+    @Benchmark
+    public boolean register(Users db, Cursor cursor) {
+        return BattleShipServer.UserDatabase.register(cursor.prefix + cursor.registered++, "secret");
+    }
+}
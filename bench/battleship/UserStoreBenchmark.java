@@ -0,0 +1,123 @@
+/**
+ * UserStoreBenchmark.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * Measures the persistence side of the UserDatabase:
+ *   1. startup: loading a multi-million user file (old BufferedReader + ArrayList load
+ *      vs. the memory-mapped snapshot + journal recovery)
+ *   2. a registration burst from many threads (old open/write/close per registration
+ *      under one lock vs. the group-committing journal, for every fsync policy)
+ *
+ * Run from the project root:
+ *   mvn -Pbench package
+ *   java -Xmx4g -cp target/benchmarks.jar battleship.UserStoreBenchmark [users=3000000] [registrations=20000] [threads=32]
+ */
+
+package battleship;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class UserStoreBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int userCount = args.length > 0 ? Integer.parseInt(args[0]) : 3_000_000;
+        int registrations = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+
+        Path dir = Files.createTempDirectory("user-store-bench");
+        Path snapshot = dir.resolve("users.txt");
+        try (BufferedWriter bw = Files.newBufferedWriter(snapshot)) {
+            for (int i = 0; i < userCount; i++) {
+                bw.write("user" + i + ":pw" + i);
+                bw.newLine();
+            }
+        }
+        System.out.printf("Snapshot: %,d users, %,d bytes%n%n", userCount, Files.size(snapshot));
+
+        // --- 1. Startup ---
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            ArrayList<String> legacy = new ArrayList<>();
+            try (BufferedReader br = new BufferedReader(new FileReader(snapshot.toFile()))) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    if (!line.trim().isEmpty()) legacy.add(line);
+                }
+            }
+            long legacyMs = (System.nanoTime() - start) / 1_000_000;
+            legacy = null;
+
+            // Same reader, but building the username index like the server needs
+            start = System.nanoTime();
+            ConcurrentHashMap<String, String> readerIndex = new ConcurrentHashMap<>();
+            try (BufferedReader br = new BufferedReader(new FileReader(snapshot.toFile()))) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    int colon = line.indexOf(':');
+                    if (colon > 0) readerIndex.putIfAbsent(line.substring(0, colon), line.substring(colon + 1));
+                }
+            }
+            long readerIndexMs = (System.nanoTime() - start) / 1_000_000;
+            readerIndex = null;
+
+            start = System.nanoTime();
+            UserJournal journal = new UserJournal(snapshot.toString(), UserJournal.FsyncPolicy.NEVER, 50, Long.MAX_VALUE, Long.MAX_VALUE);
+            ConcurrentHashMap<String, String> index = new ConcurrentHashMap<>((int) journal.estimateRecords());
+            journal.recover(index::putIfAbsent);
+            long mappedMs = (System.nanoTime() - start) / 1_000_000;
+            journal.start();
+            journal.close();
+            System.out.printf("Startup round %d: reader into list %,d ms, reader into index %,d ms, mapped snapshot into presized index %,d ms (%,d users)%n",
+                    round + 1, legacyMs, readerIndexMs, mappedMs, index.size());
+        }
+
+        // --- 2. Registration burst ---
+        System.out.println();
+        Path legacyFile = dir.resolve("legacy-users.txt");
+        Object lock = new Object();
+        burst("legacy open/append/close", registrations, threads, (user, pass) -> {
+            synchronized (lock) {
+                try (BufferedWriter bw = new BufferedWriter(new FileWriter(legacyFile.toFile(), true))) {
+                    bw.write(user + ":" + pass);
+                    bw.newLine();
+                }
+            }
+        });
+        for (UserJournal.FsyncPolicy policy : UserJournal.FsyncPolicy.values()) {
+            Path file = dir.resolve("journal-" + policy + ".txt");
+            UserJournal journal = new UserJournal(file.toString(), policy, 50, Long.MAX_VALUE, Long.MAX_VALUE);
+            journal.recover((u, p) -> {});
+            journal.start();
+            burst("journal fsync=" + policy.name().toLowerCase(), registrations, threads,
+                    (user, pass) -> journal.append(user, pass).join());
+            journal.close();
+        }
+    }
+
+    interface Register { void run(String user, String pass) throws IOException; }
+
+    static void burst(String label, int registrations, int threads, Register register) throws Exception {
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < registrations) {
+                    try { register.run("new" + i, "pw" + i); } catch (IOException e) { throw new UncheckedIOException(e); }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.MINUTES);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-28s %,8d registrations in %6.2f s = %,10.0f /s%n", label, registrations, seconds, registrations / seconds);
+    }
+}
@@ -0,0 +1,401 @@
+/**
+ * AiOpponent.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * PLAY_AI[:easy|medium|hard[:mode]] starts a game against the server itself (medium if
+ * no difficulty is given, mode as in CHALLENGE, boards up to MAX_SIZE). The bot is a
+ * normal ClientHandler on a Connection without a socket: it reads the same replies a
+ * client gets and answers with the same PLACE_FLEET / FIRE lines, so turns, clocks, the
+ * journal and spectators all work as in any other match. It only knows what a player
+ * knows (HIT / MISS / SUNK of its own shots).
+ *
+ *   easy    random cells
+ *   medium  hunt / target: a checkerboard until a hit, then its neighbours along the line
+ *   hard    Monte Carlo probability density: thousands of random fleets that fit what
+ *           is known (misses, sunk ships, hits still to be covered) are counted per cell,
+ *           the bot fires at the cell covered most often
+ *
+ * Moves are worked out on the "ai" fork-join pool, never on a game shard or event loop.
+ * The pool has --ai-threads threads (a quarter of the cores by default), a hard move
+ * stops sampling --ai-budget-us=2000 after the turn began and at most --ai-max-games
+ * run at once. When the pool falls behind, hard moves are made the medium way until
+ * it has caught up, so bots cost a bounded share of the CPU and humans never wait on them.
+ */
+
+package battleship;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class AiOpponent implements ConnectionEngine.Connection {
+
+    static final String NAME_PREFIX = "AI-"; // reserved, nobody may register it
+    static final int MAX_SIZE = 100;
+
+    enum Difficulty {
+        EASY, MEDIUM, HARD;
+
+        final String player = NAME_PREFIX + name().toLowerCase();
+
+        // null -> MEDIUM, unknown -> null
+        static Difficulty parse(String name) {
+            if (name == null) return MEDIUM;
+            for (Difficulty d : values()) if (d.name().equalsIgnoreCase(name.trim())) return d;
+            return null;
+        }
+    }
+
+    private static final int THREADS = Math.max(1, ServerConfig.getInt("ai-threads",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 4)));
+    static final long BUDGET_NANOS = TimeUnit.MICROSECONDS.toNanos(ServerConfig.getInt("ai-budget-us", 2000));
+    private static final int SAMPLES = ServerConfig.getInt("ai-samples", 2000);   // per hard move at most
+    private static final int MAX_GAMES = ServerConfig.getInt("ai-max-games", 1000);
+    private static final int LEAF_SAMPLES = 250;  // fork-join: a task below this samples itself
+    private static final int TRIES = 20;          // random placements per ship before a sample is dropped
+
+    static final ForkJoinPool POOL = new ForkJoinPool(THREADS, pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("ai-" + thread.getPoolIndex());
+        return thread;
+    }, null, false);
+
+    private static final AtomicInteger ACTIVE = new AtomicInteger();
+
+    static boolean isBot(String name) { return name != null && name.startsWith(NAME_PREFIX); }
+
+    // Starts human vs. bot, the human moves first. Returns the error to send, null if it started.
+    static String play(BattleShipServer.ClientHandler human, Difficulty difficulty, Rules rules) {
+        if (rules.size > MAX_SIZE) return "ERROR:AI games go up to " + MAX_SIZE + "x" + MAX_SIZE;
+        // Laid out before the game starts, so a fleet the bot can't place is just refused
+        int[][] layout = rules.randomFleet(ThreadLocalRandom.current());
+        if (layout == null) return "ERROR:No room for that fleet, try fewer or shorter ships";
+        if (ACTIVE.incrementAndGet() > MAX_GAMES) {
+            ACTIVE.decrementAndGet();
+            Metrics.aiRefused.increment();
+            return "ERROR:Too many AI games, try again later";
+        }
+        AiOpponent ai = new AiOpponent(difficulty, rules);
+        ai.layout = layout;
+        ai.handler = new BattleShipServer.ClientHandler(ai, difficulty.player);
+        if (BattleShipServer.ClientHandler.startGame(human, ai.handler, false, rules) != null) {
+            ACTIVE.decrementAndGet();
+            return "ERROR:Finish your game first";
+        }
+        Metrics.aiGames.increment();
+        return null;
+    }
+
+    static void report(Metrics.Report report) {
+        report.add("ai_games_active", ACTIVE.get());
+        report.add("ai_games_total", Metrics.aiGames.sum());
+        report.add("ai_games_refused_total", Metrics.aiRefused.sum());
+        report.add("ai_pool_threads", THREADS);
+        report.add("ai_pool_queued", POOL.getQueuedSubmissionCount());
+        report.add("ai_moves_degraded_total", Metrics.aiDegraded.sum());
+        if (Metrics.aiMoves.count() > 0) report.add("ai_move_latency", Metrics.aiMoves.summary());
+    }
+
+
+    // What the bot knows of the opponent's grid
+    static final byte UNKNOWN = 0, MISS = 1, HIT = 2, SUNK = 3; // HIT: part of a ship still afloat
+
+    private final Difficulty difficulty;
+    private final Rules rules;
+    private final int n;
+    private BattleShipServer.ClientHandler handler;
+
+    // Guarded by `this`. The grid is only changed by replies to the bot's own shot, so a
+    // move being worked out on the pool reads it without a lock.
+    final byte[] grid;
+    final int[] afloat;       // ships not sunk yet, by length
+    private int lastShot = -1;
+    private long turnStarted;
+    private boolean over = false;
+    private int[][] layout; // our fleet, see play()
+
+    AiOpponent(Difficulty difficulty, Rules rules) {
+        this.difficulty = difficulty;
+        this.rules = rules;
+        this.n = rules.size;
+        this.grid = new byte[n * n];
+        this.afloat = new int[n + 1];
+        for (int length : rules.fleet) afloat[length]++;
+    }
+
+
+    // --- Connection: what the server sends the bot ---
+
+    @Override public void send(String line) { onReply(line); }
+    @Override public void sendBytes(byte[] data) { onReply(new String(data, 0, data.length - 1, StandardCharsets.UTF_8)); } // a line with its '\n'
+    @Override public void useBinaryFraming() { }
+    @Override public void close() { }
+    @Override public String remoteAddress() { return "ai"; }
+    @Override public int pendingBytes() { return 0; }
+
+    private synchronized void onReply(String msg) {
+        if (over) return;
+        if (msg.startsWith("GAME_START:")) {
+            POOL.execute(this::placeFleet);
+        } else if (msg.startsWith("HIT:")) {
+            grid[lastShot] = HIT;
+        } else if (msg.startsWith("MISS:")) {
+            grid[lastShot] = MISS;
+        } else if (msg.startsWith("SUNK:")) {
+            sunk(lastShot, Integer.parseInt(msg.substring(5)));
+        } else if (msg.startsWith("ENEMY_HIT:") || msg.startsWith("ENEMY_MISSED:") || msg.equals("GAME_STARTED:Your turn")) {
+            turnStarted = System.nanoTime();
+            POOL.execute(this::move);
+        } else if (msg.startsWith("GAME_OVER")) {
+            over = true;
+            ACTIVE.decrementAndGet();
+        }
+    }
+
+    // Commands go in like a client's lines, one at a time
+    private synchronized void command(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.US_ASCII);
+        handler.onLine(bytes, 0, bytes.length);
+    }
+
+    // The whole fleet in one PLACE_FLEET (the bot's lines never go through the socket limit)
+    private void placeFleet() {
+        StringBuilder line = new StringBuilder("PLACE_FLEET:");
+        for (int[] ship : layout) {
+            if (line.length() > 12) line.append(';');
+            line.append(rules.cell(ship[0], ship[1])).append(',').append(ship[2] == 1 ? 'V' : 'H');
+        }
+        command(line.toString());
+    }
+
+    private void move() {
+        long started;
+        synchronized (this) {
+            if (over) return;
+            started = turnStarted;
+        }
+        int cell = target(started, started + BUDGET_NANOS, new SplittableRandom(ThreadLocalRandom.current().nextLong()));
+        Metrics.aiMoves.record(System.nanoTime() - started);
+        synchronized (this) { lastShot = cell; }
+        command("FIRE:" + rules.cell(cell / n, cell % n));
+    }
+
+    // The shot at cell sank a ship of this length: its cells are the run of hits through it
+    void sunk(int cell, int length) {
+        afloat[length] = Math.max(0, afloat[length] - 1);
+        int row = cell / n, col = cell % n;
+        for (int vertical = 0; vertical < 2; vertical++) {
+            int step = vertical == 1 ? n : 1;
+            for (int k = 0; k < length; k++) { // the last shot is cell k of the ship
+                int r0 = vertical == 1 ? row - k : row, c0 = vertical == 1 ? col : col - k;
+                if (!rules.inBounds(r0, c0) || (vertical == 1 ? r0 + length > n : c0 + length > n)) continue;
+                int first = r0 * n + c0;
+                boolean run = true;
+                for (int i = 0; i < length && run; i++) run = grid[first + i * step] == HIT;
+                if (!run) continue;
+                for (int i = 0; i < length; i++) grid[first + i * step] = SUNK;
+                return;
+            }
+        }
+        grid[cell] = SUNK; // odd layout (ships side by side), at least this cell is done
+    }
+
+
+    // --- Choosing a cell (pool thread) ---
+
+    int target(long started, long deadline, SplittableRandom random) {
+        Difficulty d = difficulty;
+        // The pool is behind (this move waited half its budget or others are queued):
+        // cheap moves until it caught up, so the bots' share of the CPU stays bounded
+        if (d == Difficulty.HARD && (System.nanoTime() - started > BUDGET_NANOS / 2
+                || POOL.getQueuedSubmissionCount() > 4 * THREADS)) {
+            d = Difficulty.MEDIUM;
+            Metrics.aiDegraded.increment();
+        }
+        if (d == Difficulty.HARD) {
+            int cell = densityTarget(deadline, random);
+            if (cell >= 0) return cell;
+        }
+        if (d != Difficulty.EASY) {
+            int cell = huntTarget(random);
+            if (cell >= 0) return cell;
+        }
+        return randomUnknown(random, 1);
+    }
+
+    // A random unknown cell with (row + col) % parity == 0 if there is one left
+    private int randomUnknown(SplittableRandom random, int parity) {
+        for (int i = 0; i < 64; i++) {
+            int cell = random.nextInt(n * n);
+            if (grid[cell] == UNKNOWN && (cell / n + cell % n) % parity == 0) return cell;
+        }
+        int start = random.nextInt(n * n), fallback = -1;
+        for (int i = 0; i < n * n; i++) {
+            int cell = (start + i) % (n * n);
+            if (grid[cell] != UNKNOWN) continue;
+            if ((cell / n + cell % n) % parity == 0) return cell;
+            if (fallback < 0) fallback = cell;
+        }
+        return fallback;
+    }
+
+    // Medium: around open hits (in line first), else a checkerboard spaced by the smallest ship
+    private int huntTarget(SplittableRandom random) {
+        int best = -1, bestScore = 0, ties = 0;
+        for (int cell = 0; cell < grid.length; cell++) {
+            if (grid[cell] != UNKNOWN) continue;
+            int row = cell / n, col = cell % n, score = 0;
+            for (int dir = 0; dir < 4; dir++) {
+                int dr = dir == 0 ? -1 : dir == 1 ? 1 : 0, dc = dir == 2 ? -1 : dir == 3 ? 1 : 0;
+                if (!hitAt(row + dr, col + dc)) continue;
+                score += hitAt(row + 2 * dr, col + 2 * dc) ? 3 : 1; // continues a line of hits
+            }
+            if (score == 0 || score < bestScore) continue;
+            if (score > bestScore) { best = cell; bestScore = score; ties = 1; }
+            else if (random.nextInt(++ties) == 0) best = cell;
+        }
+        if (best >= 0) return best;
+        int smallest = 1;
+        while (smallest < n && afloat[smallest] == 0) smallest++;
+        return randomUnknown(random, smallest);
+    }
+
+    private boolean hitAt(int row, int col) { return rules.inBounds(row, col) && grid[row * n + col] == HIT; }
+
+    // Hard: Monte Carlo over fleets that fit the grid, -1 if none was found in time
+    private int densityTarget(long deadline, SplittableRandom random) {
+        int[] ships = new int[rules.fleet.length];
+        int count = 0;
+        for (int length = n; length > 0; length--) for (int i = 0; i < afloat[length]; i++) ships[count++] = length;
+        ships = Arrays.copyOf(ships, count);
+        int hits = 0;
+        for (byte state : grid) if (state == HIT) hits++;
+        int[] openHits = new int[hits];
+        for (int cell = 0, i = 0; cell < grid.length; cell++) if (grid[cell] == HIT) openHits[i++] = cell;
+
+        int[] counts = POOL.invoke(new Sampler(this, ships, openHits, SAMPLES, deadline, random));
+        if (counts[grid.length] == 0) return -1;
+        int best = -1, ties = 0;
+        for (int cell = 0; cell < grid.length; cell++) {
+            if (grid[cell] != UNKNOWN) continue;
+            if (best < 0 || counts[cell] > counts[best]) { best = cell; ties = 1; }
+            else if (counts[cell] == counts[best] && random.nextInt(++ties) == 0) best = cell;
+        }
+        Metrics.aiSamples.add(counts[grid.length]);
+        return best;
+    }
+
+    // SAMPLER -> counts[cell] = accepted fleets covering the cell, counts[n * n] = accepted
+    // fleets. Splits in halves down to LEAF_SAMPLES, each half with its own random stream.
+    static final class Sampler extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L; // ForkJoinTask is Serializable, never sent anywhere
+        private final AiOpponent ai;
+        private final int[] ships, openHits;
+        private final int samples;
+        private final long deadline;
+        private final SplittableRandom random;
+
+        Sampler(AiOpponent ai, int[] ships, int[] openHits, int samples, long deadline, SplittableRandom random) {
+            this.ai = ai;
+            this.ships = ships;
+            this.openHits = openHits;
+            this.samples = samples;
+            this.deadline = deadline;
+            this.random = random;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (samples > LEAF_SAMPLES) {
+                Sampler left = new Sampler(ai, ships, openHits, samples / 2, deadline, random.split());
+                Sampler right = new Sampler(ai, ships, openHits, samples - samples / 2, deadline, random);
+                left.fork();
+                int[] counts = right.compute();
+                int[] other = left.join();
+                for (int i = 0; i < counts.length; i++) counts[i] += other[i];
+                return counts;
+            }
+            int n = ai.n;
+            byte[] grid = ai.grid;
+            int[] counts = new int[n * n + 1];
+            boolean[] used = new boolean[n * n];
+            int[] cells = new int[n * n];
+            boolean[] placed = new boolean[ships.length];
+            for (int s = 0; s < samples; s++) {
+                if ((s & 31) == 0 && System.nanoTime() > deadline) break;
+                int filled = sample(n, grid, used, cells, placed);
+                if (filled >= 0) {
+                    for (int i = 0; i < filled; i++) if (grid[cells[i]] == UNKNOWN) counts[cells[i]]++;
+                    counts[n * n]++;
+                } else {
+                    filled = ~filled;
+                }
+                for (int i = 0; i < filled; i++) used[cells[i]] = false;
+            }
+            return counts;
+        }
+
+        // One random fleet: first ships through every open hit, then the rest anywhere
+        // allowed. Returns the number of cells written to cells[], or ~that if it failed.
+        private int sample(int n, byte[] grid, boolean[] used, int[] cells, boolean[] placed) {
+            Arrays.fill(placed, false);
+            int filled = 0, left = ships.length;
+            for (int hit : openHits) {
+                if (used[hit]) continue;
+                boolean done = false;
+                for (int t = 0; t < TRIES && !done && left > 0; t++) {
+                    int ship = random.nextInt(ships.length);
+                    if (placed[ship]) continue;
+                    int length = ships[ship];
+                    boolean vertical = random.nextBoolean();
+                    int k = random.nextInt(length); // the hit is cell k of the ship
+                    int row = hit / n - (vertical ? k : 0), col = hit % n - (vertical ? 0 : k);
+                    int put = place(n, grid, used, cells, filled, row, col, length, vertical);
+                    if (put < 0) continue;
+                    filled = put;
+                    placed[ship] = true;
+                    left--;
+                    done = true;
+                }
+                if (!done) return ~filled;
+            }
+            for (int ship = 0; ship < ships.length; ship++) {
+                if (placed[ship]) continue;
+                int length = ships[ship], put = -1;
+                for (int t = 0; t < TRIES && put < 0; t++) {
+                    boolean vertical = random.nextBoolean();
+                    int row = random.nextInt(vertical ? n - length + 1 : n);
+                    int col = random.nextInt(vertical ? n : n - length + 1);
+                    put = place(n, grid, used, cells, filled, row, col, length, vertical);
+                }
+                if (put < 0) return ~filled;
+                filled = put;
+            }
+            return filled;
+        }
+
+        // Puts one ship if it is on the board and crosses no miss, sunk ship or other ship
+        private static int place(int n, byte[] grid, boolean[] used, int[] cells, int filled,
+                                 int row, int col, int length, boolean vertical) {
+            if (row < 0 || col < 0 || (vertical ? row + length > n : col + length > n)) return -1;
+            int step = vertical ? n : 1, first = row * n + col;
+            for (int i = 0, cell = first; i < length; i++, cell += step) {
+                if (used[cell] || grid[cell] == MISS || grid[cell] == SUNK) return -1;
+            }
+            for (int i = 0, cell = first; i < length; i++, cell += step) {
+                used[cell] = true;
+                cells[filled++] = cell;
+            }
+            return filled;
+        }
+    }
+}
@@ -0,0 +1,581 @@
+/**
+ * BattleShipServer.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * The Client application for Battleship. It handles the Command Line Interface (CLI),
+ * reads user input, sends commands to the server, and uses a background thread
+ * to listen for asynchronous updates (like incoming challenges or hits).
+ */
+
+package battleship;
+
+import java.io.*;
+import java.net.*;
+import java.util.Scanner;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class BattleShipClient {
+    private static final String SERVER_IP = "localhost";
+    private static final int SERVER_PORT = 8888;
+
+    // boards for visualization, only drawn up to MAX_GRID rows (bigger ones get a summary)
+    private static final int MAX_GRID = 26;
+    private static char[][] myBoard = new char[10][10];
+    private static char[][] enemyBoard = new char[10][10];
+
+    // Configurations: the classic game unless RULES:<size>:<ships> came before GAME_START
+    private static Rules rules = Rules.CLASSIC;
+    private static Rules nextRules = null;
+    private static final char[] SHIP_SYMBOLS = {'C', 'B', 'K', 'S', 'D'};
+    private static int currentShipIndex = 0;
+    private static int shotsFired = 0, hits = 0, hitsTaken = 0, sunk = 0, lost = 0;
+
+    // Every command goes out as "#<id> <command>" and the server echoes the id on its
+    // answer. Placements wait here until their SHIP_PLACED / FLEET_PLACED (or ERROR), so
+    // the ack is matched to the exact command even when several are in flight.
+    private static int nextRequestId = 1;
+    private static final ConcurrentHashMap<Integer, String> pendingPlacements = new ConcurrentHashMap<>();
+
+    // Binary protocol (--binary): commands are still typed as text and encoded on the way out
+    private static volatile boolean binaryMode = false;
+    private static final CountDownLatch handshakeDone = new CountDownLatch(1);
+
+    // terminal board colors for the ships, sea , hit & miss
+    public static final String RESET = "\u001B[0m";
+    public static final String BLUE = "\u001B[34m";
+    public static final String RED = "\u001B[31m";
+    public static final String GREEN = "\u001B[32m";
+    public static final String WHITE = "\u001B[37m";
+    public static final String YELLOW = "\u001B[33m";
+    public static final String CYAN = "\u001B[36m";
+
+
+    // Usage: java -cp battleship.jar battleship.BattleShipClient [--binary]
+    public static void main(String[] args) {
+        boolean wantBinary = Arrays.asList(args).contains("--binary");
+        printUsageInstructions();
+        initializeGrid(myBoard);
+        initializeGrid(enemyBoard);
+
+        try {
+            Socket socket = new Socket(SERVER_IP, SERVER_PORT);
+            System.out.println(GREEN + ">> Connected to BattleShip Server!" + RESET);
+
+            // Start the background listener thread
+            ServerListener listener = new ServerListener(socket);
+            new Thread(listener).start();
+
+            OutputStream rawOut = socket.getOutputStream();
+            PrintWriter out = new PrintWriter(rawOut, true);
+            Scanner scanner = new Scanner(System.in);
+
+            if (wantBinary) {
+                out.println(BinaryProtocol.HANDSHAKE);
+                if (!handshakeDone.await(3, TimeUnit.SECONDS) || !binaryMode) {
+                    System.out.println(RED + ">> Server refused the binary protocol, staying on text." + RESET);
+                }
+            }
+
+            while (true) {
+                String command = scanner.nextLine();
+                if (!command.startsWith("#") && !command.isEmpty()) {
+                    int id = nextRequestId++;
+                    if (command.startsWith("PLACE_")) pendingPlacements.put(id, command);
+                    command = "#" + id + " " + command;
+                }
+                if (binaryMode) {
+                    byte[] frame = BinaryProtocol.encodeCommand(command);
+                    if (frame == null) { System.out.println(RED + ">> Invalid command" + RESET); continue; }
+                    rawOut.write(frame);
+                    rawOut.flush();
+                } else {
+                    out.println(command);
+                }
+                if (command.endsWith(" LOGOUT")) break;
+            }
+            socket.close(); scanner.close();
+        } catch (IOException e) {
+            System.out.println(RED + "Could not connect to server." + RESET);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // --- HELPER METHODS ---
+
+    private static void printUsageInstructions() {
+        System.out.println(CYAN + "=================================================" + RESET);
+        System.out.println(YELLOW + "          WELCOME TO JACK SPARROW BATTLESHIP GAME 'ARGGGH' " + RESET);
+        System.out.println(CYAN + "=================================================" + RESET);
+        System.out.println("1. " + GREEN + "LOGIN:user@pass" + RESET);
+        System.out.println("2. " + GREEN + "PLAYER_LIST" + RESET);
+        System.out.println("3. " + GREEN + "CHALLENGE:opponent" + RESET + "     (or CHALLENGE:opponent:size[:ships], e.g. CHALLENGE:bob:100:5,5,4,3)");
+        System.out.println("4. " + GREEN + "CHALLENGE_ACCEPTED:opponent" + RESET);
+        System.out.println("5. " + GREEN + "CHALLENGE_DECLINED:opponent" + RESET);
+        System.out.println("6. " + GREEN + "PLACE_SHIP:Row,Col,Dir" + RESET + " (e.g. PLACE_SHIP:A,0,V)");
+        System.out.println("7. " + GREEN + "FIRE:Row,Col" + RESET + "           (e.g. FIRE:B,5, rows by number on big boards: FIRE:120,5)");
+        System.out.println("8. " + GREEN + "QUICKPLAY" + RESET + "              (play the next free player)");
+        System.out.println("9. " + GREEN + "PRESENCE:ON" + RESET + "            (follow who is online, PRESENCE:OFF stops)");
+        System.out.println("10. " + GREEN + "SPECTATE:player" + RESET + "       (watch a match, SPECTATE:OFF stops)");
+        System.out.println("11. " + GREEN + "REPLAY:gameId" + RESET + "         (a finished match, ids come with GAME_ID)");
+        System.out.println("12. " + GREEN + "PLAY_AI" + RESET + "               (play the server, PLAY_AI:easy|medium|hard[:size[:ships]])");
+        System.out.println("13. " + GREEN + "PLACE_FLEET:Row,Col,Dir;..." + RESET + " (every ship at once, e.g. PLACE_FLEET:A,0,H;B,0,H;C,0,H;D,0,H;E,0,H)");
+        System.out.println(CYAN + "=================================================" + RESET);
+    }
+
+    private static void initializeGrid(char[][] grid) {
+        for (char[] row : grid) Arrays.fill(row, '~');
+    }
+
+    // Fresh boards for a new match (GAME_START), sized by the RULES that came before it
+    static void newGame() {
+        rules = nextRules != null ? nextRules : Rules.CLASSIC;
+        nextRules = null;
+        currentShipIndex = 0;
+        shotsFired = hits = hitsTaken = sunk = lost = 0;
+        boolean grid = rules.size <= MAX_GRID;
+        myBoard = grid ? new char[rules.size][rules.size] : null;
+        enemyBoard = grid ? new char[rules.size][rules.size] : null;
+        if (grid) { initializeGrid(myBoard); initializeGrid(enemyBoard); }
+    }
+
+    // "B,5" or "120,5" -> {row, col}, null if it is neither
+    static int[] parseCell(String row, String col) {
+        try {
+            char first = row.charAt(0);
+            int r = row.length() == 1 && first >= 'A' && first <= 'Z' ? first - 'A' : Integer.parseInt(row.trim());
+            return new int[]{r, Integer.parseInt(col.trim())};
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+
+    // Updates the local board with ship letters ONLY when the server confirms the placement
+    // (SHIP_PLACED: one ship, FLEET_PLACED: all of them, in fleet order)
+    private static void commitShips(String placement) {
+        if (placement == null) return;
+        String data = placement.substring(placement.indexOf(':') + 1);
+        for (String ship : data.split(";")) commitShip(ship);
+    }
+
+    private static void commitShip(String placement) {
+        if (currentShipIndex >= rules.fleet.length) return;
+        try {
+            int size = rules.fleet[currentShipIndex];
+            char symbol = SHIP_SYMBOLS[currentShipIndex % SHIP_SYMBOLS.length];
+            currentShipIndex++;
+            if (myBoard == null) return;
+
+            String[] parts = placement.split(",");
+            int[] cell = parseCell(parts[0], parts[1]);
+            String dir = parts[2].toUpperCase();
+
+            for (int i = 0; i < size; i++) {
+                int r = cell[0] + (dir.startsWith("V") ? i : 0);
+                int c = cell[1] + (dir.startsWith("H") ? i : 0);
+                if (rules.inBounds(r, c)) myBoard[r][c] = symbol;
+            }
+        } catch (Exception e) { }
+    }
+
+    static void updateGrid(boolean mine, String coords, char mark) {
+        updateGrid(mine ? myBoard : enemyBoard, coords, mark);
+    }
+
+    private static void updateGrid(char[][] grid, String coords, char mark) {
+        if (grid == null) return;
+        try {
+            String[] parts = coords.split(",");
+            int[] cell = parseCell(parts[0], parts[1]);
+            grid[cell[0]][cell[1]] = mark;
+        } catch (Exception e) { }
+    }
+
+    // Display the board with the colors we initiated above
+    public static void displayBoards() {
+        StringBuilder screen = new StringBuilder(4096);
+        renderBoards(screen);
+        System.out.print(screen);
+        System.out.flush();
+    }
+
+    // Builds the whole screen in one go, so a redraw is a single write to the terminal
+    static void renderBoards(StringBuilder out) {
+        // Clear screen (ANSI)
+        out.append("\033[H\033[2J");
+
+        if (myBoard != null) {
+            int n = rules.size;
+            out.append(YELLOW).append("\n      --- MY FLEET ---").append(" ".repeat(2 * n - 2)).append("--- TARGET GRID ---").append(RESET).append('\n');
+            StringBuilder header = new StringBuilder("   ");
+            for (int j = 0; j < n; j++) header.append(j % 10).append(' ');
+            out.append(header).append("          ").append(header).append('\n');
+
+            for (int i = 0; i < n; i++) {
+                String rowLabel = rules.letterRows() ? String.valueOf((char) ('A' + i)) : String.format("%-2d", i);
+                out.append(rowLabel).append(rules.letterRows() ? "  " : " ");
+                for (int j = 0; j < n; j++) appendCell(out, myBoard[i][j]);
+                out.append("           ");
+                out.append(rowLabel).append(rules.letterRows() ? "  " : " ");
+                for (int j = 0; j < n; j++) appendCell(out, enemyBoard[i][j]);
+                out.append('\n');
+            }
+        } else { // too big to draw: the score so far
+            out.append(YELLOW).append("\n      --- ").append(rules.size).append('x').append(rules.size).append(" BOARD, rows 0-")
+                    .append(rules.size - 1).append(" ---").append(RESET).append('\n');
+            out.append("Shots fired: ").append(shotsFired).append(", hits: ").append(hits).append(", enemy ships sunk: ")
+                    .append(sunk).append('/').append(rules.fleet.length).append('\n');
+            out.append("Hits taken: ").append(hitsTaken).append(", own ships lost: ").append(lost).append('/')
+                    .append(rules.fleet.length).append('\n');
+        }
+
+
+        out.append(CYAN).append("\n-----------------------------------------------------------").append(RESET).append('\n');
+        if (currentShipIndex < rules.fleet.length) {
+            out.append("STATUS: Placing Ships. Next: ").append(GREEN).append(getShipName(currentShipIndex))
+                    .append(" (Size ").append(rules.fleet[currentShipIndex]).append(')').append(RESET).append('\n');
+        } else {
+            out.append("STATUS: Battle Mode! ").append(YELLOW).append("FIRE AT WILL!").append(RESET).append('\n');
+        }
+        out.append(CYAN).append("-----------------------------------------------------------").append(RESET).append('\n');
+        out.append("Your Action > ");
+    }
+
+    private static String getShipName(int index) {
+        if (!rules.classic()) return "Ship " + (index + 1) + " of " + rules.fleet.length;
+        switch(index) {
+            case 0: return "Carrier [C]";
+            case 1: return "Battleship [B]";
+            case 2: return "Cruiser [K]";
+            case 3: return "Submarine [S]";
+            case 4: return "Destroyer [D]";
+            default: return "Unknown";
+        }
+    }
+
+    private static void appendCell(StringBuilder out, char c) {
+        if (c == '~') out.append(BLUE).append("~ ").append(RESET);
+        else if (c == 'X') out.append(RED).append("X ").append(RESET);
+        else if (c == 'O') out.append(WHITE).append("O ").append(RESET);
+        else if (Character.isLetter(c)) out.append(GREEN).append(c).append(' ').append(RESET);
+        else out.append(c).append(' ');
+    }
+
+    // --- WIRE HELPERS (shared with LoadGenerator) ---
+
+    // Text protocol: one '\n' terminated line (read byte-wise, we may switch mid-stream)
+    static String readLine(DataInputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) return line.size() > 0 ? line.toString("UTF-8") : null;
+            if (b != '\r') line.write(b);
+        }
+        return line.toString("UTF-8");
+    }
+
+    // Binary protocol: [u16 length][opcode][payload], turned back into its text line
+    static String readFrame(DataInputStream in) throws IOException {
+        int length;
+        try { length = in.readUnsignedShort(); } catch (EOFException e) { return null; }
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        return BinaryProtocol.decodeReply(frame, 0, length);
+    }
+
+    // PRESENCE -> Who is online: '+' in the lobby, '*' playing. Names seen in a delta since
+    // the last reset are not overwritten by (older) snapshot pages.
+    private static final java.util.Map<String, Character> lobby = new java.util.HashMap<>();
+    private static final java.util.Set<String> updatedSinceReset = new java.util.HashSet<>();
+
+    static void handlePresence(String msg) {
+        if (msg.equals("PRESENCE_RESET")) {
+            lobby.clear();
+            updatedSinceReset.clear();
+            return;
+        }
+        boolean snapshot = msg.startsWith("PRESENCE_SNAPSHOT:");
+        String[] parts = msg.split(":", snapshot ? 3 : 2);
+        String entries = parts[parts.length - 1];
+        StringBuilder changes = new StringBuilder();
+        for (String entry : entries.isEmpty() ? new String[0] : entries.split(",")) {
+            char state = entry.charAt(0);
+            String name = entry.substring(1);
+            if (snapshot) {
+                if (!updatedSinceReset.contains(name)) lobby.put(name, state);
+                continue;
+            }
+            updatedSinceReset.add(name);
+            if (state == '-') lobby.remove(name); else lobby.put(name, state);
+            changes.append(' ').append(entry);
+        }
+        if (snapshot) {
+            String[] page = parts[1].split("/");
+            if (!page[0].equals(page[1])) return; // more pages to come
+        } else if (changes.length() == 0) {
+            return;
+        }
+        long playing = lobby.values().stream().filter(s -> s == '*').count();
+        System.out.println(CYAN + "[lobby] " + lobby.size() + " online, " + playing + " playing" + changes + RESET);
+    }
+
+    // SPECTATOR -> The two grids of a watched match, as sent by the server
+    // ('.' unknown, 'X' hit, 'O' miss, 'S' ship once the game is over)
+    private static char[][] watchBoards = new char[2][100];
+    private static int watchSize = 10;
+    private static Rules replayRules = Rules.CLASSIC;
+    private static String watchedPlayers = "";
+
+    // Grids of size * size cells, kept if they already are
+    private static void watchSize(int size) {
+        if (size == watchSize) return;
+        watchSize = size;
+        watchBoards = new char[2][size * size];
+    }
+
+    private static int watchCell(String coords) {
+        String[] parts = coords.split(",");
+        int[] cell = parseCell(parts[0], parts[1]);
+        return cell[0] * watchSize + cell[1];
+    }
+
+    static void handleWatch(String msg) {
+        if (msg.startsWith("SPECTATING:")) {
+            String[] parts = msg.split(":", 3); // SPECTATING:p1,p2:SETUP|TURN:name
+            watchedPlayers = parts[1];
+            System.out.println(YELLOW + ">> Watching " + parts[1].replace(",", " vs ") + " (" + parts[2] + ")" + RESET);
+            return;
+        }
+        if (msg.startsWith("WATCH_BOARD:")) {
+            int board = msg.charAt(12) - '1';
+            watchSize((int) Math.round(Math.sqrt(msg.length() - 14)));
+            msg.getChars(14, 14 + watchSize * watchSize, watchBoards[board], 0);
+            if (board == 1) displayWatchBoards();
+            return;
+        }
+        if (msg.startsWith("WATCH_OVER:")) {
+            System.out.println(CYAN + ">> Match over, winner: " + msg.substring(11) + RESET);
+            return;
+        }
+        if (msg.startsWith("WATCH_END:")) {
+            System.out.println(RED + ">> No longer watching: " + msg.substring(10) + RESET);
+            return;
+        }
+        if (msg.equals("WATCH:START")) {
+            System.out.println(YELLOW + ">> Fleets placed, the battle begins!" + RESET);
+            return;
+        }
+        String[] parts = msg.split(":"); // WATCH:<1|2>:HIT|MISS:B,5 (player 1 fires at grid 2)
+        watchBoards[parts[1].equals("1") ? 1 : 0][watchCell(parts[3])] = parts[2].equals("HIT") ? 'X' : 'O';
+        displayWatchBoards();
+    }
+
+    private static void displayWatchBoards() {
+        String[] names = watchedPlayers.split(",");
+        StringBuilder out = new StringBuilder(2048);
+        out.append('\n').append(String.format("   %-22s           %s", names[0], names.length > 1 ? names[1] : "")).append('\n');
+        if (watchSize > MAX_GRID) { // a replay of a big board: just the count
+            for (int b = 0; b < 2; b++) {
+                int x = 0, o = 0;
+                for (char c : watchBoards[b]) { if (c == 'X') x++; else if (c == 'O') o++; }
+                out.append(names[Math.min(b, names.length - 1)]).append("'s grid: ").append(x).append(" hits, ").append(o).append(" misses\n");
+            }
+            System.out.print(out);
+            return;
+        }
+        for (int i = 0; i < watchSize; i++) {
+            String rowLabel = watchSize <= Rules.LETTER_ROWS ? (char) ('A' + i) + " " : String.format("%-2d", i);
+            for (int b = 0; b < 2; b++) {
+                out.append(rowLabel).append(' ');
+                for (int j = 0; j < watchSize; j++) {
+                    char c = watchBoards[b][i * watchSize + j];
+                    appendCell(out, c == '.' ? '~' : c);
+                }
+                if (b == 0) out.append("           ");
+            }
+            out.append('\n');
+        }
+        System.out.print(out);
+    }
+
+    // REPLAY -> Rebuilds a finished match on the spectator grids and shows the end result
+    private static final int[] replayShips = new int[2];
+
+    static void handleReplay(String msg) {
+        String[] parts = msg.split(":", 3);
+        if (msg.startsWith("REPLAY:")) { // REPLAY:<id>:p1,p2:<start ms>[:<size>:<ships>]
+            String[] rest = parts[2].split(":", 3);
+            watchedPlayers = rest[0];
+            replayRules = rest.length > 2 ? Rules.parse(rest[2]) : Rules.CLASSIC;
+            if (replayRules == null) replayRules = Rules.CLASSIC;
+            watchSize(replayRules.size);
+            for (char[] board : watchBoards) Arrays.fill(board, '.');
+            Arrays.fill(replayShips, 0);
+            System.out.println(YELLOW + ">> Replay of game " + parts[1] + ": " + rest[0].replace(",", " vs ")
+                    + " (" + new java.util.Date(Long.parseLong(rest[1])) + ")" + RESET);
+        } else if (msg.startsWith("REPLAY_PLACE:")) { // REPLAY_PLACE:<1|2>:A,0,H
+            int board = parts[1].charAt(0) - '1';
+            String[] coords = parts[2].split(",");
+            int first = watchCell(parts[2]);
+            boolean vertical = coords[2].equals("V");
+            int size = replayShips[board] < replayRules.fleet.length ? replayRules.fleet[replayShips[board]++] : 1;
+            for (int i = 0; i < size; i++) watchBoards[board][first + (vertical ? i * watchSize : i)] = 'S';
+        } else if (msg.startsWith("REPLAY_SHOT:")) { // REPLAY_SHOT:<1|2>:HIT|MISS:B,5 (player 1 fires at grid 2)
+            String[] shot = parts[2].split(":");
+            watchBoards[parts[1].equals("1") ? 1 : 0][watchCell(shot[1])] = shot[0].equals("HIT") ? 'X' : 'O';
+        } else { // REPLAY_END:<winner 1|2, 0 = nobody>:<reason>
+            displayWatchBoards();
+            String[] names = watchedPlayers.split(",");
+            int winner = parts[1].charAt(0) - '0';
+            String who = winner > 0 && winner <= names.length ? names[winner - 1] : "nobody";
+            System.out.println(CYAN + ">> Winner: " + who + " (" + parts[2] + ")" + RESET);
+            System.out.print("Your Action > ");
+        }
+    }
+
+    // SERVER LISTENER -> Purpose: Listens for messages from the server on a separate thread
+
+    static class ServerListener implements Runnable {
+        private Socket socket;
+        public ServerListener(Socket socket) { this.socket = socket; }
+
+        @Override
+        public void run() {
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                String msg;
+                while ((msg = binaryMode ? readFrame(in) : readLine(in)) != null) {
+                    if (msg.equals(BinaryProtocol.HANDSHAKE_OK)) {
+                        binaryMode = true; // everything after this line is framed
+                        handshakeDone.countDown();
+                        continue;
+                    }
+                    if (msg.startsWith("ERROR:Unsupported protocol")) handshakeDone.countDown();
+                    handleMessage(msg);
+                }
+            } catch (IOException e) {
+                // fall through
+            }
+            System.out.println("Disconnected.");
+            System.exit(0);
+        }
+
+        private void handleMessage(String msg) {
+            // "#<id> " -> the answer to one of our commands
+            String placement = null;
+            if (msg.startsWith("#")) {
+                int space = msg.indexOf(' ');
+                try {
+                    placement = pendingPlacements.remove(Integer.parseInt(msg.substring(1, space)));
+                } catch (RuntimeException e) { }
+                msg = msg.substring(space + 1);
+            }
+            if (msg.startsWith("SHIP_PLACED") || msg.startsWith("FLEET_PLACED")) {
+                commitShips(placement); displayBoards();
+            }
+            else if (msg.startsWith("GAME_STARTED")) {
+                displayBoards();
+                System.out.println(YELLOW + ">> BATTLE BEGINS! " + msg.split(":")[1] + RESET);
+            }
+            else if (msg.startsWith("GAME_START")) {
+                newGame();
+                displayBoards();
+                System.out.println(YELLOW + ">> SETUP PHASE! " + msg.split(":")[1] + RESET);
+            }
+            else if (msg.startsWith("HIT:")) {
+                shotsFired++; hits++;
+                updateGrid(enemyBoard, msg.split(":")[1], 'X'); displayBoards();
+                System.out.println(GREEN + ">> KABOOM! Direct Hit!" + RESET);
+            }
+            else if (msg.startsWith("MISS:")) {
+                shotsFired++;
+                updateGrid(enemyBoard, msg.split(":")[1], 'O'); displayBoards();
+                System.out.println(WHITE + ">> Splash... missed." + RESET);
+            }
+            else if (msg.startsWith("ENEMY_HIT:")) {
+                hitsTaken++;
+                updateGrid(myBoard, msg.split(":")[1], 'X'); displayBoards();
+                System.out.println(RED + ">> WARNING! We took a hit!" + RESET);
+            }
+            else if (msg.startsWith("ENEMY_MISSED:")) {
+                updateGrid(myBoard, msg.split(":")[1], 'O'); displayBoards();
+            }
+            else if (msg.startsWith("SUNK:")) {
+                sunk++;
+                System.out.println(GREEN + ">> Enemy ship of size " + msg.substring(5) + " sunk! (" + sunk + "/" + rules.fleet.length + ")" + RESET);
+            }
+            else if (msg.startsWith("ENEMY_SUNK:")) {
+                lost++;
+                System.out.println(RED + ">> Our ship of size " + msg.substring(11) + " went down! (" + lost + "/" + rules.fleet.length + ")" + RESET);
+            }
+            else if (msg.startsWith("RULES:")) {
+                nextRules = Rules.parse(msg.substring(6));
+                System.out.println(YELLOW + ">> Mode: " + (nextRules != null ? nextRules.size + "x" + nextRules.size + " board, ships "
+                        + msg.substring(msg.indexOf(':', 6) + 1) : msg.substring(6)) + RESET);
+            }
+            else if (msg.startsWith("CHALLENGE_FROM:")) {
+                String[] parts = msg.split(":", 3); // CHALLENGE_FROM:alice[:<size>:<ships>]
+                System.out.println(YELLOW + "\n>> " + parts[1] + " challenges you" + (parts.length > 2 ? " to a " + parts[2] + " game" : "")
+                        + " (CHALLENGE_ACCEPTED:" + parts[1] + " / CHALLENGE_DECLINED:" + parts[1] + ")" + RESET);
+                System.out.print("Your Action > ");
+            }
+            else if (msg.startsWith("GAME_OVER")) {
+                String[] parts = msg.split(":", 3); // GAME_OVER:YOU_WON[:reason] (timeouts, opponent left)
+                String res = parts[1];
+                System.out.println(CYAN + "\n=================================================" + RESET);
+                if (res.equals("YOU_WON")) {
+                    System.out.println(GREEN + "   VICTORY! " + (parts.length > 2 ? parts[2] + "." : "You sank the enemy fleet!") + RESET);
+                } else {
+                    System.out.println(RED + "   DEFEAT... " + (parts.length > 2 ? parts[2] + "." : "Your fleet is gone.") + RESET);
+                }
+                System.out.println(CYAN + "=================================================" + RESET);
+            }
+            else if (msg.startsWith("PRESENCE")) {
+                handlePresence(msg);
+            }
+            else if (msg.startsWith("SPECTATING:") || msg.startsWith("WATCH")) {
+                handleWatch(msg);
+            }
+            else if (msg.startsWith("REPLAY")) {
+                handleReplay(msg);
+            }
+            else if (msg.startsWith("GAME_ID:")) {
+                System.out.println(CYAN + ">> Match #" + msg.substring(8) + " (REPLAY:" + msg.substring(8) + " to watch it again later)" + RESET);
+            }
+            else if (msg.equals("QUICKPLAY_QUEUED")) {
+                System.out.println(YELLOW + ">> Looking for an opponent..." + RESET);
+            }
+            else if (msg.startsWith("MATCHED:")) {
+                System.out.println(YELLOW + ">> Matched with " + msg.substring(8) + "!" + RESET);
+            }
+            else if (msg.startsWith("CHALLENGE_EXPIRED:")) {
+                System.out.println(YELLOW + ">> Challenge with " + msg.substring(18) + " expired." + RESET);
+                System.out.print("Your Action > ");
+            }
+            else if (msg.startsWith("CHALLENGE_REJECTED")) {
+                System.out.println(RED + ">> " + msg.split(":")[1] + RESET);
+            }
+            else if (msg.startsWith("STATS:")) {
+                System.out.println(CYAN + "  " + msg.substring(6) + RESET);
+            }
+            else if (msg.equals("STATS_END")) {
+                System.out.print("Your Action > ");
+            }
+            else if (msg.startsWith("ERROR")) {
+                System.out.println(RED + ">> " + msg + RESET);
+                System.out.print("Your Action > ");
+            }
+            else {
+                System.out.println("\n[SERVER]: " + msg);
+                System.out.print("Your Action > ");
+            }
+        }
+    }
+}
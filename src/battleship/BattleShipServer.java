@@ -0,0 +1,959 @@
+/**
+ * BattleShipServer.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * This class implements a multi-threaded TCP server for the Battleship game.
+ * It manages client connections, persistent user authentication, and game sessions.
+ * Architecture: Client-Server. Sockets are served by a pluggable ConnectionEngine (NIO
+ * event loops by default), every client gets a ClientHandler that runs its commands.
+ */
+
+package battleship;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class BattleShipServer {
+
+    // Thread-safe map to store active sessions: "Username" -> ClientHandler Object
+    // We use ConcurrentHashMap to prevent concurrency issues when multiple threads access the list.
+    public static ConcurrentHashMap<String, ClientHandler> onlinePlayers = new ConcurrentHashMap<>();
+
+
+    //     Continuously listens for new client connections on the configured port (8888).
+    //     Usage: java -jar battleship.jar [--engine=nio|virtual|thread] [--port=8888] [--loops=N]
+    //            [--cluster=1@host:7001,2@host:7002,... --node=1] (several servers as one, see Cluster)
+    public static void main(String[] args) {
+        ServerConfig.load(args);
+        int port = ServerConfig.port();
+        System.out.println("--- BattleShip Server Started on Port " + port + " ---");
+        System.out.println("Log: " + Log.describe());
+
+        // Load registered users from file into memory
+        UserDatabase.loadUsers();
+        MatchJournal.open();
+
+        try {
+            ConnectionEngine engine = ConnectionEngine.create(ServerConfig.engine(), port, ClientHandler::new);
+            GameEngine.start();
+            Cluster.start();
+            Metrics.start(engine);
+            engine.start();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+
+    // DATABASE -> Manages persistent storage (users.txt) for authentication.
+    // Users are indexed by name in a ConcurrentHashMap: logins are lock-free lookups.
+    // Registrations claim the name in the index and are persisted by the UserJournal,
+    // which batches concurrent registrations into one write.
+    static class UserDatabase {
+        private static ConcurrentHashMap<String, Credential> users = new ConcurrentHashMap<>();
+        private static UserJournal journal;
+
+        // Credential record of one registered user
+        static final class Credential {
+            final String username;
+            final String password;
+
+            Credential(String username, String password) {
+                this.username = username;
+                this.password = password;
+            }
+        }
+
+        static String fileName() { return ServerConfig.get("users", "users.txt"); }
+
+        // Loads the snapshot + journal into the index and starts the journal writer
+        public static synchronized void loadUsers() {
+            long start = System.nanoTime();
+            journal = UserJournal.fromConfig(fileName());
+            ConcurrentHashMap<String, Credential> loaded =
+                    new ConcurrentHashMap<>((int) Math.min(1 << 26, Math.max(1 << 10, journal.estimateRecords())));
+            try {
+                long replayed = journal.recover((user, pass) -> loaded.putIfAbsent(user, new Credential(user, pass)));
+                users = loaded;
+                journal.start();
+                Runtime.getRuntime().addShutdownHook(new Thread(journal::close));
+                System.out.println("Database loaded: " + users.size() + " users (" + replayed + " from journal) in "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms.");
+            } catch (IOException e) {
+                System.out.println("Error loading DB: " + e.getMessage());
+            }
+        }
+
+        static final String ERR_CREDENTIALS = "REGISTER_FAILED:Invalid characters or too long";
+        static final int MAX_CREDENTIAL_BYTES = 255; // the u8 length of binary REGISTER
+
+        // The journal stores "user:pass" lines, the cluster link tab separated fields and
+        // PLAYER_LIST comma separated names, so none of those characters may get in.
+        // Returns ERR_CREDENTIALS or null.
+        static String checkCredentials(String user, String pass) {
+            for (String field : new String[]{user, pass}) {
+                if (field == null || field.isEmpty()) return ERR_CREDENTIALS;
+                if (field.getBytes(StandardCharsets.UTF_8).length > MAX_CREDENTIAL_BYTES) return ERR_CREDENTIALS;
+                for (int i = 0; i < field.length(); i++) {
+                    char c = field.charAt(i);
+                    if (c == ':' || c == '@' || c == ',' || Character.isWhitespace(c) || Character.isISOControl(c)
+                            || Character.isSpaceChar(c)) return ERR_CREDENTIALS;
+                }
+            }
+            return null;
+        }
+
+        // Registers the user if the name is unique and the credentials are valid (see
+        // checkCredentials). Completes with false when the name is taken, the credentials
+        // are not valid or the record could not be written.
+        public static CompletableFuture<Boolean> registerAsync(String user, String pass) {
+            if (checkCredentials(user, pass) != null) return CompletableFuture.completedFuture(false);
+            Credential credential = new Credential(user, pass);
+            // putIfAbsent is atomic, so two clients racing for the same name can't both win
+            if (users.putIfAbsent(user, credential) != null) return CompletableFuture.completedFuture(false);
+            return journal.append(user, pass).thenApply(written -> {
+                if (!written) users.remove(user, credential);
+                return written;
+            });
+        }
+
+        // register the user if the user is unique (waits for the journal)
+        public static boolean register(String user, String pass) {
+            return registerAsync(user, pass).join();
+        }
+
+        // User verification, checks if user and password match in the database
+        public static boolean checkLogin(String user, String pass) {
+            Credential credential = users.get(user);
+            return credential != null && credential.password.equals(pass);
+        }
+
+        public static int size() { return users.size(); }
+    }
+
+    // INNER CLASS: CLIENT HANDLER -> Runs the commands of a single connected client.
+    // The ConnectionEngine feeds it one line at a time, so it never blocks on the socket.
+    static class ClientHandler implements ConnectionEngine.LineHandler {
+        private final ConnectionEngine.Connection connection;
+        private volatile String username = null; // set by the cluster's answer in cluster mode
+        // Set by whichever handler accepts a challenge, read by this one: claimed with a CAS
+        private final AtomicReference<GameSession> currentSession = new AtomicReference<>();
+        private volatile boolean binary = false; // switched by PROTO:BINARY, see BinaryProtocol
+
+        // Timeouts (TimerWheel): a connection with no command for IDLE_NANOS is closed unless
+        // it is playing, a CHALLENGE expires after CHALLENGE_SECONDS
+        private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(ServerConfig.getInt("idle-seconds", 300));
+        private static final int CHALLENGE_SECONDS = ServerConfig.getInt("challenge-seconds", 30);
+        private volatile long lastActive = System.nanoTime();
+        private volatile TimerWheel.Timeout idleClock;
+        private final Runnable idleCheck = this::idleCheck;
+        // Challenges this player received and has not answered: challenger -> expiry and mode
+        private final ConcurrentHashMap<String, Challenge> challenges = new ConcurrentHashMap<>();
+
+        private static final class Challenge {
+            final TimerWheel.Timeout expiry;
+            final Rules rules;
+            Challenge(TimerWheel.Timeout expiry, Rules rules) { this.expiry = expiry; this.rules = rules; }
+        }
+
+        // Quick match (see Matchmaker): set by QUICKPLAY, cleared when a game starts
+        private final AtomicBoolean queued = new AtomicBoolean();
+        volatile long queuedAt;
+        volatile int queuedRating;
+        private volatile boolean closed = false;
+
+        // The match this client is watching (SPECTATE), see Spectators
+        private final AtomicReference<GameSession> watching = new AtomicReference<>();
+
+        // Reused for every line of this connection (lines arrive one at a time)
+        private final CommandDecoder.Command command = new CommandDecoder.Command();
+        private int tag = 0; // request id of the command being dispatched, see reply()
+        private volatile boolean loggingIn = false; // cluster: waiting for the name's home node
+        private int frequentCommands = 0; // FIRE / PLACE_SHIP seen, for log sampling
+
+        // Dispatch table: one action per opcode, indexed by Opcode.ordinal()
+        private interface Action { void run(ClientHandler handler, CommandDecoder.Command cmd); }
+        private static final Action[] ACTIONS = new Action[CommandDecoder.Opcode.values().length];
+        static {
+            ACTIONS[CommandDecoder.Opcode.LOGIN.ordinal()] = ClientHandler::login;
+            ACTIONS[CommandDecoder.Opcode.REGISTER.ordinal()] = ClientHandler::register;
+            ACTIONS[CommandDecoder.Opcode.PLAYER_LIST.ordinal()] = ClientHandler::playerList;
+            ACTIONS[CommandDecoder.Opcode.CHALLENGE.ordinal()] = ClientHandler::challenge;
+            ACTIONS[CommandDecoder.Opcode.CHALLENGE_ACCEPTED.ordinal()] = ClientHandler::challengeAccepted;
+            ACTIONS[CommandDecoder.Opcode.CHALLENGE_DECLINED.ordinal()] = ClientHandler::challengeDeclined;
+            ACTIONS[CommandDecoder.Opcode.PLACE_SHIP.ordinal()] = ClientHandler::placeShip;
+            ACTIONS[CommandDecoder.Opcode.FIRE.ordinal()] = ClientHandler::fire;
+            ACTIONS[CommandDecoder.Opcode.LOGOUT.ordinal()] = (h, cmd) -> h.connection.close();
+            ACTIONS[CommandDecoder.Opcode.PROTO.ordinal()] = ClientHandler::proto;
+            ACTIONS[CommandDecoder.Opcode.STATS.ordinal()] = ClientHandler::stats;
+            ACTIONS[CommandDecoder.Opcode.QUICKPLAY.ordinal()] = ClientHandler::quickplay;
+            ACTIONS[CommandDecoder.Opcode.PRESENCE.ordinal()] = ClientHandler::presence;
+            ACTIONS[CommandDecoder.Opcode.SPECTATE.ordinal()] = ClientHandler::spectate;
+            ACTIONS[CommandDecoder.Opcode.REPLAY.ordinal()] = ClientHandler::replay;
+            ACTIONS[CommandDecoder.Opcode.PLAY_AI.ordinal()] = ClientHandler::playAi;
+            ACTIONS[CommandDecoder.Opcode.PLACE_FLEET.ordinal()] = ClientHandler::placeFleet;
+            ACTIONS[CommandDecoder.Opcode.INVALID.ordinal()] = (h, cmd) -> h.reply(cmd.error);
+        }
+
+        public ClientHandler(ConnectionEngine.Connection connection) {
+            this.connection = connection;
+            if (IDLE_NANOS > 0) idleClock = TimerWheel.SERVER.schedule(idleCheck, IDLE_NANOS, TimeUnit.NANOSECONDS);
+        }
+
+        // A server side player (AiOpponent, or a player of another node in a match here, see
+        // Cluster): logged in as botName, never listed or timed out
+        ClientHandler(ConnectionEngine.Connection connection, String botName) {
+            this.connection = connection;
+            this.username = botName;
+        }
+
+        // Only queues the message, the connection engine writes it out. Safe to call from a
+        // game shard or the timer: a stalled opponent socket can't block the caller.
+        public void sendMessage(String msg) {
+            if (binary) connection.sendBytes(BinaryProtocol.encodeReply(msg));
+            else connection.send(msg);
+        }
+
+        // The answer to this client's current command: carries its request id, if it had one
+        // (see CommandDecoder). Handler thread only, async answers pass the tag themselves.
+        void reply(String msg) { reply(tag, msg); }
+
+        void reply(int tag, String msg) {
+            if (tag == 0) sendMessage(msg);
+            else if (binary) connection.sendBytes(BinaryProtocol.tagged(tag, BinaryProtocol.encodeReply(msg)));
+            else connection.send("#" + tag + " " + msg);
+        }
+
+        // HIT / MISS / ENEMY_HIT / ENEMY_MISSED for one cell: a ready made line or frame
+        public void sendShot(BinaryProtocol.Reply reply, String line, int row, int col) {
+            if (binary) connection.sendBytes(BinaryProtocol.cellFrame(reply, row, col));
+            else connection.send(line);
+        }
+
+        // Same for boards with numbered rows (see Rules.letterRows), nothing precomputed
+        public void sendWideShot(BinaryProtocol.Reply reply, String line, int row, int col) {
+            if (binary) connection.sendBytes(BinaryProtocol.wideCellFrame(reply, row, col));
+            else connection.send(line);
+        }
+
+        // Either of the above as the answer to request `tag` (0 = none, nothing is copied)
+        void replyShot(int tag, BinaryProtocol.Reply reply, String line, int row, int col, boolean wide) {
+            if (tag == 0 && wide) sendWideShot(reply, line, row, col);
+            else if (tag == 0) sendShot(reply, line, row, col);
+            else if (!binary) connection.send("#" + tag + " " + line);
+            else connection.sendBytes(BinaryProtocol.tagged(tag, wide
+                    ? BinaryProtocol.wideCellFrame(reply, row, col) : BinaryProtocol.cellFrame(reply, row, col)));
+        }
+
+        // A message encoded once for many clients (presence, spectators)
+        void sendShared(BinaryProtocol.Shared msg) { connection.sendBytes(binary ? msg.frame : msg.line); }
+
+        void replyShared(int tag, BinaryProtocol.Shared msg) {
+            if (tag == 0) sendShared(msg);
+            else if (binary) connection.sendBytes(BinaryProtocol.tagged(tag, msg.frame));
+            else connection.send("#" + tag + " " + new String(msg.line, 0, msg.line.length - 1, StandardCharsets.UTF_8));
+        }
+
+        int pendingBytes() { return connection.pendingBytes(); }
+
+        boolean isClosed() { return closed; }
+
+        public String getUsername() { return username; }
+
+        @Override
+        public void onLine(byte[] buf, int off, int len) {
+            CommandDecoder.decode(buf, off, len, command);
+            dispatch(command);
+        }
+
+        @Override
+        public void onFrame(byte[] buf, int off, int len) {
+            BinaryProtocol.decodeCommand(buf, off, len, command);
+            dispatch(command);
+        }
+
+        // Row as the player would have typed it: a letter on small boards, else the number
+        private static Object row(int row) { return row < Rules.LETTER_ROWS ? (Object) (char) ('A' + row) : row; }
+
+        // Logs the decoded command, never the raw line: passwords stay out of the log
+        private void logCommand(CommandDecoder.Command cmd) {
+            Log.Level level = Log.Level.INFO;
+            if (cmd.opcode == CommandDecoder.Opcode.FIRE || cmd.opcode == CommandDecoder.Opcode.PLACE_SHIP) {
+                if (frequentCommands++ % Log.SAMPLE != 0) level = Log.Level.DEBUG;
+            }
+            if (!Log.enabled(level)) return;
+            String who = username != null ? username : "guest@" + connection.remoteAddress();
+            switch (cmd.opcode.shape) {
+                case CREDENTIALS: Log.log(level, "{} {} user={}", who, cmd.opcode, cmd.name); break;
+                case NAME:
+                    if (cmd.mode == null) Log.log(level, "{} {} {}", who, cmd.opcode, cmd.name);
+                    else Log.log(level, "{} {} {} mode={}", who, cmd.opcode, cmd.name, cmd.mode);
+                    break;
+                case COORDINATE: Log.log(level, "{} FIRE {},{}", who, row(cmd.row), cmd.col); break;
+                case PLACEMENT:
+                    Log.log(level, cmd.vertical ? "{} PLACE_SHIP {},{},V" : "{} PLACE_SHIP {},{},H", who, row(cmd.row), cmd.col);
+                    break;
+                default:
+                    if (cmd.opcode == CommandDecoder.Opcode.INVALID) Log.log(level, "{} rejected: {}", who, cmd.error);
+                    else Log.log(level, "{} {}", who, cmd.opcode);
+            }
+        }
+
+        private void dispatch(CommandDecoder.Command cmd) {
+            logCommand(cmd);
+            long start = System.nanoTime();
+            lastActive = start;
+            tag = cmd.tag;
+            ACTIONS[cmd.opcode.ordinal()].run(this, cmd);
+            tag = 0;
+            Metrics.recordCommand(cmd.opcode, System.nanoTime() - start);
+        }
+
+        @Override
+        public void onClose() {
+            // Cleanup: Remove user from online list on disconnect
+            Log.log(Log.Level.INFO, "Connection closed: {}", username != null ? username : connection.remoteAddress());
+            closed = true; // the matchmaker and Presence drop us on their next round
+            if (username != null && onlinePlayers.remove(username, this)) {
+                Presence.changed(username);
+                if (Cluster.enabled()) Cluster.release(username);
+            }
+
+            // Nothing may keep waiting on this player: the running game is ended, timers stopped
+            GameSession session = currentSession.get();
+            if (session != null) GameEngine.execute(session, () -> session.playerLeft(this));
+            TimerWheel.Timeout idle = idleClock;
+            if (idle != null) idle.cancel();
+            for (Challenge pending : challenges.values()) pending.expiry.cancel();
+            challenges.clear();
+        }
+
+        // Timer thread. The deadline moves with every command, so the check just re-arms
+        // itself for the remaining time instead of a timer per command.
+        private void idleCheck() {
+            long idle = System.nanoTime() - lastActive;
+            GameSession session = currentSession.get();
+            if (idle < IDLE_NANOS || (session != null && !session.isOver())) { // in a game the turn clock decides
+                long delay = idle < IDLE_NANOS ? IDLE_NANOS - idle : IDLE_NANOS;
+                idleClock = TimerWheel.SERVER.schedule(idleCheck, delay, TimeUnit.NANOSECONDS);
+                return;
+            }
+            Metrics.idleTimeouts.increment();
+            Log.log(Log.Level.INFO, "Idle timeout: {}", username != null ? username : connection.remoteAddress());
+            sendMessage("ERROR:Idle timeout");
+            connection.close();
+        }
+
+        // --- Protocol negotiation: PROTO:BINARY switches this client to binary frames ---
+        private void proto(CommandDecoder.Command cmd) {
+            if (binary || !cmd.name.equalsIgnoreCase("BINARY")) { sendMessage("ERROR:Unsupported protocol"); return; }
+            // Before LOGIN nobody else can message us, so no text line can slip in after the OK
+            if (username != null) { sendMessage("ERROR:PROTO must come before LOGIN"); return; }
+            sendMessage(BinaryProtocol.HANDSHAKE_OK); // last text line this client gets
+            connection.useBinaryFraming();
+            binary = true;
+        }
+
+        // --- Authentication section ---
+        private void login(CommandDecoder.Command cmd) {
+            if (Cluster.enabled()) { clusterLogin(cmd.name, cmd.password); return; }
+            if (UserDatabase.checkLogin(cmd.name, cmd.password)) {
+                this.username = cmd.name;
+                onlinePlayers.put(username, this);
+                Presence.changed(username);
+                Metrics.logins.increment();
+                reply("LOGIN_SUCCESS");
+            } else {
+                Metrics.loginFailures.increment();
+                reply("LOGIN_FAILED:Invalid Credentials");
+            }
+        }
+
+        // Cluster: one login per name on all nodes, the name's home node checks the
+        // password and decides (see Cluster)
+        private void clusterLogin(String name, String password) {
+            if (username != null || loggingIn) { reply(Cluster.TAKEN); return; }
+            loggingIn = true;
+            long start = System.nanoTime();
+            int tag = this.tag;
+            Cluster.claim(name, password).thenAccept(error -> {
+                Metrics.clusterClaims.record(System.nanoTime() - start);
+                loggingIn = false;
+                if (error != null) {
+                    Metrics.loginFailures.increment();
+                    reply(tag, error);
+                    return;
+                }
+                username = name;
+                onlinePlayers.put(name, this);
+                if (closed && onlinePlayers.remove(name, this)) { Cluster.release(name); return; } // gone meanwhile
+                Presence.changed(name);
+                Metrics.logins.increment();
+                reply(tag, "LOGIN_SUCCESS");
+            });
+        }
+
+        private void register(CommandDecoder.Command cmd) {
+            // Answered by the journal writer once the record is stored, the handler moves on
+            if (AiOpponent.isBot(cmd.name)) { reply("REGISTER_FAILED:Reserved name"); return; }
+            String invalid = UserDatabase.checkCredentials(cmd.name, cmd.password);
+            if (invalid != null) { Metrics.registrationFailures.increment(); reply(invalid); return; }
+            long start = System.nanoTime();
+            int tag = this.tag;
+            // Cluster: stored by the name's home node, which also checks its logins
+            CompletableFuture<String> stored = Cluster.enabled() ? Cluster.register(cmd.name, cmd.password)
+                    : UserDatabase.registerAsync(cmd.name, cmd.password).thenApply(ok -> ok ? null : "REGISTER_FAILED:Username taken");
+            stored.thenAccept(error -> {
+                (error == null ? Metrics.registrations : Metrics.registrationFailures).increment();
+                Metrics.registerCommit.record(System.nanoTime() - start);
+                reply(tag, error == null ? "REGISTER_SUCCESS" : error);
+            });
+        }
+
+        // --- Admin section: the metrics report, one "STATS:name value" line each ---
+        private void stats(CommandDecoder.Command cmd) {
+            if (!Metrics.isAdmin(username)) { reply("ERROR:Not allowed"); return; }
+            for (String line : Metrics.report()) reply("STATS:" + line);
+            reply("STATS_END");
+        }
+
+        // --- Matchmaking section ---
+        // Full list, cached by Presence (may be one presence round old). PRESENCE:ON scales better.
+        private void playerList(CommandDecoder.Command cmd) {
+            for (BinaryProtocol.Shared page : Presence.playerList()) replyShared(tag, page);
+        }
+
+        // --- Presence: PRESENCE:ON for a snapshot and then live changes, PRESENCE:OFF to stop ---
+        private void presence(CommandDecoder.Command cmd) {
+            if (username == null) { reply("ERROR:Login first"); return; }
+            if (cmd.name.equalsIgnoreCase("ON")) Presence.subscribe(this);
+            else if (cmd.name.equalsIgnoreCase("OFF")) Presence.unsubscribe(this);
+            else reply("ERROR:Expected PRESENCE:ON or PRESENCE:OFF");
+        }
+
+        // CHALLENGE:bob for a classic game, CHALLENGE:bob:<size>[:<ships>] for another mode
+        private void challenge(CommandDecoder.Command cmd) {
+            if (username == null) { reply("ERROR:Login first"); return; }
+            Rules rules = Rules.parse(cmd.mode);
+            if (rules == null) { reply(Rules.ERR_MODE); return; }
+            ClientHandler opponent = onlinePlayers.get(cmd.name);
+            if (opponent != null && !opponent.getUsername().equals(username)) {
+                String error = opponent.offerChallenge(username, rules);
+                if (error != null) reply(error);
+            } else if (opponent != null || !Cluster.challenge(username, cmd.name, tag, rules)) { // another node answers
+                reply("ERROR:Player not found");
+            }
+        }
+
+        // A challenge for this player (`from` may be on another node). Returns the error
+        // for the challenger, null once CHALLENGE_FROM is on its way.
+        String offerChallenge(String from, Rules rules) {
+            if (isBusy()) return "ERROR:Player is busy";
+            // A repeated challenge replaces the pending one and restarts its clock
+            TimerWheel.Timeout expiry = TimerWheel.SERVER.schedule(
+                    () -> challengeExpired(from), CHALLENGE_SECONDS, TimeUnit.SECONDS);
+            Challenge previous = challenges.put(from, new Challenge(expiry, rules));
+            if (previous != null) previous.expiry.cancel();
+            sendMessage("CHALLENGE_FROM:" + from + (rules.classic() ? "" : ":" + rules.spec()));
+            return null;
+        }
+
+        // A line for a player here or, in a cluster, on another node
+        static void sendTo(String name, String msg) {
+            ClientHandler player = onlinePlayers.get(name);
+            if (player != null) player.sendMessage(msg);
+            else if (Cluster.enabled()) Cluster.deliver(name, 0, msg);
+        }
+
+        // Timer thread: an unanswered challenge is withdrawn from both players
+        private void challengeExpired(String from) {
+            Challenge pending = challenges.get(from);
+            if (pending == null || !pending.expiry.isExpired() || !challenges.remove(from, pending)) return; // answered or renewed
+            Metrics.challengesExpired.increment();
+            sendMessage("CHALLENGE_EXPIRED:" + from);
+            sendTo(from, "CHALLENGE_EXPIRED:" + username);
+        }
+
+        // The rules of the pending challenge from name, null if there is none (never sent or expired)
+        private Rules answerChallenge(String name) {
+            Challenge pending = challenges.remove(name);
+            if (pending == null) return null;
+            pending.expiry.cancel();
+            return pending.rules;
+        }
+
+        private void challengeAccepted(CommandDecoder.Command cmd) {
+            Rules rules = answerChallenge(cmd.name);
+            if (rules == null) { reply("ERROR:No challenge from " + cmd.name); return; }
+            ClientHandler challenger = onlinePlayers.get(cmd.name);
+            if (challenger != null && challenger != this) {
+                ClientHandler busy = startGame(challenger, this, false, rules);
+                if (busy == challenger) reply("ERROR:Player is busy");
+                else if (busy == this) reply("ERROR:Finish your game first");
+            } else if (challenger == null && Cluster.enabled()) { // the game starts on the challenger's node
+                String error = Cluster.accept(this, cmd.name, tag, rules);
+                if (error != null) reply(error);
+            }
+        }
+
+        // Cluster: this player's match runs on another node, `remote` stands in for it
+        boolean joinRemoteGame(GameSession remote) {
+            if (!claimSession(remote)) return false;
+            queued.set(false);
+            withdrawChallenges();
+            Presence.changed(username);
+            return true;
+        }
+
+        // Creates the game session linking both players, first moves first. Both have to be
+        // free: the challenger may be accepted by two players at once, or already be playing.
+        // Returns the player that was busy, null once the game started.
+        static ClientHandler startGame(ClientHandler first, ClientHandler second, boolean quickplay) {
+            return startGame(first, second, quickplay, Rules.CLASSIC);
+        }
+
+        static ClientHandler startGame(ClientHandler first, ClientHandler second, boolean quickplay, Rules rules) {
+            GameSession session = new GameSession(first, second, rules);
+            // The id is set before claimSession publishes the session: a move the players
+            // send right away runs on the shard and journals with it
+            session.id = MatchJournal.SERVER.start(first.username, second.username, rules);
+            if (!first.claimSession(session)) {
+                first.queued.set(false);
+                MatchJournal.SERVER.end(session.id, 0, "Not started", 0);
+                return first;
+            }
+            if (!second.claimSession(session)) {
+                first.currentSession.compareAndSet(session, null);
+                second.queued.set(false);
+                MatchJournal.SERVER.end(session.id, 0, "Not started", 0);
+                return second;
+            }
+            Metrics.sessionsStarted.increment();
+            first.queued.set(false);
+            second.queued.set(false);
+            // Whatever else was pending for them is off now
+            first.withdrawChallenges();
+            second.withdrawChallenges();
+            Presence.changed(first.username);
+            Presence.changed(second.username);
+
+            if (quickplay || AiOpponent.isBot(second.username)) {
+                if (quickplay) Metrics.quickplayMatches.increment();
+                first.sendMessage("MATCHED:" + second.username);
+                second.sendMessage("MATCHED:" + first.username);
+            }
+            if (!rules.classic()) { // before GAME_START, so the client sizes its grids first
+                first.sendMessage("RULES:" + rules.spec());
+                second.sendMessage("RULES:" + rules.spec());
+            }
+            first.sendMessage("GAME_START:You go first");
+            second.sendMessage("GAME_START:Opponent goes first");
+            first.sendMessage("GAME_ID:" + session.id);
+            second.sendMessage("GAME_ID:" + session.id);
+            GameEngine.execute(session, session::startClock);
+            return null;
+        }
+
+        private void withdrawChallenges() {
+            for (String from : challenges.keySet()) {
+                if (answerChallenge(from) == null) continue;
+                sendTo(from, "CHALLENGE_REJECTED:" + username + " is playing another game.");
+            }
+        }
+
+        // In a running game or waiting for a quick match: not open for challenges
+        boolean isBusy() { return queued.get() || inGame(); }
+
+        boolean inGame() {
+            GameSession session = currentSession.get();
+            return session != null && !session.isOver();
+        }
+
+        // --- Quick match: queued until the matchmaker pairs us, then GAME_START as usual ---
+        private void quickplay(CommandDecoder.Command cmd) {
+            if (username == null) { reply("ERROR:Login first"); return; }
+            GameSession session = currentSession.get();
+            if (session != null && !session.isOver()) { reply("ERROR:Finish your game first"); return; }
+            if (!joinQueue(Matchmaker.SERVER)) { reply("ERROR:Already queued"); return; }
+            reply("QUICKPLAY_QUEUED");
+        }
+
+        // --- Against the server: PLAY_AI[:easy|medium|hard[:mode]], see AiOpponent ---
+        private void playAi(CommandDecoder.Command cmd) {
+            if (username == null) { reply("ERROR:Login first"); return; }
+            if (isBusy()) { reply("ERROR:Finish your game first"); return; }
+            AiOpponent.Difficulty difficulty = AiOpponent.Difficulty.parse(cmd.name);
+            if (difficulty == null) { reply("ERROR:Expected PLAY_AI[:easy|medium|hard]"); return; }
+            Rules rules = Rules.parse(cmd.mode);
+            if (rules == null) { reply(Rules.ERR_MODE); return; }
+            String error = AiOpponent.play(this, difficulty, rules);
+            if (error != null) reply(error);
+        }
+
+        boolean joinQueue(Matchmaker matchmaker) {
+            if (!queued.compareAndSet(false, true)) return false;
+            queuedAt = System.nanoTime();
+            queuedRating = Matchmaker.rating(username);
+            matchmaker.enqueue(this);
+            return true;
+        }
+
+        boolean stillQueued() { return queued.get() && !closed; }
+
+        // --- Spectating: SPECTATE:player watches that player's match, SPECTATE:OFF stops ---
+        private void spectate(CommandDecoder.Command cmd) {
+            if (username == null) { reply("ERROR:Login first"); return; }
+            if (cmd.name.equalsIgnoreCase("OFF")) { watching.set(null); return; }
+            ClientHandler player = onlinePlayers.get(cmd.name);
+            GameSession session = player == null ? null : player.currentSession.get();
+            if (session == null || session.isOver()) { reply("ERROR:" + cmd.name + " is not playing"); return; }
+            watching.set(session);
+            GameEngine.execute(session, () -> session.addSpectator(this));
+        }
+
+        GameSession watching() { return watching.get(); }
+
+        // REPLAY:<game id> -> a finished game from the match journal, record by record
+        private void replay(CommandDecoder.Command cmd) {
+            if (username == null) { reply("ERROR:Login first"); return; }
+            int game;
+            try {
+                game = Integer.parseInt(cmd.name.trim());
+            } catch (NumberFormatException e) {
+                reply("ERROR:Expected REPLAY:<game id>");
+                return;
+            }
+            MatchJournal.SERVER.replay(game, this);
+        }
+
+        void stopWatching(GameSession session) { watching.compareAndSet(session, null); }
+
+        private void challengeDeclined(CommandDecoder.Command cmd) {
+            if (answerChallenge(cmd.name) == null) { reply("ERROR:No challenge from " + cmd.name); return; }
+            sendTo(cmd.name, "CHALLENGE_REJECTED:" + this.username + " declined.");
+        }
+
+        // Takes the new session unless a game is still running
+        private boolean claimSession(GameSession session) {
+            while (true) {
+                GameSession current = currentSession.get();
+                if (current != null && !current.isOver()) return false;
+                if (currentSession.compareAndSet(current, session)) return true;
+            }
+        }
+
+        // --- Gameplay section ---
+        // Moves run on the session's shard (see GameEngine). The command object is reused
+        // for the next line, so the values are copied into the task.
+        // The request id goes along, the answer comes from the shard.
+        private void placeShip(CommandDecoder.Command cmd) {
+            GameSession session = currentSession.get();
+            if (session == null) { reply("ERROR:Not in a game"); return; }
+            int row = cmd.row, col = cmd.col, tag = this.tag;
+            boolean vertical = cmd.vertical;
+            GameEngine.execute(session, () -> session.placeShip(this, row, col, vertical, tag));
+        }
+
+        // PLACE_FLEET:A,0,V;B,2,H;... -> the whole fleet in one round trip, all or nothing
+        private void placeFleet(CommandDecoder.Command cmd) {
+            GameSession session = currentSession.get();
+            if (session == null) { reply("ERROR:Not in a game"); return; }
+            int[] fleet = cmd.fleet; // a new array per line, see CommandDecoder
+            int tag = this.tag;
+            GameEngine.execute(session, () -> session.placeFleet(this, fleet, tag));
+        }
+
+        private void fire(CommandDecoder.Command cmd) {
+            GameSession session = currentSession.get();
+            if (session == null) { reply("ERROR:Not in a game"); return; }
+            int row = cmd.row, col = cmd.col, tag = this.tag;
+            GameEngine.execute(session, () -> session.processMove(this, row, col, tag));
+        }
+    }
+
+
+    // GAME SESSION -> Encapsulates the state and logic of a single match between two players.
+    // Not thread-safe on purpose: only the shard that owns the session (GameEngine) calls it.
+    static class GameSession {
+        final int shard = GameEngine.assignShard();
+        int id; // match journal game id, set before the session is published to its players
+        private final long startedAt = System.currentTimeMillis();
+        // Spectators: the list belongs to the spectators thread, `watched` to the shard
+        final List<ClientHandler> viewers = new ArrayList<>();
+        private boolean watched = false;
+        private ClientHandler player1, player2;
+        // Configurations: board size and fleet (see Rules). Classic boards are a few bit
+        // masks (BitBoard), larger ones only keep ships and shots (SparseBoard).
+        final Rules rules;
+        private Board p1Board, p2Board; // only replaced by placeFleet, before the first shot
+        private final int[] shipSizes;
+        private int p1ShipIndex = 0, p2ShipIndex = 0;
+
+        // Turn State
+        private boolean isPlayer1Turn = true;
+        private volatile boolean gameOver = false; // Win Condition: every ship cell of a fleet hit
+
+        // Clock: SETUP_NANOS to place the fleets, then TURN_NANOS per shot or the player to move
+        // forfeits. One timer per session that re-arms itself, a move only moves the deadline.
+        private static final long SETUP_NANOS = TimeUnit.SECONDS.toNanos(ServerConfig.getInt("setup-seconds", 120));
+        private static final long TURN_NANOS = TimeUnit.SECONDS.toNanos(ServerConfig.getInt("turn-seconds", 60));
+        private long deadline;
+        private TimerWheel.Timeout clock;
+        private final Runnable clockExpired = () -> GameEngine.execute(this, this::clockExpired);
+
+        // Replies for every cell ("HIT:B,5", ...) built once, so a move allocates nothing
+        private static final String[] HIT_MSG = cellMessages("HIT:");
+        private static final String[] MISS_MSG = cellMessages("MISS:");
+        private static final String[] ENEMY_HIT_MSG = cellMessages("ENEMY_HIT:");
+        private static final String[] ENEMY_MISSED_MSG = cellMessages("ENEMY_MISSED:");
+
+        // SUNK:<length> / ENEMY_SUNK:<length> for every ship length, encoded once
+        private static final BinaryProtocol.Shared[] SUNK_MSG = sunkMessages("SUNK:");
+        private static final BinaryProtocol.Shared[] ENEMY_SUNK_MSG = sunkMessages("ENEMY_SUNK:");
+
+        private static BinaryProtocol.Shared[] sunkMessages(String prefix) {
+            BinaryProtocol.Shared[] messages = new BinaryProtocol.Shared[Rules.MAX_SIZE + 1];
+            for (int length = 1; length <= Rules.MAX_SIZE; length++) messages[length] = new BinaryProtocol.Shared(prefix + length);
+            return messages;
+        }
+
+        private static String[] cellMessages(String prefix) {
+            String[] messages = new String[BitBoard.SIZE * BitBoard.SIZE];
+            for (int r = 0; r < BitBoard.SIZE; r++) {
+                for (int c = 0; c < BitBoard.SIZE; c++) messages[r * BitBoard.SIZE + c] = prefix + (char) ('A' + r) + "," + c;
+            }
+            return messages;
+        }
+
+        public GameSession(ClientHandler p1, ClientHandler p2) { this(p1, p2, Rules.CLASSIC); }
+
+        public GameSession(ClientHandler p1, ClientHandler p2, Rules rules) {
+            this.player1 = p1;
+            this.player2 = p2;
+            this.rules = rules;
+            this.shipSizes = rules.fleet;
+            this.p1Board = Board.create(rules);
+            this.p2Board = Board.create(rules);
+        }
+
+        // Read by the handlers when a new challenge is accepted
+        public boolean isOver() { return gameOver; }
+
+        // Shard thread, once both players got GAME_START
+        void startClock() {
+            if (gameOver) return;
+            deadline = System.nanoTime() + SETUP_NANOS;
+            clock = TimerWheel.SERVER.schedule(clockExpired, SETUP_NANOS, TimeUnit.NANOSECONDS);
+        }
+
+        private void clockExpired() {
+            if (gameOver) return;
+            long left = deadline - System.nanoTime();
+            if (left > 0) { clock = TimerWheel.SERVER.schedule(clockExpired, left, TimeUnit.NANOSECONDS); return; }
+
+            boolean p1Ready = p1ShipIndex == shipSizes.length, p2Ready = p2ShipIndex == shipSizes.length;
+            Metrics.turnTimeouts.increment();
+            if (p1Ready && p2Ready) { // the player to move ran out of time
+                ClientHandler slow = isPlayer1Turn ? player1 : player2;
+                ClientHandler other = isPlayer1Turn ? player2 : player1;
+                end("GAME_OVER:YOU_WON:Opponent ran out of time", other, "GAME_OVER:YOU_LOST:Turn timed out", slow);
+                Matchmaker.recordResult(other.username, slow.username);
+            } else if (p1Ready || p2Ready) { // only one fleet was placed in time
+                ClientHandler ready = p1Ready ? player1 : player2;
+                ClientHandler late = p1Ready ? player2 : player1;
+                end("GAME_OVER:YOU_WON:Opponent did not place the fleet", ready, "GAME_OVER:YOU_LOST:Setup timed out", late);
+                Matchmaker.recordResult(ready.username, late.username);
+            } else {
+                end("GAME_OVER:YOU_LOST:Setup timed out", player1, "GAME_OVER:YOU_LOST:Setup timed out", player2);
+            }
+        }
+
+        // Shard thread: sends the viewer where the match stands, then the live events
+        void addSpectator(ClientHandler viewer) {
+            if (gameOver) { viewer.stopWatching(this); viewer.sendMessage("ERROR:Game over"); return; }
+            if (rules.size > Spectators.MAX_SIZE) {
+                viewer.stopWatching(this);
+                viewer.sendMessage("ERROR:Boards above " + Spectators.MAX_SIZE + "x" + Spectators.MAX_SIZE + " can't be watched");
+                return;
+            }
+            watched = true;
+            boolean setup = p1ShipIndex < shipSizes.length || p2ShipIndex < shipSizes.length;
+            String phase = setup ? "SETUP" : "TURN:" + (isPlayer1Turn ? player1 : player2).username;
+            Spectators.watch(this, viewer, List.of(
+                    new BinaryProtocol.Shared("SPECTATING:" + player1.username + "," + player2.username + ":" + phase),
+                    new BinaryProtocol.Shared("WATCH_BOARD:1:" + Spectators.board(p1Board, false)),
+                    new BinaryProtocol.Shared("WATCH_BOARD:2:" + Spectators.board(p2Board, false))));
+        }
+
+        // Shard thread: a player disconnected, the other one wins
+        void playerLeft(ClientHandler player) {
+            if (gameOver) return;
+            Metrics.sessionsAbandoned.increment();
+            ClientHandler other = player == player1 ? player2 : player1;
+            end("GAME_OVER:YOU_WON:Opponent left", other, null, player);
+            Matchmaker.recordResult(other.username, player.username);
+        }
+
+        private void end(String firstMsg, ClientHandler first, String secondMsg, ClientHandler second) {
+            gameOver = true;
+            Metrics.sessionsFinished.increment();
+            if (clock != null) clock.cancel();
+            if (firstMsg != null) first.sendMessage(firstMsg);
+            if (secondMsg != null) second.sendMessage(secondMsg);
+            Presence.changed(player1.username);
+            Presence.changed(player2.username);
+            if (MatchJournal.SERVER.enabled()) {
+                String[] result = (firstMsg != null ? firstMsg : secondMsg).split(":", 3);
+                int winner = result[1].equals("YOU_WON") ? (first == player1 ? 1 : 2) : 0;
+                MatchJournal.SERVER.end(id, winner, result.length > 2 ? result[2] : "Fleet sunk",
+                        System.currentTimeMillis() - startedAt);
+            }
+            if (watched) {
+                ClientHandler winner = firstMsg != null && firstMsg.startsWith("GAME_OVER:YOU_WON") ? first : null;
+                Spectators.finish(this, List.of(
+                        new BinaryProtocol.Shared("WATCH_OVER:" + (winner != null ? winner.username : "nobody")),
+                        new BinaryProtocol.Shared("WATCH_BOARD:1:" + Spectators.board(p1Board, true)),
+                        new BinaryProtocol.Shared("WATCH_BOARD:2:" + Spectators.board(p2Board, true))));
+            }
+        }
+
+
+        // Handles ship placement and validates bounds and any overlap before
+        public void placeShip(ClientHandler player, int row, int col, boolean vertical) { placeShip(player, row, col, vertical, 0); }
+
+        public void placeShip(ClientHandler player, int row, int col, boolean vertical, int tag) {
+            boolean isP1 = (player == player1);
+            int currentIdx = isP1 ? p1ShipIndex : p2ShipIndex;
+            Board board = isP1 ? p1Board : p2Board;
+
+            if (currentIdx >= shipSizes.length) {
+                player.reply(tag, "ERROR:All ships placed");
+                return;
+            }
+
+            String error = checkPlacement(board, shipSizes[currentIdx], row, col, vertical);
+            if (error != null) { player.reply(tag, error); return; }
+
+            MatchJournal.SERVER.place(id, !isP1, currentIdx, row, col, vertical);
+            player.reply(tag, "SHIP_PLACED");
+            if (isP1) p1ShipIndex++; else p2ShipIndex++;
+            if (p1ShipIndex == shipSizes.length && p2ShipIndex == shipSizes.length) bothReady();
+        }
+
+        // Every ship at once (row, col, vertical per ship, in fleet order). Placed on a
+        // fresh board first and only swapped in if all of them fit, so a bad ship leaves
+        // nothing behind and the player can simply send the fleet again.
+        public void placeFleet(ClientHandler player, int[] fleet, int tag) {
+            boolean isP1 = (player == player1);
+            if ((isP1 ? p1ShipIndex : p2ShipIndex) != 0) { player.reply(tag, "ERROR:Ships already placed"); return; }
+            if (fleet.length != shipSizes.length * 3) {
+                player.reply(tag, "ERROR:Expected " + shipSizes.length + " ships, got " + fleet.length / 3);
+                return;
+            }
+
+            Board board = Board.create(rules);
+            for (int s = 0; s < shipSizes.length; s++) {
+                String error = checkPlacement(board, shipSizes[s], fleet[s * 3], fleet[s * 3 + 1], fleet[s * 3 + 2] == 1);
+                if (error != null) { player.reply(tag, error + " (ship " + (s + 1) + ")"); return; }
+            }
+
+            if (isP1) { p1Board = board; p1ShipIndex = shipSizes.length; }
+            else { p2Board = board; p2ShipIndex = shipSizes.length; }
+            for (int s = 0; s < shipSizes.length; s++) {
+                MatchJournal.SERVER.place(id, !isP1, s, fleet[s * 3], fleet[s * 3 + 1], fleet[s * 3 + 2] == 1);
+            }
+            player.reply(tag, "FLEET_PLACED");
+            if (p1ShipIndex == shipSizes.length && p2ShipIndex == shipSizes.length) bothReady();
+        }
+
+        // Bounds, then overlap check + commit to the board in one mask operation
+        private String checkPlacement(Board board, int size, int row, int col, boolean vertical) {
+            if (!rules.inBounds(row, col)) return "ERROR:Invalid placement";
+            if (!vertical && col + size > rules.size) return "ERROR:Ship sticks out (Horizontal)";
+            if (vertical && row + size > rules.size) return "ERROR:Ship sticks out (Vertical)";
+            if (!board.placeShip(row, col, size, vertical)) return "ERROR:Overlap detected";
+            return null;
+        }
+
+        // Both fleets are down: the game starts
+        private void bothReady() {
+            // The turn clock is shorter than what is left of the setup clock: re-arm once
+            deadline = System.nanoTime() + TURN_NANOS;
+            if (clock != null && clock.cancel()) clock = TimerWheel.SERVER.schedule(clockExpired, TURN_NANOS, TimeUnit.NANOSECONDS);
+            player1.sendMessage("GAME_STARTED:Your turn");
+            player2.sendMessage("GAME_STARTED:Enemy turn");
+            if (watched) Spectators.publish(this, Spectators.START);
+        }
+
+
+        // Process the attack (FIRE) Command and checks turns, coordinates and Hit or Miss
+        public void processMove(ClientHandler player, int row, int col) { processMove(player, row, col, 0); }
+
+        public void processMove(ClientHandler player, int row, int col, int tag) {
+            // Setup Check
+            if (p1ShipIndex < shipSizes.length || p2ShipIndex < shipSizes.length) { player.reply(tag, "ERROR:Game not started"); return; }
+            if (gameOver) { player.reply(tag, "ERROR:Game over"); return; }
+
+            // Turn Check
+            if (player == player1 && !isPlayer1Turn) { player.reply(tag, "ERROR:Wait for turn"); return; }
+            if (player == player2 && isPlayer1Turn) { player.reply(tag, "ERROR:Wait for turn"); return; }
+
+            if (!rules.inBounds(row, col)) { player.reply(tag, "ERROR:Invalid coordinates"); return; }
+
+            Board targetBoard = (player == player1) ? p2Board : p1Board;
+            ClientHandler opponent = (player == player1) ? player2 : player1;
+
+            int result = targetBoard.fire(row, col);
+
+            // Prevent duplicate shots
+            if (result == Board.ALREADY_FIRED) {
+                player.reply(tag, "ERROR:Already fired there");
+                return;
+            }
+
+            // Hit Logic (SUNK is a hit that took the last cell of a ship)
+            boolean hit = result != Board.MISS;
+            MatchJournal.SERVER.shot(id, player != player1, hit, row, col);
+            if (hit) {
+                shot(player, tag, BinaryProtocol.Reply.HIT, HIT_MSG, row, col);
+                shot(opponent, 0, BinaryProtocol.Reply.ENEMY_HIT, ENEMY_HIT_MSG, row, col);
+                if (result == Board.SUNK) {
+                    player.replyShared(tag, SUNK_MSG[targetBoard.lastSunkLength()]);
+                    opponent.sendShared(ENEMY_SUNK_MSG[targetBoard.lastSunkLength()]);
+                }
+                if (watched) Spectators.publish(this, Spectators.shot(rules, player == player1, true, row, col));
+                checkWin(player, opponent, targetBoard);
+            } else { // Miss Logic
+                shot(player, tag, BinaryProtocol.Reply.MISS, MISS_MSG, row, col);
+                shot(opponent, 0, BinaryProtocol.Reply.ENEMY_MISSED, ENEMY_MISSED_MSG, row, col);
+                if (watched) Spectators.publish(this, Spectators.shot(rules, player == player1, false, row, col));
+            }
+
+            // Toggle Turn, the next player gets a fresh clock
+            isPlayer1Turn = !isPlayer1Turn;
+            deadline = System.nanoTime() + TURN_NANOS;
+        }
+
+        // Classic boards use the ready made replies, the others build theirs
+        private void shot(ClientHandler to, int tag, BinaryProtocol.Reply reply, String[] classic, int row, int col) {
+            String line = rules.classic() ? classic[row * BitBoard.SIZE + col] : reply.token + ":" + rules.cell(row, col);
+            to.replyShot(tag, reply, line, row, col, !rules.letterRows());
+        }
+
+        // Obvious function :P
+        private void checkWin(ClientHandler winner, ClientHandler loser, Board loserBoard) {
+            if (loserBoard.fleetSunk()) {
+                end("GAME_OVER:YOU_WON", winner, "GAME_OVER:YOU_LOST", loser);
+                Matchmaker.recordResult(winner.username, loser.username);
+            }
+        }
+    }
+}
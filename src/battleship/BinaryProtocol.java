@@ -0,0 +1,404 @@
+/**
+ * BinaryProtocol.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * Compact alternative to the text protocol for bots and spectators. A client switches
+ * by sending the text line "PROTO:BINARY"; once the server answers "PROTO_OK:BINARY"
+ * (still as text) both directions use length-prefixed frames:
+ *
+ *     [u16 length][u8 opcode][payload: length - 1 bytes]
+ *
+ * Client -> server opcodes are CommandDecoder.Opcode.code, payloads by shape:
+ *     NONE        -> empty
+ *     NAME        -> UTF-8 name (CHALLENGE: "name:mode", see Rules)
+ *     OPTIONAL_NAME -> as NAME, or empty without one (PLAY_AI)
+ *     CREDENTIALS -> [u8 user length][user][password]        (UTF-8)
+ *     COORDINATE  -> [u8 row << 4 | col]              or wide [u16 row][u16 col]
+ *     PLACEMENT   -> [u8 row << 4 | col]['H' or 'V']  or wide [u16 row][u16 col]['H' or 'V']
+ *     FLEET       -> [u8 0] and a packed PLACEMENT per ship, or [u8 1] and wide ones
+ * Server -> client opcodes are Reply.code. HIT / MISS / ENEMY_HIT / ENEMY_MISSED carry the
+ * packed coordinate byte (boards up to 16x16, rows by letter) or 4 wide bytes (larger
+ * boards, rows by number), the others the text after the ':' of the text version (or
+ * nothing, e.g. SHIP_PLACED). Lines without a code of their own travel as LINE frames.
+ * So "FIRE:B,5\n" (9 bytes) becomes 4 bytes and "ENEMY_HIT:B,5\n" (14 bytes) becomes 4.
+ * A request id ("#17 FIRE:B,5", see CommandDecoder) sets the TAGGED bit of the opcode and
+ * puts [u32 id] in front of the payload, the answers to it come back the same way.
+ */
+
+package battleship;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public final class BinaryProtocol {
+    public static final String HANDSHAKE = "PROTO:BINARY";
+    public static final String HANDSHAKE_OK = "PROTO_OK:BINARY";
+
+    static final int MAX_FRAME = 4096;
+    // Replies: the u16 length covers the opcode, the tag and the payload
+    static final int MAX_REPLY_PAYLOAD = 0xFFFF - 1 - 4;
+    static final int TAGGED = 0x80; // opcode bit: [u32 request id] before the payload
+
+    // What a reply frame carries after its opcode
+    enum Payload {
+        NONE, // "SHIP_PLACED"        -> no payload
+        TEXT, // "CHALLENGE_FROM:bob" -> the UTF-8 text after the ':'
+        CELL  // "HIT:B,5"            -> one packed coordinate byte
+    }
+
+    // Server -> client messages
+    public enum Reply {
+        LINE(0, Payload.TEXT),     // anything without its own code, payload = whole line
+        LOGIN_SUCCESS(1, Payload.NONE),
+        LOGIN_FAILED(2, Payload.TEXT),
+        REGISTER_SUCCESS(3, Payload.NONE),
+        REGISTER_FAILED(4, Payload.TEXT),
+        PLAYER_LIST(5, Payload.TEXT),
+        CHALLENGE_FROM(6, Payload.TEXT),
+        CHALLENGE_REJECTED(7, Payload.TEXT),
+        GAME_START(8, Payload.TEXT),
+        SHIP_PLACED(9, Payload.NONE),
+        GAME_STARTED(10, Payload.TEXT),
+        HIT(11, Payload.CELL),
+        MISS(12, Payload.CELL),
+        ENEMY_HIT(13, Payload.CELL),
+        ENEMY_MISSED(14, Payload.CELL),
+        GAME_OVER(15, Payload.TEXT),
+        ERROR(16, Payload.TEXT),
+        PROTO_OK(17, Payload.TEXT),
+        STATS(18, Payload.TEXT),
+        QUICKPLAY_QUEUED(19, Payload.NONE),
+        MATCHED(20, Payload.TEXT),
+        PRESENCE(21, Payload.TEXT),
+        PRESENCE_SNAPSHOT(22, Payload.TEXT),
+        PRESENCE_RESET(23, Payload.NONE),
+        SPECTATING(24, Payload.TEXT),
+        WATCH(25, Payload.TEXT),
+        WATCH_BOARD(26, Payload.TEXT),
+        WATCH_OVER(27, Payload.TEXT),
+        WATCH_END(28, Payload.TEXT),
+        GAME_ID(29, Payload.TEXT),
+        REPLAY(30, Payload.TEXT),
+        REPLAY_PLACE(31, Payload.TEXT),
+        REPLAY_SHOT(32, Payload.TEXT),
+        REPLAY_END(33, Payload.TEXT),
+        SUNK(34, Payload.TEXT),
+        ENEMY_SUNK(35, Payload.TEXT),
+        RULES(36, Payload.TEXT),
+        FLEET_PLACED(37, Payload.NONE);
+
+        final int code;
+        final Payload payload;
+        final String token;
+        // Ready made frames for every packable cell (CELL replies only), filled in below.
+        // Not built here: calling into BinaryProtocol from this constructor would start its
+        // static init while Reply.values() is still null.
+        final byte[][] cellFrames;
+
+        Reply(int code, Payload payload) {
+            this.code = code;
+            this.payload = payload;
+            this.token = name();
+            this.cellFrames = payload == Payload.CELL ? new byte[256][] : null;
+        }
+    }
+
+    private static final Reply[] REPLY_BY_CODE = new Reply[256];
+    // encodeReply looks a token up among the replies with its first letter, like CommandDecoder
+    private static final Reply[][] REPLY_BY_LETTER = new Reply[128][];
+    private static final CommandDecoder.Opcode[] OPCODE_BY_CODE = new CommandDecoder.Opcode[256];
+    static {
+        for (Reply r : Reply.values()) {
+            REPLY_BY_CODE[r.code] = r;
+            if (r != Reply.LINE) {
+                Reply[] old = REPLY_BY_LETTER[r.token.charAt(0)];
+                Reply[] grown = old == null ? new Reply[1] : Arrays.copyOf(old, old.length + 1);
+                grown[grown.length - 1] = r;
+                REPLY_BY_LETTER[r.token.charAt(0)] = grown;
+            }
+            if (r.payload != Payload.CELL) continue;
+            for (int row = 0; row < 16; row++) {
+                for (int col = 0; col < 16; col++) r.cellFrames[pack(row, col)] = new byte[]{0, 2, (byte) r.code, (byte) pack(row, col)};
+            }
+        }
+        for (CommandDecoder.Opcode op : CommandDecoder.Opcode.values()) {
+            if (op != CommandDecoder.Opcode.INVALID) OPCODE_BY_CODE[op.code] = op;
+        }
+    }
+
+    // Coordinates of boards up to 16x16 fit into one byte
+    public static int pack(int row, int col) { return row << 4 | col; }
+    public static boolean packable(int row, int col) { return row >= 0 && row < 16 && col >= 0 && col < 16; }
+
+    // --- Server side ---
+
+    // Frame for a HIT / MISS / ENEMY_HIT / ENEMY_MISSED reply, shared and never copied
+    public static byte[] cellFrame(Reply reply, int row, int col) {
+        return reply.cellFrames[pack(row, col)];
+    }
+
+    // Boards above Rules.LETTER_ROWS: [u16 row][u16 col], built per shot
+    public static byte[] wideCellFrame(Reply reply, int row, int col) {
+        return new byte[]{0, 5, (byte) reply.code, (byte) (row >> 8), (byte) row, (byte) (col >> 8), (byte) col};
+    }
+
+    // SHARED -> A reply encoded once for both protocols, for messages that go to many
+    // clients (presence, spectators): each client gets the same arrays, no per-client copies
+    static final class Shared {
+        final byte[] line;  // text protocol, with the '\n'
+        final byte[] frame; // binary protocol
+
+        Shared(String message) {
+            this.line = ConnectionEngine.QueuedConnection.encodeLine(message);
+            this.frame = encodeReply(message);
+        }
+
+        int length() { return line.length; }
+    }
+
+    // Translates any text reply ("CHALLENGE_FROM:bob") into its frame
+    public static byte[] encodeReply(String line) {
+        int colon = line.indexOf(':');
+        int tokenEnd = colon < 0 ? line.length() : colon;
+        Reply reply = Reply.LINE;
+        Reply[] candidates = tokenEnd > 0 && line.charAt(0) < 128 ? REPLY_BY_LETTER[line.charAt(0)] : null;
+        if (candidates != null) {
+            for (Reply r : candidates) {
+                if (r.token.length() == tokenEnd && line.startsWith(r.token)) { reply = r; break; }
+            }
+        }
+        // Shapes that don't match the reply's payload kind travel as a plain LINE
+        if (reply.payload == Payload.NONE && colon >= 0) reply = Reply.LINE;
+        if (reply.payload != Payload.NONE && colon < 0) reply = Reply.LINE;
+        if (reply.payload == Payload.CELL) {
+            // "B,5" -> packed, "120,5" -> wide, like the server's own shot replies
+            String coords = line.substring(colon + 1);
+            int comma = coords.indexOf(',');
+            int row = -1, col = -1;
+            boolean letter = comma == 1 && coords.charAt(0) >= 'A' && coords.charAt(0) <= 'Z';
+            try {
+                row = letter ? coords.charAt(0) - 'A' : Integer.parseInt(coords.substring(0, comma));
+                col = Integer.parseInt(coords.substring(comma + 1));
+            } catch (RuntimeException e) { /* not a coordinate */ }
+            if (letter && packable(row, col)) return cellFrame(reply, row, col);
+            if (!letter && row >= 0 && row < 65536 && col >= 0 && col < 65536) return wideCellFrame(reply, row, col);
+            reply = Reply.LINE;
+        }
+        switch (reply.payload) {
+            case NONE: return frame(reply.code, new byte[0]);
+            default:
+                String payload = reply == Reply.LINE ? line : line.substring(colon + 1);
+                byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+                // Would wrap the u16 length, long replies are paged by their senders (Presence)
+                if (bytes.length > MAX_REPLY_PAYLOAD) return frame(Reply.ERROR.code, "Reply too long".getBytes(StandardCharsets.UTF_8));
+                return frame(reply.code, bytes);
+        }
+    }
+
+    // Decodes a client frame (buf[off] = opcode) into cmd, never throws on bad input
+    public static boolean decodeCommand(byte[] buf, int off, int len, CommandDecoder.Command cmd) {
+        cmd.reset();
+        if (len < 1) return CommandDecoder.fail(cmd, CommandDecoder.ERR_FRAME);
+        int p = off + 1, end = off + len;
+        if ((buf[off] & TAGGED) != 0) {
+            if (len < 5) return CommandDecoder.fail(cmd, CommandDecoder.ERR_FRAME);
+            cmd.tag = readInt(buf, p);
+            p += 4;
+            if (cmd.tag <= 0) return CommandDecoder.fail(cmd, CommandDecoder.ERR_TAG);
+        }
+        CommandDecoder.Opcode op = OPCODE_BY_CODE[buf[off] & 0xFF & ~TAGGED];
+        if (op == null) return CommandDecoder.fail(cmd, CommandDecoder.ERR_UNKNOWN);
+
+        switch (op.shape) {
+            case NONE:
+                break;
+            case OPTIONAL_NAME: case NAME: {
+                if (p == end) {
+                    if (op.shape == CommandDecoder.Shape.OPTIONAL_NAME) break;
+                    return CommandDecoder.fail(cmd, CommandDecoder.ERR_NAME);
+                }
+                int colon = p;
+                while (colon < end && buf[colon] != ':') colon++;
+                cmd.name = new String(buf, p, colon - p, StandardCharsets.UTF_8);
+                if (colon < end - 1) cmd.mode = new String(buf, colon + 1, end - colon - 1, StandardCharsets.UTF_8);
+                break;
+            }
+            case CREDENTIALS: {
+                if (p == end) return CommandDecoder.fail(cmd, CommandDecoder.ERR_CREDENTIALS);
+                int userLength = buf[p++] & 0xFF;
+                if (userLength == 0 || p + userLength >= end) return CommandDecoder.fail(cmd, CommandDecoder.ERR_CREDENTIALS);
+                cmd.name = new String(buf, p, userLength, StandardCharsets.UTF_8);
+                cmd.password = new String(buf, p + userLength, end - p - userLength, StandardCharsets.UTF_8);
+                break;
+            }
+            case COORDINATE:
+                if (end - p != 1 && end - p != 4) return CommandDecoder.fail(cmd, CommandDecoder.ERR_COORDINATE);
+                p = cell(buf, p, end - p == 4, cmd);
+                break;
+            case PLACEMENT:
+                if (end - p != 2 && end - p != 5) return CommandDecoder.fail(cmd, CommandDecoder.ERR_PLACEMENT);
+                p = cell(buf, p, end - p == 5, cmd);
+                if (buf[p] == 'V') cmd.vertical = true;
+                else if (buf[p] != 'H') return CommandDecoder.fail(cmd, CommandDecoder.ERR_PLACEMENT);
+                break;
+            case FLEET: {
+                if (p == end || (buf[p] != 0 && buf[p] != 1)) return CommandDecoder.fail(cmd, CommandDecoder.ERR_FLEET);
+                boolean wide = buf[p++] == 1;
+                int each = wide ? 5 : 2;
+                if (p == end || (end - p) % each != 0) return CommandDecoder.fail(cmd, CommandDecoder.ERR_FLEET);
+                int[] fleet = new int[(end - p) / each * 3];
+                for (int i = 0; i < fleet.length; i += 3) {
+                    p = cell(buf, p, wide, cmd);
+                    byte dir = buf[p++];
+                    if (dir != 'V' && dir != 'H') return CommandDecoder.fail(cmd, CommandDecoder.ERR_FLEET);
+                    fleet[i] = cmd.row;
+                    fleet[i + 1] = cmd.col;
+                    fleet[i + 2] = dir == 'V' ? 1 : 0;
+                }
+                cmd.row = cmd.col = 0;
+                cmd.fleet = fleet;
+                break;
+            }
+        }
+        cmd.opcode = op;
+        return true;
+    }
+
+    // Packed or wide coordinate at buf[p] into cmd, returns the index after it
+    private static int cell(byte[] buf, int p, boolean wide, CommandDecoder.Command cmd) {
+        if (wide) {
+            cmd.row = (buf[p] & 0xFF) << 8 | buf[p + 1] & 0xFF;
+            cmd.col = (buf[p + 2] & 0xFF) << 8 | buf[p + 3] & 0xFF;
+            return p + 4;
+        }
+        cmd.row = (buf[p] & 0xF0) >> 4;
+        cmd.col = buf[p] & 0x0F;
+        return p + 1;
+    }
+
+    // --- Client side ---
+
+    // Frame for a command typed in text form ("FIRE:B,5"), null if it can't be encoded
+    public static byte[] encodeCommand(String line) {
+        byte[] text = line.getBytes(StandardCharsets.UTF_8);
+        CommandDecoder.Command cmd = new CommandDecoder.Command();
+        if (!CommandDecoder.decode(text, 0, text.length, cmd)) return null;
+        return encodeCommand(cmd);
+    }
+
+    public static byte[] encodeCommand(CommandDecoder.Command cmd) {
+        byte[] frame = encodeUntagged(cmd);
+        return frame == null || cmd.tag == 0 ? frame : tagged(cmd.tag, frame);
+    }
+
+    private static byte[] encodeUntagged(CommandDecoder.Command cmd) {
+        CommandDecoder.Opcode op = cmd.opcode;
+        switch (op.shape) {
+            case OPTIONAL_NAME: case NAME:
+                if (cmd.name == null && op.shape == CommandDecoder.Shape.OPTIONAL_NAME) return new byte[]{0, 1, (byte) op.code};
+                return frame(op.code, (cmd.mode == null ? cmd.name : cmd.name + ":" + cmd.mode).getBytes(StandardCharsets.UTF_8));
+            case CREDENTIALS: {
+                byte[] user = cmd.name.getBytes(StandardCharsets.UTF_8);
+                byte[] pass = cmd.password.getBytes(StandardCharsets.UTF_8);
+                if (user.length > 255 || pass.length >= MAX_FRAME) return null;
+                byte[] payload = new byte[1 + user.length + pass.length];
+                payload[0] = (byte) user.length;
+                System.arraycopy(user, 0, payload, 1, user.length);
+                System.arraycopy(pass, 0, payload, 1 + user.length, pass.length);
+                return frame(op.code, payload);
+            }
+            case COORDINATE:
+                if (packable(cmd.row, cmd.col)) return new byte[]{0, 2, (byte) op.code, (byte) pack(cmd.row, cmd.col)};
+                return new byte[]{0, 5, (byte) op.code, (byte) (cmd.row >> 8), (byte) cmd.row, (byte) (cmd.col >> 8), (byte) cmd.col};
+            case PLACEMENT: {
+                byte dir = (byte) (cmd.vertical ? 'V' : 'H');
+                if (packable(cmd.row, cmd.col)) return new byte[]{0, 3, (byte) op.code, (byte) pack(cmd.row, cmd.col), dir};
+                return new byte[]{0, 6, (byte) op.code, (byte) (cmd.row >> 8), (byte) cmd.row, (byte) (cmd.col >> 8), (byte) cmd.col, dir};
+            }
+            case FLEET: {
+                int[] fleet = cmd.fleet;
+                boolean wide = false;
+                for (int i = 0; i < fleet.length; i += 3) wide |= !packable(fleet[i], fleet[i + 1]);
+                byte[] payload = new byte[1 + fleet.length / 3 * (wide ? 5 : 2)];
+                payload[0] = (byte) (wide ? 1 : 0);
+                for (int i = 0, p = 1; i < fleet.length; i += 3) {
+                    if (wide) {
+                        payload[p++] = (byte) (fleet[i] >> 8);
+                        payload[p++] = (byte) fleet[i];
+                        payload[p++] = (byte) (fleet[i + 1] >> 8);
+                        payload[p++] = (byte) fleet[i + 1];
+                    } else {
+                        payload[p++] = (byte) pack(fleet[i], fleet[i + 1]);
+                    }
+                    payload[p++] = (byte) (fleet[i + 2] == 1 ? 'V' : 'H');
+                }
+                return payload.length < MAX_FRAME ? frame(op.code, payload) : null;
+            }
+            default:
+                return new byte[]{0, 1, (byte) op.code};
+        }
+    }
+
+    // Turns a server frame (buf[off] = opcode) back into the text line it stands for
+    public static String decodeReply(byte[] buf, int off, int len) {
+        if (len >= 5 && (buf[off] & TAGGED) != 0) { // "#<id> " and the answer
+            byte[] inner = new byte[len - 4];
+            inner[0] = (byte) (buf[off] & ~TAGGED);
+            System.arraycopy(buf, off + 5, inner, 1, len - 5);
+            return "#" + readInt(buf, off + 1) + " " + decodeReply(inner, 0, inner.length);
+        }
+        Reply reply = len > 0 ? REPLY_BY_CODE[buf[off] & 0xFF] : null;
+        if (reply == null) return "ERROR:Unknown frame";
+        switch (reply.payload) {
+            case NONE:
+                return reply.token;
+            case CELL: {
+                if (len == 5) { // wide: rows by number
+                    int row = (buf[off + 1] & 0xFF) << 8 | buf[off + 2] & 0xFF;
+                    int col = (buf[off + 3] & 0xFF) << 8 | buf[off + 4] & 0xFF;
+                    return reply.token + ":" + row + "," + col;
+                }
+                if (len != 2) return "ERROR:Malformed frame";
+                int packed = buf[off + 1] & 0xFF;
+                return reply.token + ":" + (char) ('A' + (packed >> 4)) + "," + (packed & 0x0F);
+            }
+            default: {
+                String payload = new String(buf, off + 1, len - 1, StandardCharsets.UTF_8);
+                return reply == Reply.LINE ? payload : reply.token + ":" + payload;
+            }
+        }
+    }
+
+    // The same frame with the TAGGED bit and [u32 tag] in front of its payload
+    static byte[] tagged(int tag, byte[] frame) {
+        int length = ((frame[0] & 0xFF) << 8 | frame[1] & 0xFF) + 4;
+        byte[] tagged = new byte[2 + length];
+        tagged[0] = (byte) (length >> 8);
+        tagged[1] = (byte) length;
+        tagged[2] = (byte) (frame[2] | TAGGED);
+        tagged[3] = (byte) (tag >> 24);
+        tagged[4] = (byte) (tag >> 16);
+        tagged[5] = (byte) (tag >> 8);
+        tagged[6] = (byte) tag;
+        System.arraycopy(frame, 3, tagged, 7, frame.length - 3);
+        return tagged;
+    }
+
+    private static int readInt(byte[] buf, int p) {
+        return (buf[p] & 0xFF) << 24 | (buf[p + 1] & 0xFF) << 16 | (buf[p + 2] & 0xFF) << 8 | buf[p + 3] & 0xFF;
+    }
+
+    static byte[] frame(int code, byte[] payload) {
+        if (payload.length > MAX_REPLY_PAYLOAD) throw new IllegalArgumentException("frame payload of " + payload.length + " bytes");
+        int length = payload.length + 1;
+        byte[] frame = new byte[2 + length];
+        frame[0] = (byte) (length >> 8);
+        frame[1] = (byte) length;
+        frame[2] = (byte) code;
+        System.arraycopy(payload, 0, frame, 3, payload.length);
+        return frame;
+    }
+}
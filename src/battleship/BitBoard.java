@@ -0,0 +1,68 @@
+/**
+ * BitBoard.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * Compact state of one player's classic 10x10 grid. Cell (row, col) is bit row * 10 + col
+ * of a 100 bit mask stored in two longs (lo = cells 0..63, hi = cells 64..99). Two masks
+ * are kept: where the ships are and where the enemy has fired, so overlap and duplicate
+ * shot checks are a couple of AND operations. Which ship owns a cell is one byte per
+ * cell, only looked at when a shot hits.
+ */
+
+package battleship;
+
+public final class BitBoard extends Board {
+    public static final int SIZE = 10;
+
+    private long shipLo, shipHi;
+    private long shotLo, shotHi;
+    private final byte[] owner = new byte[SIZE * SIZE]; // ship number per ship cell
+
+    public BitBoard() { super(SIZE); }
+
+    @Override
+    protected boolean place(int row, int col, int length, boolean vertical, int ship) {
+        long lo = 0, hi = 0;
+        int cell = row * SIZE + col;
+        int step = vertical ? SIZE : 1;
+        for (int i = 0; i < length; i++, cell += step) {
+            if (cell < 64) lo |= 1L << cell; else hi |= 1L << (cell - 64);
+        }
+        if (((lo & shipLo) | (hi & shipHi)) != 0) return false;
+        shipLo |= lo;
+        shipHi |= hi;
+        cell = row * SIZE + col;
+        for (int i = 0; i < length; i++, cell += step) owner[cell] = (byte) ship;
+        return true;
+    }
+
+    @Override
+    protected int shoot(int row, int col) {
+        int cell = row * SIZE + col;
+        if (cell < 64) {
+            long bit = 1L << cell;
+            if ((shotLo & bit) != 0) return -2;
+            shotLo |= bit;
+            if ((shipLo & bit) == 0) return -1;
+        } else {
+            long bit = 1L << (cell - 64);
+            if ((shotHi & bit) != 0) return -2;
+            shotHi |= bit;
+            if ((shipHi & bit) == 0) return -1;
+        }
+        return owner[cell] & 0xFF;
+    }
+
+    @Override
+    public boolean hasShip(int row, int col) { return test(shipLo, shipHi, row * SIZE + col); }
+
+    @Override
+    public boolean wasFiredAt(int row, int col) { return test(shotLo, shotHi, row * SIZE + col); }
+
+    private static boolean test(long lo, long hi, int cell) {
+        return cell < 64 ? (lo & (1L << cell)) != 0 : (hi & (1L << (cell - 64))) != 0;
+    }
+}
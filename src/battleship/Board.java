@@ -0,0 +1,87 @@
+/**
+ * Board.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * One player's grid: where the ships are, where the enemy has fired and how much of
+ * each ship is left. Two implementations, picked by create():
+ *   - BitBoard:    the classic 10x10 grid as a few 100 bit masks
+ *   - SparseBoard: any size up to 1000x1000, memory grows with ships and shots, not
+ *                  with the size of the board
+ * Both remember which ship owns a cell, so a hit can tell that it SUNK a ship and the
+ * end of the game is a counter reaching zero.
+ */
+
+package battleship;
+
+import java.util.Arrays;
+
+public abstract class Board {
+
+    // Results of fire()
+    public static final int MISS = 0;
+    public static final int HIT = 1;
+    public static final int SUNK = 2; // a hit that sank the last cell of a ship
+    public static final int ALREADY_FIRED = -1;
+
+    public final int size;
+
+    // Per ship: its length and how many of its cells are still afloat
+    private int[] lengths = new int[8];
+    private int[] remaining = new int[8];
+    private int ships = 0;
+    private int afloat = 0;
+    private int lastSunk = 0;
+
+    protected Board(int size) { this.size = size; }
+
+    public static Board create(Rules rules) {
+        return rules.size == BitBoard.SIZE ? new BitBoard() : new SparseBoard(rules.size);
+    }
+
+    public boolean inBounds(int row, int col) { return row >= 0 && row < size && col >= 0 && col < size; }
+
+    // Puts a ship on the board, returns false (and changes nothing) if it overlaps another.
+    // The caller has already checked that the whole ship lies inside the grid.
+    public final boolean placeShip(int row, int col, int length, boolean vertical) {
+        if (!place(row, col, length, vertical, ships)) return false;
+        if (ships == lengths.length) {
+            lengths = Arrays.copyOf(lengths, ships * 2);
+            remaining = Arrays.copyOf(remaining, ships * 2);
+        }
+        lengths[ships] = length;
+        remaining[ships] = length;
+        ships++;
+        afloat++;
+        return true;
+    }
+
+    // Records an enemy shot: HIT, SUNK, MISS or ALREADY_FIRED
+    public final int fire(int row, int col) {
+        int ship = shoot(row, col);
+        if (ship < 0) return ship == -1 ? MISS : ALREADY_FIRED;
+        if (--remaining[ship] > 0) return HIT;
+        afloat--;
+        lastSunk = lengths[ship];
+        return SUNK;
+    }
+
+    // Length of the ship the last SUNK shot sank
+    public int lastSunkLength() { return lastSunk; }
+
+    // True once every ship has been sunk
+    public boolean fleetSunk() { return ships > 0 && afloat == 0; }
+
+    public int shipsAfloat() { return afloat; }
+
+    public abstract boolean hasShip(int row, int col);
+    public abstract boolean wasFiredAt(int row, int col);
+
+    // Marks the cells of ship number `ship`, false if one is taken
+    protected abstract boolean place(int row, int col, int length, boolean vertical, int ship);
+
+    // Marks the shot: the number of the ship it hit, -1 for a miss, -2 if already fired at
+    protected abstract int shoot(int row, int col);
+}
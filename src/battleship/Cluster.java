@@ -0,0 +1,785 @@
+/**
+ * Cluster.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * Several servers acting as one (--cluster=1@localhost:7001,2@localhost:7002,... and
+ * --cluster-secret=<shared secret>, the same on every node, and --node=<own id>). Every
+ * pair of nodes keeps one TCP link, the node later in the list dials the earlier one and
+ * retries every second. Both prove they know the secret (HMAC over the other's nonce)
+ * before anything else goes over the link. The link carries lines of tab separated
+ * fields (tabs, newlines and backslashes inside a field escaped), written in batches by
+ * one thread per link into a queue of at most --cluster-queue=65536 lines:
+ *
+ *   presence    each node sends what changed about its own players once per presence
+ *               round (P +alice *bob -carol) and all of them when a link comes up, so
+ *               PLAYER_LIST / PRESENCE:ON show the whole cluster
+ *   logins      every name has a home node (its hash over the node list), which stores
+ *               the user (REG), checks the password and hands out the one login for the
+ *               name (CLAIM / RELEASE). So the users file of a node only has the users it
+ *               is home for, and the node list must not change.
+ *   challenges  CHALLENGE goes to the node of the opponent, errors, expiries and
+ *               rejections come back as TO lines for one player
+ *   games       a match between two nodes runs on the challenger's node. The other
+ *               player is a ClientHandler there on a link Connection (like AiOpponent's
+ *               bot) and its own node has a RemoteSession in its place that forwards the
+ *               moves (M) and hands every line of the match back to the player (G)
+ *
+ * A link that drops (or can't keep up with its queue) takes the other node's players,
+ * logins and games with it, their opponents win as if they had disconnected. Without
+ * --cluster nothing here runs.
+ */
+
+package battleship;
+
+import java.io.*;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+final class Cluster {
+    private Cluster() {}
+
+    private static final int BATCH = 1024;           // lines per write of a link
+    private static final int SNAPSHOT_ENTRIES = 500; // players per P line when a link comes up
+    private static final int RETRY_MS = 1000;
+    private static final int HELLO_MS = 5000;       // to finish the handshake
+    private static final int QUEUE = Math.max(BATCH, ServerConfig.getInt("cluster-queue", 65536));
+    private static final byte[] SECRET = ServerConfig.get("cluster-secret", "").getBytes(StandardCharsets.UTF_8);
+    private static final SecureRandom NONCES = new SecureRandom();
+
+    // The node list, in --cluster order (the same on every node). SELF = -1: no cluster.
+    private static final int[] IDS;
+    private static final InetSocketAddress[] ADDRESSES;
+    static final int SELF;
+    private static final Link[] links;
+
+    static {
+        String spec = ServerConfig.get("cluster", "");
+        String[] nodes = spec.isEmpty() ? new String[0] : spec.split(",");
+        IDS = new int[nodes.length];
+        ADDRESSES = new InetSocketAddress[nodes.length];
+        int self = -1, node = ServerConfig.getInt("node", -1);
+        for (int i = 0; i < nodes.length; i++) { // "<id>@<host>:<port>"
+            String[] parts = nodes[i].trim().split("[@:]");
+            IDS[i] = Integer.parseInt(parts[0]);
+            ADDRESSES[i] = new InetSocketAddress(parts[1], Integer.parseInt(parts[2]));
+            if (IDS[i] == node) self = i;
+        }
+        if (nodes.length > 0 && self < 0) throw new IllegalArgumentException("--node must be one of the ids in --cluster");
+        SELF = nodes.length > 1 ? self : -1;
+        if (SELF >= 0 && SECRET.length == 0) throw new IllegalArgumentException("--cluster needs --cluster-secret");
+        links = new Link[nodes.length];
+    }
+
+    static boolean enabled() { return SELF >= 0; }
+
+    static int nodeId() { return enabled() ? IDS[SELF] : 0; }
+
+    // Players of the other nodes: name -> node and state ('+' lobby, '*' playing)
+    private static final class Remote {
+        final int node;
+        final char state;
+        Remote(int node, char state) { this.node = node; this.state = state; }
+    }
+    private static final ConcurrentHashMap<String, Remote> remote = new ConcurrentHashMap<>();
+    // Our players the other nodes know about, so a logout is sent as '-' exactly once
+    private static final Set<String> announced = ConcurrentHashMap.newKeySet();
+    // Home node only: name -> node index the login was given to
+    private static final ConcurrentHashMap<String, Integer> owners = new ConcurrentHashMap<>();
+
+    private static final AtomicLong nextId = new AtomicLong(); // requests and remote games
+
+    static final String TAKEN = "LOGIN_FAILED:Already logged in";
+    static final String INVALID = "LOGIN_FAILED:Invalid Credentials";
+
+
+    // --- Startup: listen for the nodes after us in the list, dial the ones before us ---
+
+    static void start() throws IOException {
+        if (!enabled()) return;
+        ServerSocket server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(ADDRESSES[SELF]);
+        daemon("cluster-accept", () -> accept(server));
+        for (int peer = 0; peer < SELF; peer++) {
+            int p = peer;
+            daemon("cluster-dial-" + IDS[p], () -> dial(p));
+        }
+        System.out.println("Cluster: node " + IDS[SELF] + " of " + IDS.length + ", links on " + ADDRESSES[SELF]);
+    }
+
+    // Handshake, the dialing node d and the accepting node a:
+    //   d: HELLO <d's id> <nonce d>
+    //   a: WELCOME <nonce a> <hmac("accept", a's id, nonce d)>
+    //   d: AUTH <hmac("dial", d's id, nonce a)>
+    private static void accept(ServerSocket server) {
+        while (true) {
+            try {
+                Socket socket = server.accept();
+                daemon("cluster-hello", () -> welcome(socket)); // a slow handshake can't hold up the others
+            } catch (IOException e) {
+                Log.warn("Cluster: accept failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static void welcome(Socket socket) {
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(HELLO_MS);
+            BufferedReader in = reader(socket);
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            String[] hello = split(String.valueOf(in.readLine()));
+            if (!hello[0].equals("HELLO") || hello.length != 3) throw new IOException("expected HELLO");
+            int peer = index(Integer.parseInt(hello[1]));
+            if (peer <= SELF) throw new IOException("node " + hello[1] + " must be dialed, not dial");
+            String nonce = nonce();
+            out.write(line("WELCOME", nonce, sign("accept", IDS[SELF], hello[2])) + "\n");
+            out.flush();
+            String[] auth = split(String.valueOf(in.readLine()));
+            if (!auth[0].equals("AUTH") || auth.length != 2 || !verify(auth[1], sign("dial", IDS[peer], nonce))) {
+                throw new IOException("node " + hello[1] + " does not know the cluster secret");
+            }
+            socket.setSoTimeout(0);
+            up(new Link(peer, socket, in));
+        } catch (IOException | RuntimeException e) {
+            Log.warn("Cluster: refused a link from {}: {}", socket.getRemoteSocketAddress(), e.getMessage());
+            close(socket);
+        }
+    }
+
+    private static void dial(int peer) {
+        while (true) {
+            if (links[peer] == null) {
+                Socket socket = new Socket();
+                try {
+                    socket.connect(ADDRESSES[peer], RETRY_MS);
+                    socket.setTcpNoDelay(true);
+                    socket.setSoTimeout(HELLO_MS);
+                    BufferedReader in = reader(socket);
+                    Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+                    String nonce = nonce();
+                    out.write(line("HELLO", IDS[SELF], nonce) + "\n");
+                    out.flush();
+                    String[] welcome = split(String.valueOf(in.readLine()));
+                    if (!welcome[0].equals("WELCOME") || welcome.length != 3 || !verify(welcome[2], sign("accept", IDS[peer], nonce))) {
+                        throw new IOException("node " + IDS[peer] + " does not know the cluster secret");
+                    }
+                    out.write(line("AUTH", sign("dial", IDS[SELF], welcome[1])) + "\n");
+                    out.flush();
+                    socket.setSoTimeout(0);
+                    up(new Link(peer, socket, in));
+                } catch (ConnectException | SocketTimeoutException e) {
+                    close(socket); // not up yet, next round
+                } catch (IOException | RuntimeException e) {
+                    Log.warn("Cluster: link to node {} refused: {}", IDS[peer], e.getMessage());
+                    close(socket);
+                }
+            }
+            try { Thread.sleep(RETRY_MS); } catch (InterruptedException e) { return; }
+        }
+    }
+
+    private static void close(Socket socket) {
+        try { socket.close(); } catch (IOException ignored) { }
+    }
+
+    private static String nonce() {
+        byte[] bytes = new byte[16];
+        NONCES.nextBytes(bytes);
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    private static String sign(String role, int node, String nonce) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(SECRET, "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal((role + "\t" + node + "\t" + nonce).getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean verify(String proof, String expected) {
+        return MessageDigest.isEqual(proof.getBytes(StandardCharsets.UTF_8), expected.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // LINE FORMAT -> Fields joined by tabs. A field may hold anything (a whole client
+    // line, a password), so backslash, tab, CR and LF in it go as \\ \t \r \n.
+    private static String line(Object... fields) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) line.append('\t');
+            escape(line, String.valueOf(fields[i]));
+        }
+        return line.toString();
+    }
+
+    private static void escape(StringBuilder out, String field) {
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            switch (c) {
+                case '\\': out.append("\\\\"); break;
+                case '\t': out.append("\\t"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                default: out.append(c);
+            }
+        }
+    }
+
+    private static String[] split(String line) {
+        String[] fields = line.split("\t", -1);
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].indexOf('\\') >= 0) fields[i] = unescape(fields[i]);
+        }
+        return fields;
+    }
+
+    private static String unescape(String field) {
+        StringBuilder out = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c != '\\' || ++i == field.length()) { out.append(c); continue; }
+            switch (field.charAt(i)) {
+                case 't': out.append('\t'); break;
+                case 'n': out.append('\n'); break;
+                case 'r': out.append('\r'); break;
+                default: out.append(field.charAt(i)); // '\\'
+            }
+        }
+        return out.toString();
+    }
+
+    private static BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    private static int index(int id) {
+        for (int i = 0; i < IDS.length; i++) if (IDS[i] == id) return i;
+        throw new IllegalArgumentException("unknown node " + id);
+    }
+
+    private static void daemon(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // A new link replaces an old one to the same node. The other node gets our players
+    // and the logins it is home for (it forgot them if the link was down).
+    private static void up(Link link) throws IOException {
+        synchronized (links) {
+            Link old = links[link.peer];
+            if (old != null) old.close();
+            links[link.peer] = link;
+        }
+        link.start();
+        Log.info("Cluster: link to node {} up", IDS[link.peer]);
+        StringBuilder batch = new StringBuilder("P");
+        int entries = 0;
+        for (BattleShipServer.ClientHandler player : BattleShipServer.onlinePlayers.values()) {
+            String name = player.getUsername();
+            if (home(name) == link.peer) link.send("HOLD", name);
+            announced.add(name);
+            escape(batch.append('\t').append(player.inGame() ? '*' : '+'), name);
+            if (++entries == SNAPSHOT_ENTRIES) { link.sendLine(batch.toString()); batch.setLength(1); entries = 0; }
+        }
+        if (entries > 0) link.sendLine(batch.toString());
+    }
+
+    // Everything that came from the other node is gone with it
+    private static void down(Link link) {
+        synchronized (links) {
+            if (links[link.peer] == link) links[link.peer] = null;
+        }
+        Metrics.clusterLinkDrops.increment();
+        Log.warn("Cluster: link to node {} down", IDS[link.peer]);
+        for (Map.Entry<String, Remote> entry : remote.entrySet()) {
+            if (entry.getValue().node == link.peer && remote.remove(entry.getKey(), entry.getValue())) Presence.changed(entry.getKey());
+        }
+        owners.values().removeIf(node -> node == link.peer);
+        String unreachable = "Node " + IDS[link.peer] + " unreachable, try again";
+        link.requests.values().forEach(request -> request.complete(unreachable));
+        link.requests.clear();
+        for (Long key : link.hosted.keySet()) {
+            BattleShipServer.ClientHandler guest = link.hosted.remove(key);
+            if (guest != null) guest.onClose(); // the usual "Opponent left" for our player
+        }
+        for (RemoteSession game : link.games.values()) game.lost();
+    }
+
+    private static void broadcast(String line) {
+        for (Link link : links) if (link != null) link.sendLine(line);
+    }
+
+
+    // --- Presence (presence thread, once per round) ---
+
+    // Sends the state of our own players among `names` to every node
+    static void publish(Collection<String> names) {
+        StringBuilder batch = new StringBuilder("P");
+        for (String name : names) {
+            BattleShipServer.ClientHandler player = BattleShipServer.onlinePlayers.get(name);
+            char state;
+            if (player != null) { state = player.inGame() ? '*' : '+'; announced.add(name); }
+            else if (announced.remove(name)) state = '-';
+            else continue; // somebody else's player
+            escape(batch.append('\t').append(state), name);
+        }
+        if (batch.length() > 1) broadcast(batch.toString());
+    }
+
+    // '+', '*' or '-' for a player of another node
+    static char remoteState(String name) {
+        Remote player = remote.get(name);
+        return player == null ? '-' : player.state;
+    }
+
+    static Set<String> remoteNames() { return remote.keySet(); }
+
+    private static void presence(Link link, String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            char state = parts[i].charAt(0);
+            String name = parts[i].substring(1);
+            // Only the node that announced a player may take it away again (it may have
+            // logged in somewhere else in the meantime)
+            if (state == '-') remote.computeIfPresent(name, (k, v) -> v.node == link.peer ? null : v);
+            else remote.put(name, new Remote(link.peer, state));
+            Presence.changed(name);
+        }
+    }
+
+
+    // --- Logins and registrations, decided by the name's home node ---
+
+    private static int home(String name) { return Math.floorMod(name.hashCode(), IDS.length); }
+
+    // Completes with null when the password is right and the name is ours now, else the
+    // LOGIN_FAILED reply
+    static CompletableFuture<String> claim(String name, String password) {
+        int home = home(name);
+        if (home == SELF) return CompletableFuture.completedFuture(own(name, password, SELF));
+        return request(home, "LOGIN_FAILED:", "CLAIM", name, password);
+    }
+
+    // Home node: the login of `name` goes to `node` if the password is right and nobody has it
+    private static String own(String name, String password, int node) {
+        if (!BattleShipServer.UserDatabase.checkLogin(name, password)) return INVALID;
+        return owners.putIfAbsent(name, node) == null ? null : TAKEN;
+    }
+
+    // Logout or lost connection of one of our players
+    static void release(String name) {
+        int home = home(name);
+        if (home == SELF) owners.remove(name, SELF);
+        else send(home, "RELEASE", name);
+    }
+
+    // Completes with null once the user is stored on its home node (the only one that
+    // needs it, see claim), else the REGISTER_FAILED reply
+    static CompletableFuture<String> register(String name, String password) {
+        int home = home(name);
+        if (home != SELF) return request(home, "REGISTER_FAILED:", "REG", name, password);
+        return BattleShipServer.UserDatabase.registerAsync(name, password).thenApply(ok -> ok ? null : "REGISTER_FAILED:Username taken");
+    }
+
+    // A line that is answered with DONE <id> [error]; a dropped link answers for the node
+    private static CompletableFuture<String> request(int node, String failure, String type, Object... fields) {
+        CompletableFuture<String> answer = new CompletableFuture<>();
+        Link link = links[node];
+        if (link == null) return CompletableFuture.completedFuture(failure + "Node " + IDS[node] + " unreachable, try again");
+        long id = nextId.incrementAndGet();
+        link.requests.put(id, answer);
+        Object[] line = new Object[fields.length + 2];
+        line[0] = type;
+        line[1] = id;
+        System.arraycopy(fields, 0, line, 2, fields.length);
+        link.send(line);
+        if (link.closed && link.requests.remove(id) != null) answer.complete(failure + "Node " + IDS[node] + " unreachable, try again");
+        return answer.thenApply(error -> error == null || error.startsWith(failure) ? error : failure + error);
+    }
+
+    private static void send(int node, Object... fields) {
+        Link link = links[node];
+        if (link != null) link.send(fields);
+    }
+
+
+    // --- Challenges ---
+
+    // CHALLENGE to a player of another node; false if nobody knows the name
+    static boolean challenge(String from, String to, int tag, Rules rules) {
+        Remote player = remote.get(to);
+        Link link = player == null ? null : links[player.node];
+        if (link == null) return false;
+        link.send("CHALLENGE", from, to, tag, rules.spec());
+        return true;
+    }
+
+    // A line (or the answer to request `tag`) for a player on another node
+    static void deliver(String name, int tag, String line) {
+        Remote player = remote.get(name);
+        if (player != null) send(player.node, "TO", name, tag, line);
+    }
+
+    // `player` accepted a challenge from a player on another node: the game starts
+    // there. Returns the error for the player, null if the challenger's node was asked.
+    static String accept(BattleShipServer.ClientHandler player, String challenger, int tag, Rules rules) {
+        Remote other = remote.get(challenger);
+        Link link = other == null ? null : links[other.node];
+        if (link == null) return "ERROR:Player not found";
+        RemoteSession game = new RemoteSession(link, nextId.incrementAndGet(), player, rules);
+        if (!player.joinRemoteGame(game)) return "ERROR:Finish your game first";
+        link.games.put(game.key, game);
+        link.send("ACCEPT", game.key, challenger, player.getUsername(), tag, rules.spec());
+        return null;
+    }
+
+    // Challenger's node: the game against `guest` of the other node
+    private static void host(Link link, long key, String challengerName, String guestName, int tag, Rules rules) {
+        BattleShipServer.ClientHandler challenger = BattleShipServer.onlinePlayers.get(challengerName);
+        if (challenger == null) { link.send("FAIL", key, tag, "ERROR:Player not found"); return; }
+        Guest connection = new Guest(link, key);
+        BattleShipServer.ClientHandler guest = new BattleShipServer.ClientHandler(connection, guestName);
+        connection.handler = guest;
+        link.hosted.put(key, guest);
+        if (BattleShipServer.ClientHandler.startGame(challenger, guest, false, rules) != null) {
+            link.hosted.remove(key);
+            link.send("FAIL", key, tag, "ERROR:Player is busy");
+            return;
+        }
+        Metrics.clusterGamesHosted.increment();
+    }
+
+
+    // --- Reading a link (one thread per link) ---
+
+    private static void onLine(Link link, String line) {
+        String[] parts = split(line);
+        switch (parts[0]) {
+            case "P":
+                presence(link, parts);
+                break;
+            case "CLAIM": { // CLAIM <id> <name> <password>
+                String error = own(parts[2], parts[3], link.peer);
+                if (error == null) link.send("DONE", parts[1]);
+                else link.send("DONE", parts[1], error);
+                break;
+            }
+            case "HOLD":
+                owners.putIfAbsent(parts[1], link.peer);
+                break;
+            case "RELEASE":
+                owners.remove(parts[1], link.peer);
+                break;
+            case "REG": { // REG <id> <name> <password>
+                String invalid = BattleShipServer.UserDatabase.checkCredentials(parts[2], parts[3]);
+                if (invalid != null) { link.send("DONE", parts[1], invalid); break; }
+                BattleShipServer.UserDatabase.registerAsync(parts[2], parts[3]).thenAccept(ok -> {
+                    if (ok) link.send("DONE", parts[1]);
+                    else link.send("DONE", parts[1], "REGISTER_FAILED:Username taken");
+                });
+                break;
+            }
+            case "DONE": { // DONE <id> [error]
+                CompletableFuture<String> request = link.requests.remove(Long.parseLong(parts[1]));
+                if (request != null) request.complete(parts.length > 2 ? parts[2] : null);
+                break;
+            }
+            case "CHALLENGE": { // CHALLENGE <from> <to> <tag> <mode>
+                BattleShipServer.ClientHandler opponent = BattleShipServer.onlinePlayers.get(parts[2]);
+                String error = opponent == null ? "ERROR:Player not found" : opponent.offerChallenge(parts[1], Rules.parse(parts[4]));
+                if (error != null) link.send("TO", parts[1], parts[3], error);
+                break;
+            }
+            case "TO": { // TO <name> <tag> <line>
+                BattleShipServer.ClientHandler player = BattleShipServer.onlinePlayers.get(parts[1]);
+                if (player != null) player.reply(Integer.parseInt(parts[2]), parts[3]);
+                break;
+            }
+            case "ACCEPT": // ACCEPT <key> <challenger> <guest> <tag> <mode>
+                host(link, Long.parseLong(parts[1]), parts[2], parts[3], Integer.parseInt(parts[4]), Rules.parse(parts[5]));
+                break;
+            case "FAIL": { // FAIL <key> <tag> <error>: the game did not start
+                RemoteSession game = link.games.get(Long.parseLong(parts[1]));
+                if (game != null) game.failed(Integer.parseInt(parts[2]), parts[3]);
+                break;
+            }
+            case "M": { // M <key> <command line> of our guest
+                BattleShipServer.ClientHandler guest = link.hosted.get(Long.parseLong(parts[1]));
+                if (guest != null) {
+                    byte[] command = parts[2].getBytes(StandardCharsets.UTF_8);
+                    guest.onLine(command, 0, command.length);
+                }
+                break;
+            }
+            case "G": { // G <key> <line> for our player
+                RemoteSession game = link.games.get(Long.parseLong(parts[1]));
+                if (game != null) game.deliver(parts[2]);
+                break;
+            }
+            case "LEFT": { // LEFT <key>: the guest disconnected
+                BattleShipServer.ClientHandler guest = link.hosted.remove(Long.parseLong(parts[1]));
+                if (guest != null) guest.onClose();
+                break;
+            }
+            default:
+                Log.warn("Cluster: unknown line from node {}: {}", IDS[link.peer], parts[0]);
+        }
+    }
+
+
+    // LINK -> One TCP connection to another node: a reader thread and a writer thread
+    // that sends whatever queued up since its last write in one go
+    private static final class Link {
+        final int peer;
+        private final Socket socket;
+        private final BufferedReader in;
+        private final Writer out;
+        private final LinkedBlockingQueue<String> queue = new LinkedBlockingQueue<>(QUEUE);
+        private Thread writer;
+        volatile boolean closed = false;
+        private volatile boolean overflowed = false;
+
+        final ConcurrentHashMap<Long, CompletableFuture<String>> requests = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Long, BattleShipServer.ClientHandler> hosted = new ConcurrentHashMap<>(); // their players, our games
+        final ConcurrentHashMap<Long, RemoteSession> games = new ConcurrentHashMap<>();                   // our players, their games
+
+        Link(int peer, Socket socket, BufferedReader in) throws IOException {
+            this.peer = peer;
+            this.socket = socket;
+            this.in = in;
+            this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), 1 << 16);
+        }
+
+        void start() {
+            writer = new Thread(this::write, "cluster-out-" + IDS[peer]);
+            writer.setDaemon(true);
+            writer.start();
+            daemon("cluster-in-" + IDS[peer], this::read);
+        }
+
+        void send(Object... fields) {
+            sendLine(line(fields));
+        }
+
+        // A line made with line() (or of escaped fields)
+        void sendLine(String line) {
+            if (!closed && !overflowed && !queue.offer(line)) overflow();
+        }
+
+        // The other node stopped reading (or we send faster than the link can carry):
+        // rather than queue without end the link goes, like a dead one. The link's own
+        // threads see the closed socket and run close(), not whoever tried to send.
+        private void overflow() {
+            synchronized (this) {
+                if (overflowed) return;
+                overflowed = true;
+            }
+            Metrics.clusterLinkOverflows.increment();
+            Log.warn("Cluster: link to node {} dropped, {} lines queued", IDS[peer], QUEUE);
+            try { socket.close(); } catch (IOException e) { }
+            if (writer != null) writer.interrupt();
+        }
+
+        int queued() { return queue.size(); }
+
+        private void read() {
+            try {
+                for (String line; (line = in.readLine()) != null; ) {
+                    Metrics.clusterLinesReceived.increment();
+                    try {
+                        onLine(this, line);
+                    } catch (RuntimeException e) {
+                        Log.error("Cluster: bad line from node {}: {}", IDS[peer], e.toString());
+                    }
+                }
+            } catch (IOException e) {
+                // closed
+            }
+            close();
+        }
+
+        private void write() {
+            List<String> batch = new ArrayList<>(BATCH);
+            try {
+                while (!closed) {
+                    batch.add(queue.take());
+                    queue.drainTo(batch, BATCH - 1);
+                    for (String line : batch) { out.write(line); out.write('\n'); }
+                    out.flush();
+                    Metrics.clusterLinesSent.add(batch.size());
+                    batch.clear();
+                }
+            } catch (IOException | InterruptedException e) {
+                // closed
+            }
+            close();
+        }
+
+        void close() {
+            synchronized (this) {
+                if (closed) return;
+                closed = true;
+            }
+            try { socket.close(); } catch (IOException e) { }
+            if (writer != null) writer.interrupt();
+            down(this);
+        }
+    }
+
+
+    // GUEST -> Connection of a player from another node in a match on this node:
+    // everything the server sends it goes back over the link
+    private static final class Guest implements ConnectionEngine.Connection {
+        private final Link link;
+        private final long key;
+        BattleShipServer.ClientHandler handler;
+
+        Guest(Link link, long key) { this.link = link; this.key = key; }
+
+        @Override public void send(String line) {
+            link.send("G", key, line);
+            if (line.startsWith("GAME_OVER")) link.hosted.remove(key, handler);
+        }
+        @Override public void sendBytes(byte[] data) { send(new String(data, 0, data.length - 1, StandardCharsets.UTF_8)); } // a line with its '\n'
+        @Override public void useBinaryFraming() { }
+        @Override public void close() { }
+        @Override public String remoteAddress() { return "node " + IDS[link.peer]; }
+        @Override public int pendingBytes() { return 0; }
+    }
+
+
+    // REMOTE SESSION -> Stands in for a match that runs on another node, as the
+    // currentSession of our player. Its moves still go through the player's game shard
+    // (so they stay in order) and from there over the link.
+    static final class RemoteSession extends BattleShipServer.GameSession {
+        private final Link link;
+        final long key;
+        private final BattleShipServer.ClientHandler player;
+        private volatile boolean over = false;
+
+        RemoteSession(Link link, long key, BattleShipServer.ClientHandler player, Rules rules) {
+            super(player, player, rules);
+            this.link = link;
+            this.key = key;
+            this.player = player;
+        }
+
+        @Override public boolean isOver() { return over; }
+
+        @Override
+        public void placeShip(BattleShipServer.ClientHandler player, int row, int col, boolean vertical, int tag) {
+            forward(tag, "PLACE_SHIP:" + row + "," + col + "," + (vertical ? 'V' : 'H'));
+        }
+
+        @Override
+        public void placeFleet(BattleShipServer.ClientHandler player, int[] fleet, int tag) {
+            StringBuilder line = new StringBuilder("PLACE_FLEET:");
+            for (int i = 0; i < fleet.length; i += 3) {
+                if (i > 0) line.append(';');
+                line.append(fleet[i]).append(',').append(fleet[i + 1]).append(',').append(fleet[i + 2] == 1 ? 'V' : 'H');
+            }
+            forward(tag, line.toString());
+        }
+
+        @Override
+        public void processMove(BattleShipServer.ClientHandler player, int row, int col, int tag) {
+            forward(tag, "FIRE:" + row + "," + col);
+        }
+
+        private void forward(int tag, String command) {
+            if (over) { player.reply(tag, "ERROR:Game over"); return; }
+            link.send("M", key, (tag != 0 ? "#" + tag + " " : "") + command);
+        }
+
+        @Override
+        void playerLeft(BattleShipServer.ClientHandler player) {
+            if (over) return;
+            finish();
+            link.send("LEFT", key);
+        }
+
+        @Override
+        void addSpectator(BattleShipServer.ClientHandler viewer) {
+            viewer.stopWatching(this);
+            viewer.sendMessage("ERROR:That match runs on node " + IDS[link.peer] + ", watch it there");
+        }
+
+        // Link thread: a line of the match for our player ("#<id> " = answer to its command)
+        void deliver(String line) {
+            if (line.startsWith("GAME_OVER")) finish();
+            if (line.startsWith("#")) {
+                int space = line.indexOf(' ');
+                player.reply(Integer.parseInt(line.substring(1, space)), line.substring(space + 1));
+            } else {
+                player.sendMessage(line);
+            }
+        }
+
+        void failed(int tag, String error) {
+            finish();
+            player.reply(tag, error);
+        }
+
+        void lost() {
+            if (over) return;
+            finish();
+            player.sendMessage("GAME_OVER:YOU_WON:Opponent's node went away");
+        }
+
+        private void finish() {
+            over = true;
+            link.games.remove(key, this);
+            Presence.changed(player.getUsername());
+        }
+    }
+
+
+    static void report(Metrics.Report report) {
+        if (!enabled()) return;
+        int up = 0, queued = 0, hosted = 0, games = 0;
+        for (Link link : links) {
+            if (link == null) continue;
+            up++;
+            queued += link.queued();
+            hosted += link.hosted.size();
+            games += link.games.size();
+        }
+        report.add("cluster_node", IDS[SELF]);
+        report.add("cluster_links_up", up + "/" + (IDS.length - 1));
+        report.add("cluster_link_drops_total", Metrics.clusterLinkDrops.sum());
+        report.add("cluster_link_overflows_total", Metrics.clusterLinkOverflows.sum());
+        report.add("cluster_remote_players", remote.size());
+        report.add("cluster_logins_homed", owners.size());
+        report.add("cluster_lines_sent_total", Metrics.clusterLinesSent.sum());
+        report.add("cluster_lines_received_total", Metrics.clusterLinesReceived.sum());
+        report.add("cluster_link_queued", queued);
+        report.add("cluster_games_hosted", hosted);
+        report.add("cluster_games_hosted_total", Metrics.clusterGamesHosted.sum());
+        report.add("cluster_games_remote", games);
+        if (Metrics.clusterClaims.count() > 0) report.add("cluster_login_claim_latency", Metrics.clusterClaims.summary());
+    }
+}
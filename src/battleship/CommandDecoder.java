@@ -0,0 +1,250 @@
+/**
+ * CommandDecoder.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * Parses one protocol line (e.g. "FIRE:B,5") straight from the received bytes into a
+ * reusable Command object. The command word is looked up in a small opcode table, the
+ * arguments are parsed according to the opcode's shape. Bad input never throws, it
+ * produces Opcode.INVALID with an error message the server can send back as is.
+ * Only LOGIN / REGISTER / CHALLENGE* create Strings (the user names); FIRE and
+ * PLACE_SHIP are decoded into plain ints without allocating.
+ * Any command may start with a request id, "#17 FIRE:B,5": the server's direct answers
+ * to it (HIT / MISS / SUNK, SHIP_PLACED, ERROR, ...) then start with "#17 " as well, so
+ * a client can keep several commands in flight. Events (ENEMY_HIT, GAME_START, ...) never
+ * carry one.
+ */
+
+package battleship;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public final class CommandDecoder {
+
+    // What follows the ':' of a command
+    enum Shape { NONE, CREDENTIALS, NAME, OPTIONAL_NAME, PLACEMENT, COORDINATE, FLEET } // OPTIONAL_NAME: NAME or nothing
+
+    // code = the opcode byte of the binary protocol (see BinaryProtocol), never reuse one
+    public enum Opcode {
+        LOGIN(1, Shape.CREDENTIALS),
+        REGISTER(2, Shape.CREDENTIALS),
+        PLAYER_LIST(3, Shape.NONE),
+        CHALLENGE(4, Shape.NAME),
+        CHALLENGE_ACCEPTED(5, Shape.NAME),
+        CHALLENGE_DECLINED(6, Shape.NAME),
+        PLACE_SHIP(7, Shape.PLACEMENT),
+        FIRE(8, Shape.COORDINATE),
+        LOGOUT(9, Shape.NONE),
+        PROTO(10, Shape.NAME),
+        STATS(11, Shape.NONE),
+        QUICKPLAY(12, Shape.NONE),
+        PRESENCE(13, Shape.NAME),
+        SPECTATE(14, Shape.NAME),
+        REPLAY(15, Shape.NAME),
+        PLAY_AI(16, Shape.OPTIONAL_NAME),
+        PLACE_FLEET(17, Shape.FLEET),   // PLACE_FLEET:A,0,V;B,2,H;... every ship at once, in fleet order
+        INVALID(0, Shape.NONE);
+
+        final int code;
+        final Shape shape;
+        final byte[] token;
+
+        Opcode(int code, Shape shape) {
+            this.code = code;
+            this.shape = shape;
+            this.token = name().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    // Decoded command, one instance per connection that is overwritten on every line
+    public static final class Command {
+        public Opcode opcode = Opcode.INVALID;
+        public int tag;             // "#<id> " request id, 0 = none
+        public String error;        // set when opcode == INVALID
+        public String name;         // CHALLENGE*, LOGIN / REGISTER user
+        public String mode;         // CHALLENGE:name:<mode>, see Rules (null: classic)
+        public String password;     // LOGIN / REGISTER
+        public int row, col;        // FIRE / PLACE_SHIP
+        public boolean vertical;    // PLACE_SHIP
+        public int[] fleet;         // PLACE_FLEET: row, col, vertical (1 / 0) per ship, a new array per line
+
+        void reset() {
+            opcode = Opcode.INVALID;
+            tag = 0; fleet = null;
+            error = null; name = null; password = null; mode = null;
+            row = col = 0; vertical = false;
+        }
+    }
+
+    // Error replies, shared constants so rejecting input costs nothing
+    static final String ERR_UNKNOWN = "ERROR:Unknown command";
+    static final String ERR_CREDENTIALS = "ERROR:Expected user@pass";
+    static final String ERR_NAME = "ERROR:Expected player name";
+    static final String ERR_COORDINATE = "ERROR:Expected Row,Col (e.g. B,5)";
+    static final String ERR_PLACEMENT = "ERROR:Expected Row,Col,Dir (e.g. A,0,V)";
+    static final String ERR_FLEET = "ERROR:Expected Row,Col,Dir;Row,Col,Dir;... (e.g. A,0,V;B,2,H)";
+    static final String ERR_TAG = "ERROR:Expected #<id> <command> (id 1 to 999999999)";
+    static final String ERR_FRAME = "ERROR:Malformed frame";
+
+    // Opcode table indexed by the first letter of the command word
+    private static final Opcode[][] BY_FIRST_LETTER = new Opcode[128][];
+    static {
+        for (Opcode op : Opcode.values()) {
+            if (op == Opcode.INVALID) continue;
+            int first = op.token[0];
+            Opcode[] old = BY_FIRST_LETTER[first];
+            Opcode[] grown = old == null ? new Opcode[1] : Arrays.copyOf(old, old.length + 1);
+            grown[grown.length - 1] = op;
+            BY_FIRST_LETTER[first] = grown;
+        }
+    }
+
+    // Decodes buf[off, off + len) into cmd. Returns false when the line was rejected.
+    public static boolean decode(byte[] buf, int off, int len, Command cmd) {
+        cmd.reset();
+        int end = off + len;
+
+        // Request id: "#" up to 9 digits and one space before the command
+        if (len > 0 && buf[off] == '#') {
+            int i = off + 1, tag = 0;
+            while (i < end && i <= off + 9 && buf[i] >= '0' && buf[i] <= '9') tag = tag * 10 + (buf[i++] - '0');
+            if (tag == 0 || i >= end || buf[i] != ' ') return fail(cmd, ERR_TAG);
+            cmd.tag = tag;
+            off = i + 1;
+        }
+
+        // Command word runs up to the first ':' (or the end of the line)
+        int colon = off;
+        while (colon < end && buf[colon] != ':') colon++;
+        Opcode op = lookup(buf, off, colon - off);
+        if (op == null) return fail(cmd, ERR_UNKNOWN);
+
+        // Like the old split(":")[1], the argument stops at the next ':'
+        int argStart = colon + 1;
+        int argEnd = argStart;
+        while (argEnd < end && buf[argEnd] != ':') argEnd++;
+        if (argStart > end) argStart = argEnd = end;
+
+        switch (op.shape) {
+            case NONE:
+                break;
+            case OPTIONAL_NAME: case NAME:
+                if (argEnd == argStart) {
+                    if (op.shape == Shape.OPTIONAL_NAME) break;
+                    return fail(cmd, ERR_NAME);
+                }
+                cmd.name = text(buf, argStart, argEnd);
+                if (argEnd < end - 1) cmd.mode = text(buf, argEnd + 1, end); // the rest, ':' and all
+                break;
+            case CREDENTIALS: {
+                int at = argStart;
+                while (at < argEnd && buf[at] != '@') at++;
+                if (at == argStart || at >= argEnd - 1) return fail(cmd, ERR_CREDENTIALS);
+                for (int i = at + 1; i < argEnd; i++) if (buf[i] == '@') return fail(cmd, ERR_CREDENTIALS);
+                cmd.name = text(buf, argStart, at);
+                cmd.password = text(buf, at + 1, argEnd);
+                break;
+            }
+            case COORDINATE: {
+                int next = parseCoordinate(buf, argStart, argEnd, cmd);
+                if (next != argEnd) return fail(cmd, ERR_COORDINATE);
+                break;
+            }
+            case PLACEMENT:
+                if (!parsePlacement(buf, argStart, argEnd, cmd)) return fail(cmd, ERR_PLACEMENT);
+                break;
+            case FLEET: {
+                int ships = 1;
+                for (int i = argStart; i < argEnd; i++) if (buf[i] == ';') ships++;
+                if (argEnd == argStart || ships > Rules.MAX_SHIPS) return fail(cmd, ERR_FLEET);
+                int[] fleet = new int[ships * 3];
+                for (int ship = 0, start = argStart; ship < ships; ship++) {
+                    int stop = start;
+                    while (stop < argEnd && buf[stop] != ';') stop++;
+                    if (!parsePlacement(buf, start, stop, cmd)) return fail(cmd, ERR_FLEET);
+                    fleet[ship * 3] = cmd.row;
+                    fleet[ship * 3 + 1] = cmd.col;
+                    fleet[ship * 3 + 2] = cmd.vertical ? 1 : 0;
+                    start = stop + 1;
+                }
+                cmd.row = cmd.col = 0;
+                cmd.vertical = false;
+                cmd.fleet = fleet;
+                break;
+            }
+        }
+        cmd.opcode = op;
+        return true;
+    }
+
+    // "R,C,Dir" into cmd. Direction: only the first letter counts, as before ("V", "v", "Vertical")
+    private static boolean parsePlacement(byte[] buf, int start, int end, Command cmd) {
+        int next = parseCoordinate(buf, start, end, cmd);
+        if (next < 0 || next >= end - 1 || buf[next] != ',') return false;
+        byte dir = buf[next + 1];
+        if (dir == 'V' || dir == 'v') cmd.vertical = true;
+        else if (dir == 'H' || dir == 'h') cmd.vertical = false;
+        else return false;
+        return true;
+    }
+
+    // Parses "R,C" where R is a letter or a number (large boards, see Rules) and C a
+    // number, returns the index after C or -1
+    private static int parseCoordinate(byte[] buf, int start, int end, Command cmd) {
+        if (end - start < 3) return -1;
+        byte letter = buf[start];
+        int i;
+        if (letter >= 'A' && letter <= 'Z') { cmd.row = letter - 'A'; i = start + 1; }
+        else if (letter >= 'a' && letter <= 'z') { cmd.row = letter - 'a'; i = start + 1; }
+        else {
+            long row = parseNumber(buf, start, end);
+            if (row < 0) return -1;
+            cmd.row = (int) (row >>> 32);
+            i = (int) row;
+        }
+        if (i >= end || buf[i] != ',') return -1;
+
+        long col = parseNumber(buf, i + 1, end);
+        if (col < 0) return -1;
+        cmd.col = (int) (col >>> 32);
+        return (int) col;
+    }
+
+    // Up to 4 digits: value << 32 | index after them, -1 if there are none (or too many)
+    private static long parseNumber(byte[] buf, int i, int end) {
+        int value = 0, digits = 0;
+        while (i < end && buf[i] >= '0' && buf[i] <= '9') {
+            if (++digits > 4) return -1;
+            value = value * 10 + (buf[i++] - '0');
+        }
+        if (digits == 0) return -1;
+        return (long) value << 32 | i;
+    }
+
+    private static Opcode lookup(byte[] buf, int off, int len) {
+        if (len == 0 || buf[off] < 0) return null;
+        Opcode[] candidates = BY_FIRST_LETTER[buf[off]];
+        if (candidates == null) return null;
+        for (Opcode op : candidates) {
+            byte[] token = op.token;
+            if (token.length != len) continue;
+            int i = 1;
+            while (i < len && token[i] == buf[off + i]) i++;
+            if (i == len) return op;
+        }
+        return null;
+    }
+
+    static boolean fail(Command cmd, String error) {
+        cmd.opcode = Opcode.INVALID;
+        cmd.error = error;
+        return false;
+    }
+
+    private static String text(byte[] buf, int start, int end) {
+        return new String(buf, start, end - start, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,611 @@
+/**
+ * ConnectionEngine.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * Pluggable transport layer of the server. An engine accepts TCP connections, splits the
+ * incoming bytes into protocol lines and hands every line to a LineHandler (the
+ * ClientHandler). The game logic never touches sockets directly, it only talks to a
+ * Connection, so the same command code runs on every engine:
+ *   - "nio"     : a few Selector event loops multiplex all sockets (no thread per client)
+ *   - "virtual" : one virtual thread per connection (JDK 21+, falls back to "thread")
+ *   - "thread"  : the original blocking platform thread per connection
+ * Outgoing messages never touch the socket on the sender's thread: send() only appends
+ * to the connection's bounded outbound queue, and a flusher (the event loop, or a writer
+ * task for the blocking engines) coalesces everything pending into as few writes as
+ * possible. A client whose queue overflows is dropped or loses messages (--slow-consumer).
+ */
+
+package battleship;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+public abstract class ConnectionEngine {
+    // Longest line we accept from a client, anything bigger is treated as garbage
+    static final int MAX_LINE = 4096;
+
+    // Outbound queue limits, see QueuedConnection
+    static final int OUTBOUND_LIMIT = ServerConfig.getInt("outbound-kb", 256) * 1024;
+    static final boolean DROP_WHEN_FULL = ServerConfig.get("slow-consumer", "disconnect").equalsIgnoreCase("drop");
+    static final LongAdder droppedMessages = new LongAdder();
+    static final LongAdder slowConsumerDisconnects = new LongAdder();
+
+    // Every connection that is not closed yet (for Metrics, walked only on a report)
+    static final Set<QueuedConnection> openConnections = ConcurrentHashMap.newKeySet();
+
+    // Server side view of one client connection, safe to use from any thread
+    public interface Connection {
+        void send(String line);
+        void sendBytes(byte[] data);      // already framed bytes, sent as they are
+        void useBinaryFraming();          // following input is read as BinaryProtocol frames
+        void close();
+        String remoteAddress();
+        int pendingBytes();               // queued for sending, not yet written
+    }
+
+    // Receives the lines of one connection, always called from a single thread at a time.
+    // The line is buf[off, off + len) without the line terminator, the array is reused
+    // by the engine as soon as onLine() returns. After useBinaryFraming() the input
+    // arrives through onFrame() instead (buf[off] = opcode, without the length prefix).
+    public interface LineHandler {
+        void onLine(byte[] buf, int off, int len);
+        void onFrame(byte[] buf, int off, int len);
+        void onClose();
+    }
+
+    protected final int port;
+    protected final Function<Connection, LineHandler> handlerFactory;
+
+    protected ConnectionEngine(int port, Function<Connection, LineHandler> handlerFactory) {
+        this.port = port;
+        this.handlerFactory = handlerFactory;
+    }
+
+    // Blocks the calling thread and serves clients until the process stops
+    public abstract void start() throws IOException;
+
+    // Engine specific lines for the metrics report
+    void report(Metrics.Report report) {}
+
+    public static ConnectionEngine create(String mode, int port, Function<Connection, LineHandler> handlerFactory) {
+        switch (mode.toLowerCase()) {
+            case "nio": return new SelectorEngine(port, ServerConfig.eventLoops(), handlerFactory);
+            case "virtual": return new BlockingEngine(port, virtualThreadExecutor(), handlerFactory);
+            case "thread": return new BlockingEngine(port, null, handlerFactory);
+            default: throw new IllegalArgumentException("Unknown engine: " + mode);
+        }
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() looked up reflectively so the server
+    // still compiles and runs on JDKs without virtual threads.
+    static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.out.println("Virtual threads not available on this JDK, using platform threads.");
+            return null;
+        }
+    }
+
+
+    // BLOCKING ENGINE -> One (platform or virtual) thread per client blocking in read().
+    // Outbound queues are flushed by short writer tasks, so a stalled client only ever
+    // blocks its own writer, never the thread that produced the message.
+    static class BlockingEngine extends ConnectionEngine {
+        private final ExecutorService executor; // null = plain new Thread() per client
+        private final ExecutorService writers;
+
+        BlockingEngine(int port, ExecutorService executor, Function<Connection, LineHandler> handlerFactory) {
+            super(port, handlerFactory);
+            this.executor = executor;
+            this.writers = executor != null ? executor : Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "writer");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        @Override
+        void report(Metrics.Report report) {
+            report.add("engine", executor != null ? "virtual" : "thread");
+        }
+
+        @Override
+        public void start() throws IOException {
+            System.out.println("Connection engine: " + (executor != null ? "virtual threads" : "thread per connection"));
+            try (ServerSocket serverSocket = new ServerSocket(port)) {
+                while (true) {
+                    // Block until a client connects
+                    Socket clientSocket = serverSocket.accept();
+                    Log.log(Log.Level.INFO, "New connection: {}", clientSocket.getInetAddress());
+
+                    SocketConnection connection = new SocketConnection(clientSocket);
+                    if (executor != null) executor.execute(connection);
+                    else new Thread(connection).start();
+                }
+            }
+        }
+
+        class SocketConnection extends QueuedConnection implements Runnable {
+            private final Socket socket;
+            private volatile OutputStream out;
+
+            SocketConnection(Socket socket) { this.socket = socket; }
+
+            @Override
+            public void run() {
+                LineHandler handler = null;
+                try {
+                    InputStream in = socket.getInputStream();
+                    out = socket.getOutputStream();
+                    handler = handlerFactory.apply(this);
+
+                    byte[] buf = new byte[4096];
+                    int n;
+                    while ((n = in.read(buf)) > 0) {
+                        if (!framer.feed(buf, 0, n, handler, this)) break; // line too long
+                    }
+                } catch (IOException e) {
+                    // socket closed by us (LOGOUT) or by the peer
+                } finally {
+                    close();
+                    if (handler != null) handler.onClose();
+                }
+            }
+
+            @Override
+            protected void scheduleFlush() { writers.execute(this::flush); }
+
+            // Writer task: everything queued goes out in as few write() calls as possible
+            private void flush() {
+                ByteBuffer buffer = ByteBuffer.allocate(Math.min(Math.max(pendingBytes(), 256), 64 * 1024));
+                try {
+                    do {
+                        int n;
+                        while ((n = drainTo(buffer)) > 0) {
+                            if (out != null) out.write(buffer.array(), 0, n);
+                            buffer.clear();
+                        }
+                    } while (flushAgain());
+                } catch (IOException e) {
+                    close();
+                }
+            }
+
+            @Override
+            public void close() {
+                if (closed.compareAndSet(false, true)) {
+                    openConnections.remove(this);
+                    clearOutbound();
+                }
+                try { socket.close(); } catch (IOException e) {}
+            }
+            @Override
+            public String remoteAddress() { return String.valueOf(socket.getInetAddress()); }
+        }
+    }
+
+
+    // SELECTOR ENGINE -> Non-blocking sockets multiplexed over a fixed set of event loops.
+    // An idle client costs a channel, a selection key and one small object, no thread.
+    static class SelectorEngine extends ConnectionEngine {
+        private final EventLoop[] loops;
+        private int nextLoop = 0;
+
+        SelectorEngine(int port, int loopCount, Function<Connection, LineHandler> handlerFactory) {
+            super(port, handlerFactory);
+            this.loops = new EventLoop[Math.max(1, loopCount)];
+        }
+
+        @Override
+        void report(Metrics.Report report) {
+            report.add("engine", "nio");
+            for (EventLoop loop : loops) {
+                if (loop == null) continue;
+                // Written by the loop thread only, a report may read slightly stale values
+                report.add(loop.getName(), "connections=" + loop.connections + " selects=" + loop.selects
+                        + " reads=" + loop.reads + " tasks=" + loop.tasksRun + " pending_tasks=" + loop.tasks.size());
+            }
+        }
+
+        @Override
+        public void start() throws IOException {
+            for (int i = 0; i < loops.length; i++) {
+                loops[i] = new EventLoop(i, handlerFactory);
+                loops[i].start();
+            }
+            System.out.println("Connection engine: nio (" + loops.length + " event loops)");
+
+            try (ServerSocketChannel server = ServerSocketChannel.open()) {
+                server.bind(new InetSocketAddress(port), 1024);
+                while (true) {
+                    SocketChannel channel = server.accept();
+                    Log.log(Log.Level.INFO, "New connection: {}", channel.socket().getInetAddress());
+                    try {
+                        channel.configureBlocking(false);
+                        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    } catch (IOException e) {
+                        try { channel.close(); } catch (IOException ignored) {}
+                        continue;
+                    }
+                    // Round robin the new client onto one of the loops
+                    EventLoop loop = loops[nextLoop];
+                    nextLoop = (nextLoop + 1) % loops.length;
+                    loop.execute(() -> loop.register(channel));
+                }
+            }
+        }
+    }
+
+    // One selector thread. Reads, writes and all LineHandler callbacks for its
+    // connections run here, other threads hand work over through execute().
+    static class EventLoop extends Thread {
+        private final Selector selector;
+        private final Function<Connection, LineHandler> handlerFactory;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        // Shared by every connection of this loop, reads are consumed immediately.
+        // Heap backed so complete lines can be handed to the handler without a copy.
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(16 * 1024);
+        // Outbound queues of this loop's connections are gathered here before a write
+        final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(64 * 1024);
+
+        // Loop statistics for Metrics
+        long selects, reads, tasksRun;
+        int connections;
+
+        EventLoop(int id, Function<Connection, LineHandler> handlerFactory) throws IOException {
+            super("nio-loop-" + id);
+            setDaemon(true);
+            this.selector = Selector.open();
+            this.handlerFactory = handlerFactory;
+        }
+
+        void execute(Runnable task) {
+            tasks.add(task);
+            if (Thread.currentThread() != this) selector.wakeup();
+        }
+
+        void register(SocketChannel channel) {
+            NioConnection connection = new NioConnection(this, channel);
+            connections++;
+            try {
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                connection.handler = handlerFactory.apply(connection);
+            } catch (IOException e) {
+                connection.closeNow();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    // Tasks queued from this thread don't wake the selector, so never block then
+                    if (tasks.isEmpty()) selector.select();
+                    else selector.selectNow();
+                    selects++;
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                        tasksRun++;
+                    }
+
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        NioConnection connection = (NioConnection) key.attachment();
+                        if (!key.isValid()) { connection.closeNow(); continue; }
+                        if (key.isWritable()) connection.flush();
+                        if (key.isValid() && key.isReadable()) {
+                            reads++;
+                            connection.read(readBuffer);
+                        }
+                    }
+                } catch (Exception e) {
+                    // One misbehaving handler must not take the whole loop down
+                    Log.error("Event loop error", e);
+                }
+            }
+        }
+    }
+
+    // NIO CONNECTION -> State of one non-blocking client. Only a partially received line
+    // is buffered per client (see LineFramer), complete lines go straight to the handler.
+    // Outbound data is gathered into the loop's write buffer; only when the socket can't
+    // take all of it is the rest kept per connection until OP_WRITE fires.
+    static class NioConnection extends QueuedConnection {
+        private final EventLoop loop;
+        private final SocketChannel channel;
+        private final String address;
+        SelectionKey key;
+        LineHandler handler;
+
+        private ByteBuffer unsent; // tail of a write the socket didn't accept, null when none
+
+        NioConnection(EventLoop loop, SocketChannel channel) {
+            this.loop = loop;
+            this.channel = channel;
+            this.address = String.valueOf(channel.socket().getInetAddress());
+        }
+
+        // Called by the loop when the channel is readable
+        void read(ByteBuffer buffer) {
+            int n;
+            try {
+                buffer.clear();
+                n = channel.read(buffer);
+            } catch (IOException e) {
+                n = -1;
+            }
+            if (n < 0) { closeNow(); return; }
+
+            try {
+                if (!framer.feed(buffer.array(), 0, n, handler, this)) closeNow(); // line too long
+            } catch (RuntimeException e) {
+                // Same outcome as a crashing handler thread in the blocking engines
+                Log.error("Handler failed, closing {}", address, e);
+                closeNow();
+            }
+        }
+
+        @Override
+        protected void scheduleFlush() { loop.execute(this::flush); }
+
+        // Writes as much as the socket takes, waits for OP_WRITE on a full send buffer
+        void flush() {
+            if (closed.get()) return;
+            try {
+                if (unsent != null) {
+                    channel.write(unsent);
+                    if (unsent.hasRemaining()) { waitForWritable(); return; }
+                    unsent = null;
+                }
+                ByteBuffer buffer = loop.writeBuffer;
+                do {
+                    buffer.clear();
+                    while (drainTo(buffer) > 0) {
+                        buffer.flip();
+                        channel.write(buffer);
+                        if (buffer.hasRemaining()) {
+                            unsent = ByteBuffer.allocate(buffer.remaining()).put(buffer);
+                            unsent.flip();
+                            waitForWritable();
+                            return;
+                        }
+                        buffer.clear();
+                    }
+                    if ((key.interestOps() & SelectionKey.OP_WRITE) != 0) key.interestOps(SelectionKey.OP_READ);
+                } while (flushAgain());
+            } catch (IOException | CancelledKeyException e) {
+                closeNow();
+            }
+        }
+
+        private void waitForWritable() {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        @Override
+        public void close() {
+            if (Thread.currentThread() == loop) closeNow();
+            else loop.execute(this::closeNow);
+        }
+
+        void closeNow() {
+            if (!closed.compareAndSet(false, true)) return;
+            openConnections.remove(this);
+            loop.connections--;
+            if (key != null) key.cancel();
+            try { channel.close(); } catch (IOException e) {}
+            clearOutbound();
+            unsent = null;
+            if (handler != null) handler.onClose();
+        }
+
+        @Override
+        public String remoteAddress() { return address; }
+    }
+
+    // QUEUED CONNECTION -> Bounded outbound queue shared by all engines. send() encodes the
+    // line and appends it; the first sender that finds no flush pending schedules one.
+    // Only one flush runs at a time per connection, it drains the queue with drainTo().
+    abstract static class QueuedConnection implements Connection {
+        // Input framing, swapped by useBinaryFraming() on the reading thread
+        Framer framer = new LineFramer();
+
+        private final Queue<byte[]> outbound = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger outboundBytes = new AtomicInteger();
+        private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+        protected final AtomicBoolean closed = new AtomicBoolean(false);
+        private int headOffset = 0; // bytes of the head message already drained (flusher only)
+
+        QueuedConnection() {
+            openConnections.add(this);
+            Metrics.connectionsAccepted.increment();
+        }
+
+        // Runs flush logic on the engine's flusher; called at most once until flushAgain()
+        protected abstract void scheduleFlush();
+
+        @Override
+        public void send(String line) {
+            if (!closed.get()) sendBytes(encodeLine(line));
+        }
+
+        @Override
+        public void useBinaryFraming() { framer = new FrameDecoder(); }
+
+        @Override
+        public void sendBytes(byte[] bytes) {
+            if (closed.get()) return;
+            if (outboundBytes.addAndGet(bytes.length) > OUTBOUND_LIMIT) {
+                outboundBytes.addAndGet(-bytes.length);
+                // Slow consumer: it isn't reading fast enough, don't let it grow without bound
+                if (DROP_WHEN_FULL) {
+                    droppedMessages.increment();
+                } else {
+                    slowConsumerDisconnects.increment();
+                    close();
+                }
+                return;
+            }
+            outbound.add(bytes);
+            if (flushScheduled.compareAndSet(false, true)) scheduleFlush();
+        }
+
+        @Override
+        public int pendingBytes() { return outboundBytes.get(); }
+
+        // Copies queued messages into buffer until it is full or the queue is empty.
+        // Returns the number of bytes copied (a message may be split across calls).
+        protected final int drainTo(ByteBuffer buffer) {
+            int copied = 0;
+            byte[] head;
+            while (buffer.hasRemaining() && (head = outbound.peek()) != null) {
+                int n = Math.min(head.length - headOffset, buffer.remaining());
+                buffer.put(head, headOffset, n);
+                headOffset += n;
+                copied += n;
+                if (headOffset == head.length) {
+                    outbound.poll();
+                    headOffset = 0;
+                }
+            }
+            outboundBytes.addAndGet(-copied);
+            return copied;
+        }
+
+        // Ends a flush. Returns true if more was queued meanwhile and the caller should
+        // keep flushing (it still owns the flush).
+        protected final boolean flushAgain() {
+            flushScheduled.set(false);
+            return !outbound.isEmpty() && !closed.get() && flushScheduled.compareAndSet(false, true);
+        }
+
+        protected final void clearOutbound() {
+            outbound.clear();
+            outboundBytes.set(0);
+        }
+
+        // line + '\n' as UTF-8, without the intermediate String for plain ASCII lines
+        static byte[] encodeLine(String line) {
+            int length = line.length();
+            byte[] bytes = new byte[length + 1];
+            for (int i = 0; i < length; i++) {
+                char c = line.charAt(i);
+                if (c >= 0x80) return (line + "\n").getBytes(StandardCharsets.UTF_8);
+                bytes[i] = (byte) c;
+            }
+            bytes[length] = '\n';
+            return bytes;
+        }
+    }
+
+    // FRAMER -> Splits the input of one connection into messages for the LineHandler.
+    interface Framer {
+        // Returns false when a message exceeds the size limit, the connection should then
+        // be dropped. Stops early once the connection is closed (LOGOUT, slow consumer, ...)
+        // and hands the rest over when the connection switches framers.
+        boolean feed(byte[] buf, int off, int len, LineHandler handler, QueuedConnection connection);
+    }
+
+    // LINE FRAMER -> Cuts a byte stream into '\n' terminated lines. Lines that arrive in one
+    // piece are passed to the handler straight out of the read buffer; only a line split
+    // across two reads is copied into a small per-connection buffer (allocated on demand).
+    static final class LineFramer implements Framer {
+        private byte[] partial;
+        private int partialLength = 0;
+
+        @Override
+        public boolean feed(byte[] buf, int off, int len, LineHandler handler, QueuedConnection connection) {
+            int end = off + len;
+            int start = off;
+            for (int i = off; i < end; i++) {
+                if (buf[i] != '\n') continue;
+                if (connection.closed.get()) return true;
+                if (partialLength == 0) {
+                    if (i - start > MAX_LINE) return false; // same limit as a line split across reads
+                    emit(buf, start, i - start, handler);
+                } else {
+                    if (!append(buf, start, i - start)) return false;
+                    int length = partialLength;
+                    partialLength = 0;
+                    emit(partial, 0, length, handler);
+                    if (partial.length > 256) partial = null; // give big buffers back
+                }
+                start = i + 1;
+                // e.g. "PROTO:BINARY": what follows is no longer line based
+                if (connection.framer != this) return connection.framer.feed(buf, start, end - start, handler, connection);
+            }
+            return append(buf, start, end - start);
+        }
+
+        private static void emit(byte[] buf, int off, int len, LineHandler handler) {
+            if (len > 0 && buf[off + len - 1] == '\r') len--;
+            handler.onLine(buf, off, len);
+        }
+
+        private boolean append(byte[] buf, int off, int len) {
+            if (len == 0) return true;
+            int needed = partialLength + len;
+            if (needed > MAX_LINE) return false;
+            if (partial == null || partial.length < needed) {
+                byte[] bigger = new byte[Math.min(MAX_LINE, Math.max(64, Integer.highestOneBit(needed) << 1))];
+                if (partialLength > 0) System.arraycopy(partial, 0, bigger, 0, partialLength);
+                partial = bigger;
+            }
+            System.arraycopy(buf, off, partial, partialLength, len);
+            partialLength = needed;
+            return true;
+        }
+    }
+
+    // FRAME DECODER -> Cuts the input into BinaryProtocol frames ([u16 length][opcode]...).
+    // Like LineFramer, only a frame split across reads is copied.
+    static final class FrameDecoder implements Framer {
+        private final byte[] pending = new byte[2 + BinaryProtocol.MAX_FRAME];
+        private int pendingLength = 0;
+
+        @Override
+        public boolean feed(byte[] buf, int off, int len, LineHandler handler, QueuedConnection connection) {
+            int p = off, end = off + len;
+            while (p < end && !connection.closed.get()) {
+                if (pendingLength == 0 && end - p >= 2) {
+                    // Fast path: whole frame inside the read buffer
+                    int length = (buf[p] & 0xFF) << 8 | (buf[p + 1] & 0xFF);
+                    if (length == 0 || length > BinaryProtocol.MAX_FRAME) return false;
+                    if (end - p - 2 >= length) {
+                        handler.onFrame(buf, p + 2, length);
+                        p += 2 + length;
+                        continue;
+                    }
+                }
+                // Slow path: collect the frame byte by byte across reads
+                pending[pendingLength++] = buf[p++];
+                if (pendingLength < 2) continue;
+                int length = (pending[0] & 0xFF) << 8 | (pending[1] & 0xFF);
+                if (length == 0 || length > BinaryProtocol.MAX_FRAME) return false;
+                if (pendingLength == 2 + length) {
+                    pendingLength = 0;
+                    handler.onFrame(pending, 2, length);
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * GameEngine.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * Runs the game logic. Every GameSession is pinned to one shard when it is created and
+ * all of its commands (PLACE_SHIP, FIRE, ...) are executed by that shard's thread, one
+ * after the other, in the order they were submitted. Session state is therefore only
+ * ever touched by a single thread and needs no locks; connection threads just drop a
+ * task into the shard's mailbox (a lock-free queue) and move on.
+ * Shards default to one per core (--shards=N), sessions are spread round robin.
+ */
+
+package battleship;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+public final class GameEngine {
+    private GameEngine() {}
+
+    static final int SHARDS = Math.max(1, ServerConfig.getInt("shards", Runtime.getRuntime().availableProcessors()));
+
+    private static final Shard[] shards = new Shard[SHARDS];
+    private static final AtomicInteger nextShard = new AtomicInteger();
+    static {
+        for (int i = 0; i < SHARDS; i++) shards[i] = new Shard("game-shard-" + i, Metrics.gameTasks);
+    }
+
+    // Starts the shard threads, tasks submitted before simply wait in the mailboxes
+    public static synchronized void start() {
+        for (Shard shard : shards) {
+            if (shard.getState() == Thread.State.NEW) shard.start();
+        }
+        System.out.println("Game engine: " + SHARDS + " shards");
+    }
+
+    // Shard for a new session
+    static int assignShard() { return Math.floorMod(nextShard.getAndIncrement(), SHARDS); }
+
+    // Runs task on the thread that owns the session
+    public static void execute(BattleShipServer.GameSession session, Runnable task) {
+        shards[session.shard].submit(task);
+    }
+
+    static void report(Metrics.Report report) {
+        report.add("game_shards", SHARDS);
+        for (Shard shard : shards) {
+            report.add(shard.getName(), "queued=" + shard.mailbox.size() + " processed=" + shard.processed);
+        }
+    }
+
+
+    // SHARD -> One game thread with its mailbox. Parks when there is nothing to do.
+    // Also used on its own where tasks must run one at a time in order (Spectators).
+    static final class Shard extends Thread {
+        private final Queue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+        private final LatencyHistogram taskTimes;
+        private volatile boolean parked = false;
+        private volatile long processed = 0; // written by this thread only
+
+        Shard(String name, LatencyHistogram taskTimes) {
+            super(name);
+            this.taskTimes = taskTimes;
+            setDaemon(true);
+        }
+
+        int queued() { return mailbox.size(); }
+
+        void submit(Runnable task) {
+            mailbox.add(task);
+            if (parked) LockSupport.unpark(this);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Runnable task = mailbox.poll();
+                if (task == null) {
+                    parked = true;
+                    // Re-check after announcing: a submit() in between either sees parked or left a task
+                    if (mailbox.isEmpty()) LockSupport.park(this);
+                    parked = false;
+                    continue;
+                }
+                long start = System.nanoTime();
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    // A bug in one match must not stop the other matches of this shard
+                    Log.error("Task failed on {}", getName(), e);
+                }
+                taskTimes.record(System.nanoTime() - start);
+                processed++;
+            }
+        }
+    }
+}
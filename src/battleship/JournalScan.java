@@ -0,0 +1,117 @@
+/**
+ * JournalScan.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * Offline statistics over a match journal directory (see MatchJournal). Reads every
+ * segment once, front to back, through read-only memory maps, so it can run next to a
+ * live server or on a copy of its journal. Prints games, moves, hit rate, how games
+ * end, who wins most and how fast the scan went. --game=N prints that game's records
+ * (the same lines REPLAY:N sends).
+ *
+ * Usage: java -cp battleship.jar battleship.JournalScan [--dir=matches] [--top=5] [--game=N]
+ */
+
+package battleship;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+public class JournalScan {
+
+    public static void main(String[] args) throws IOException {
+        ServerConfig.load(args);
+        Path dir = Paths.get(ServerConfig.get("dir", "matches"));
+        if (!Files.isDirectory(dir)) { System.out.println("No journal directory " + dir); return; }
+        int game = ServerConfig.getInt("game", 0);
+        if (game > 0) {
+            Rules[] rules = {Rules.CLASSIC};
+            MatchJournal.scan(dir, r -> {
+                if (r.game != game) return true;
+                if (r.type == MatchJournal.START) rules[0] = r.rules;
+                System.out.println(MatchJournal.describe(r, rules[0]));
+                return true;
+            });
+            return;
+        }
+
+        Stats stats = new Stats();
+        long bytes = 0;
+        for (Path file : MatchJournal.segmentFiles(dir)) bytes += Files.size(file);
+        long start = System.nanoTime();
+        MatchJournal.scan(dir, stats::visit);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        stats.print(ServerConfig.getInt("top", 5));
+        System.out.printf("%nScanned %d segments (%,.1f MB) in %.2f s: %,.0f games/s, %,.0f records/s%n",
+                MatchJournal.segmentFiles(dir).size(), bytes / 1e6, seconds,
+                stats.started / seconds, stats.records / seconds);
+    }
+
+
+    // STATS -> Counters over the whole journal, games still open are kept by id
+    static final class Stats {
+        long records, started, finished, moves, hits, placements, firstPlayerWins, durationMs, finishedMoves;
+        final Map<Integer, String[]> open = new HashMap<>();       // game -> {player 1, player 2}
+        final Map<Integer, int[]> openMoves = new HashMap<>();     // game -> {moves}
+        final Map<String, Integer> reasons = new HashMap<>();
+        final Map<String, Integer> wins = new HashMap<>();
+        final Map<String, Integer> modes = new HashMap<>();        // Rules.spec() -> games
+
+        boolean visit(MatchJournal.Record r) {
+            records++;
+            switch (r.type) {
+                case MatchJournal.START:
+                    started++;
+                    modes.merge(r.rules.spec(), 1, Integer::sum);
+                    open.put(r.game, new String[]{r.player1, r.player2});
+                    openMoves.put(r.game, new int[1]);
+                    break;
+                case MatchJournal.PLACE:
+                    placements++;
+                    break;
+                case MatchJournal.SHOT:
+                    moves++;
+                    if (r.hit) hits++;
+                    int[] count = openMoves.get(r.game);
+                    if (count != null) count[0]++;
+                    break;
+                case MatchJournal.END:
+                    finished++;
+                    durationMs += r.durationMs;
+                    reasons.merge(r.reason, 1, Integer::sum);
+                    String[] players = open.remove(r.game);
+                    int[] played = openMoves.remove(r.game);
+                    if (played != null) finishedMoves += played[0];
+                    if (r.winner == 1) firstPlayerWins++;
+                    if (players != null && r.winner > 0) wins.merge(players[r.winner - 1], 1, Integer::sum);
+                    break;
+            }
+            return true;
+        }
+
+        void print(int top) {
+            System.out.printf("Games: %,d started, %,d finished, %,d unfinished (still running or cut off)%n",
+                    started, finished, open.size());
+            System.out.printf("Moves: %,d, %.1f%% hits, %,d ships placed%n", moves, moves == 0 ? 0 : 100.0 * hits / moves, placements);
+            if (finished > 0) {
+                System.out.printf("Per finished game: %.1f moves, %.1f s, first player won %.1f%%%n",
+                        finishedMoves / (double) finished, durationMs / 1000.0 / finished, 100.0 * firstPlayerWins / finished);
+            }
+            System.out.println("Modes (size:ships):");
+            modes.entrySet().stream().sorted(Map.Entry.<String, Integer>comparingByValue().reversed()).limit(top)
+                    .forEach(e -> System.out.printf("  %-35s %,d%n", e.getKey(), e.getValue()));
+            System.out.println("How games ended:");
+            reasons.entrySet().stream().sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                    .forEach(e -> System.out.printf("  %-35s %,d%n", e.getKey(), e.getValue()));
+            System.out.println("Most wins:");
+            wins.entrySet().stream().sorted(Map.Entry.<String, Integer>comparingByValue().reversed()).limit(top)
+                    .forEach(e -> System.out.printf("  %-35s %,d%n", e.getKey(), e.getValue()));
+        }
+    }
+}
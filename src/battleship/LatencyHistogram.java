@@ -0,0 +1,117 @@
+/**
+ * LatencyHistogram.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * Lock-free log-linear histogram for latencies (microseconds unless another unit is
+ * given). Values below 32 get a bucket each, above that every power of two is split into
+ * 32 buckets, so a reported percentile is at most ~3% off while the whole range up to
+ * hours fits in 2048 counters. record() is a single atomic increment and can be called
+ * from any number of threads.
+ * Striped like a LongAdder: there are about as many copies of the counters as cores, each
+ * thread records into one (picked by thread id, allocated on first use), so event loops
+ * timing the same command don't fight over the same cache lines. Readers add them up.
+ */
+
+package battleship;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = 64 * SUB;
+
+    private static final int STRIPES = Integer.highestOneBit(Math.max(1, Math.min(64, Runtime.getRuntime().availableProcessors() * 2 - 1)));
+    private static final int MAX = BUCKETS; // slot after the buckets: the stripe's max
+
+    private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<>(STRIPES);
+    private final String unit;
+
+    public LatencyHistogram() { this("us"); }
+
+    public LatencyHistogram(String unit) { this.unit = unit; }
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        AtomicLongArray counts = stripe();
+        counts.incrementAndGet(index(value));
+        long m = counts.get(MAX);
+        while (value > m && !counts.compareAndSet(MAX, m, value)) m = counts.get(MAX);
+    }
+
+    // This thread's copy of the counters
+    private AtomicLongArray stripe() {
+        int i = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        AtomicLongArray counts = stripes.get(i);
+        if (counts == null && !stripes.compareAndSet(i, null, counts = new AtomicLongArray(BUCKETS + 1))) counts = stripes.get(i);
+        return counts;
+    }
+
+    public long count() {
+        long total = 0;
+        for (int s = 0; s < STRIPES; s++) {
+            AtomicLongArray counts = stripes.get(s);
+            if (counts != null) for (int i = 0; i < BUCKETS; i++) total += counts.get(i);
+        }
+        return total;
+    }
+
+    public long max() {
+        long max = 0;
+        for (int s = 0; s < STRIPES; s++) {
+            AtomicLongArray counts = stripes.get(s);
+            if (counts != null) max = Math.max(max, counts.get(MAX));
+        }
+        return max;
+    }
+
+    // Value at the given percentile (0..100), the lower bound of its bucket
+    public long percentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int s = 0; s < STRIPES; s++) {
+            AtomicLongArray counts = stripes.get(s);
+            if (counts == null) continue;
+            for (int i = 0; i < BUCKETS; i++) {
+                long n = counts.get(i);
+                snapshot[i] += n;
+                total += n;
+            }
+        }
+        long max = max();
+        if (total == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= target) return Math.min(lowerBound(i), max);
+        }
+        return max;
+    }
+
+    public String unit() { return unit; }
+
+    // One line summary, all values in the histogram's unit
+    public String summary() {
+        return String.format("count=%d p50=%d%7$s p90=%d%7$s p99=%d%7$s p99.9=%d%7$s max=%d%7$s",
+                count(), percentile(50), percentile(90), percentile(99), percentile(99.9), max(), unit);
+    }
+
+    static int index(long value) {
+        if (value < SUB) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BITS;
+        int sub = (int) (value >>> shift) & (SUB - 1);
+        return (shift + 1) * SUB + sub;
+    }
+
+    static long lowerBound(int index) {
+        if (index < SUB) return index;
+        int shift = index / SUB - 1;
+        return (long) (SUB + index % SUB) << shift;
+    }
+}
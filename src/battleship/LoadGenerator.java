@@ -0,0 +1,458 @@
+/**
+ * LoadGenerator.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * Headless load test for the server. Starts N simulated players (bots) that each
+ * REGISTER / LOGIN, pair up (bot 2i challenges bot 2i+1, or all of them use QUICKPLAY with
+ * --matchmaking=quickplay), place a random fleet and play full matches with random or
+ * hunt/target shooting, over and over. Uses the same wire
+ * helpers as BattleShipClient and can speak the text or the binary protocol.
+ * Reports moves/s and games/s while running and latency percentiles per command at the end.
+ *
+ * Usage: java -cp battleship.jar battleship.LoadGenerator [--host=localhost] [--port=8888]
+ *            [--bots=1000] [--duration=60] [--binary] [--targeting=random|hunt] [--prefix=bot]
+ *            [--matchmaking=challenge|quickplay] [--presence=N (bots that also subscribe to PRESENCE)]
+ *            [--spectators=N (extra connections that SPECTATE the bots, spread over all matches)]
+ *            [--board=10 --fleet=5,4,3,2,1 (mode of the challenges, see Rules; QUICKPLAY is classic)]
+ *            [--ai=N (extra bots that PLAY_AI, see AiOpponent) --ai-difficulty=hard]
+ *            [--placement=fleet|pipelined|ship]
+ *            [--ports=9101,9102,... (nodes of a cluster, see Cluster) --spread=pair|bot]
+ * AI_MOVE is the time from the AI bot's own HIT / MISS until the server's shot arrives.
+ * SETUP is GAME_START until the bot's last ship is acknowledged. --placement picks how the
+ * fleet goes out: one PLACE_FLEET (ship by ship when the line is too long), every
+ * PLACE_SHIP at once with request ids ("#7 PLACE_SHIP:..."), or one PLACE_SHIP per round trip.
+ * With --ports the bots are spread over several servers: both players of a match on the same
+ * one (--spread=pair) or every match between two of them (--spread=bot, the games cross nodes).
+ */
+
+package battleship;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LoadGenerator {
+    // Commands we time: from sending the command until its answer arrives
+    enum Measured { REGISTER, LOGIN, CHALLENGE, QUICKPLAY, PLAY_AI, PLACE_SHIP, PLACE_FLEET, SETUP, FIRE, AI_MOVE }
+
+    // How bots send their fleet (--placement)
+    enum Placement { FLEET, PIPELINED, SHIP }
+    private static Placement placement = Placement.FLEET;
+
+    // Mode the challengers ask for (--board / --fleet)
+    private static Rules mode = Rules.CLASSIC;
+    // Above this many cells bots don't shuffle every cell, they pick random unfired ones
+    private static final int SHUFFLED_CELLS = 1 << 16;
+
+    private static final EnumMap<Measured, LatencyHistogram> latencies = new EnumMap<>(Measured.class);
+    private static final LongAdder moves = new LongAdder();
+    private static final LongAdder games = new LongAdder();
+    private static final LongAdder errors = new LongAdder();
+    private static final LongAdder presenceMessages = new LongAdder();
+    private static final LongAdder presenceBytes = new LongAdder();
+    private static final LongAdder watchMessages = new LongAdder();
+    private static final LongAdder watchDropped = new LongAdder();
+    private static volatile boolean running = true;
+
+    public static void main(String[] args) throws Exception {
+        ServerConfig.load(args);
+        String host = ServerConfig.get("host", "localhost");
+        int port = ServerConfig.port();
+        int botCount = ServerConfig.getInt("bots", 1000) & ~1; // players come in pairs
+        int duration = ServerConfig.getInt("duration", 60);
+        boolean binary = Boolean.parseBoolean(ServerConfig.get("binary", "false"));
+        boolean hunt = ServerConfig.get("targeting", "random").equalsIgnoreCase("hunt");
+        String prefix = ServerConfig.get("prefix", "bot");
+        boolean quickplay = ServerConfig.get("matchmaking", "challenge").equalsIgnoreCase("quickplay");
+        int presence = ServerConfig.getInt("presence", 0);
+        int spectators = ServerConfig.getInt("spectators", 0);
+        int aiPlayers = ServerConfig.getInt("ai", 0);
+        String difficulty = ServerConfig.get("ai-difficulty", "hard");
+        String fleet = ServerConfig.get("fleet", "");
+        mode = Rules.parse(ServerConfig.get("board", "10") + (fleet.isEmpty() ? "" : ":" + fleet));
+        if (mode == null) { System.out.println(Rules.ERR_MODE.substring(6)); return; }
+        if (mode.randomFleet(new Random()) == null) { System.out.println("No room for that fleet on the board, try fewer or shorter ships"); return; }
+        placement = Placement.valueOf(ServerConfig.get("placement", "fleet").toUpperCase());
+        String[] portList = ServerConfig.get("ports", String.valueOf(port)).split(",");
+        int[] ports = new int[portList.length];
+        for (int i = 0; i < ports.length; i++) ports[i] = Integer.parseInt(portList[i].trim());
+        boolean crossNodes = ServerConfig.get("spread", "pair").equalsIgnoreCase("bot");
+        for (Measured m : Measured.values()) latencies.put(m, new LatencyHistogram());
+
+        System.out.printf("Load test: %d bots against %s:%s for %d s (%s protocol, %s targeting, %s, %s, %s placement)%n",
+                botCount, host, ports.length == 1 ? String.valueOf(ports[0])
+                        : Arrays.toString(ports) + (crossNodes ? " crossing nodes" : " pairs per node"), duration, binary ? "binary" : "text", hunt ? "hunt" : "random",
+                quickplay ? "quickplay" : "challenges", quickplay || mode.classic() ? "classic" : mode.spec(),
+                placement.name().toLowerCase());
+
+        CountDownLatch loggedIn = new CountDownLatch(botCount + spectators + aiPlayers);
+        List<Bot> bots = new ArrayList<>();
+        for (int i = 0; i < botCount; i++) {
+            String opponent = prefix + (i ^ 1);
+            int node = (crossNodes ? i : i / 2) % ports.length; // i and i ^ 1 differ by one
+            Bot bot = new Bot(prefix + i, quickplay ? null : opponent, i % 2 == 0, host, ports[node], binary, hunt, loggedIn);
+            bot.subscribe = i < presence;
+            bots.add(bot);
+        }
+        for (int i = 0; i < spectators; i++) {
+            // Viewer i watches the challenger of match i (bots 2i, 2i+1), round robin over the matches
+            Bot viewer = new Bot(prefix + "v" + i, null, false, host, ports[i % ports.length], binary, hunt, loggedIn);
+            viewer.watch = prefix + (2 * i % botCount);
+            bots.add(viewer);
+        }
+        for (int i = 0; i < aiPlayers; i++) {
+            Bot player = new Bot(prefix + "ai" + i, null, false, host, ports[i % ports.length], binary, hunt, loggedIn);
+            player.ai = difficulty;
+            bots.add(player);
+        }
+        ExecutorService executor = ConnectionEngine.virtualThreadExecutor();
+        if (executor == null) executor = Executors.newCachedThreadPool();
+        for (Bot bot : bots) executor.execute(bot);
+
+        if (!loggedIn.await(120, TimeUnit.SECONDS)) System.out.println("Not every bot managed to log in.");
+        System.out.printf("%d bots logged in, playing...%n", botCount + spectators + aiPlayers - loggedIn.getCount());
+
+        long start = System.nanoTime();
+        long lastMoves = 0, lastGames = 0, lastTime = start;
+        long end = start + TimeUnit.SECONDS.toNanos(duration);
+        while (System.nanoTime() < end) {
+            Thread.sleep(Math.min(5000, Math.max(1, TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime()))));
+            long now = System.nanoTime();
+            double seconds = (now - lastTime) / 1e9;
+            long m = moves.sum(), g = games.sum();
+            System.out.printf("  %6.1fs  %,10.0f moves/s  %,8.1f games/s  errors=%d%n",
+                    (now - start) / 1e9, (m - lastMoves) / seconds, (g - lastGames) / seconds, errors.sum());
+            lastMoves = m; lastGames = g; lastTime = now;
+        }
+        running = false;
+        double total = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%nTotal: %,d moves (%,.0f/s), %,d games (%,.1f/s), %d errors%n",
+                moves.sum(), moves.sum() / total, games.sum(), games.sum() / total, errors.sum());
+        for (Measured m : Measured.values()) System.out.printf("  %-10s %s%n", m, latencies.get(m).summary());
+        if (presence > 0) System.out.printf("Presence: %,d messages, %,d bytes to %d subscribers%n",
+                presenceMessages.sum(), presenceBytes.sum(), Math.min(presence, botCount));
+        if (spectators > 0) System.out.printf("Spectators: %,d messages to %d viewers, %d dropped as too slow%n",
+                watchMessages.sum(), spectators, watchDropped.sum());
+
+        for (Bot bot : bots) bot.close();
+        executor.shutdownNow();
+        System.exit(0);
+    }
+
+
+    // BOT -> One simulated player with its own connection, driven by the server's messages
+    static class Bot implements Runnable {
+        private final String name, opponent, host; // opponent null: QUICKPLAY
+        private final boolean challenger, binary, hunt;
+        private final int port;
+        private final CountDownLatch loggedIn;
+        private final Random random = new Random();
+        boolean subscribe; // PRESENCE:ON after login
+        String watch;      // not null: only a viewer, SPECTATEs this bot's matches
+        String ai;         // not null: plays the server at this difficulty (PLAY_AI)
+
+        private Socket socket;
+        private DataInputStream in;
+        private OutputStream out;
+
+        // Outstanding measured command (the protocol answers one command at a time)
+        private Measured pending;
+        private long pendingSince;
+
+        // Per match state
+        private Rules rules = Rules.CLASSIC, nextRules;  // nextRules: from RULES, before GAME_START
+        private int[][] fleet;        // {row, col, vertical} per ship
+        private int shipsPlaced;
+        private long setupSince;      // GAME_START, for SETUP
+        private int nextTag = 1, firstShipTag; // request ids; ship i of a pipelined fleet is firstShipTag + i
+        private int[] targets = new int[0]; // all cells shuffled, null on big boards
+        private int nextTarget;
+        private final BitSet fired = new BitSet();
+        private final ArrayDeque<Integer> huntQueue = new ArrayDeque<>();
+        private int lastShot = -1;
+
+        Bot(String name, String opponent, boolean challenger, String host, int port,
+            boolean binary, boolean hunt, CountDownLatch loggedIn) {
+            this.name = name;
+            this.opponent = opponent;
+            this.challenger = challenger;
+            this.host = host;
+            this.port = port;
+            this.binary = binary;
+            this.hunt = hunt;
+            this.loggedIn = loggedIn;
+        }
+
+        @Override
+        public void run() {
+            boolean counted = false;
+            try {
+                socket = new Socket(host, port);
+                socket.setTcpNoDelay(true);
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out = new BufferedOutputStream(socket.getOutputStream());
+                if (binary) {
+                    writeLine(BinaryProtocol.HANDSHAKE);
+                    if (!BinaryProtocol.HANDSHAKE_OK.equals(BattleShipClient.readLine(in))) throw new IOException("no binary protocol");
+                }
+
+                send(Measured.REGISTER, "REGISTER:" + name + "@pw");
+                awaitReply("REGISTER_");
+                send(Measured.LOGIN, "LOGIN:" + name + "@pw");
+                if (!awaitReply("LOGIN_").equals("LOGIN_SUCCESS")) throw new IOException(name + " could not log in");
+                loggedIn.countDown();
+                counted = true;
+                loggedIn.await();
+                if (subscribe) writeLine("PRESENCE:ON");
+
+                if (watch != null) writeLine("SPECTATE:" + watch);
+                else if (ai != null) send(Measured.PLAY_AI, playAi());
+                else if (opponent == null) send(Measured.QUICKPLAY, "QUICKPLAY");
+                else if (challenger) send(Measured.CHALLENGE, challenge());
+                String msg;
+                while (running && (msg = read()) != null) onMessage(msg);
+            } catch (IOException | InterruptedException e) {
+                if (running) {
+                    errors.increment();
+                    System.out.println(name + ": " + e.getMessage());
+                }
+            } finally {
+                if (!counted) loggedIn.countDown();
+                close();
+            }
+        }
+
+        private void onMessage(String msg) throws IOException, InterruptedException {
+            int tag = 0; // "#<id> " of an answer, see CommandDecoder
+            if (msg.startsWith("#")) {
+                int space = msg.indexOf(' ');
+                tag = Integer.parseInt(msg.substring(1, space));
+                msg = msg.substring(space + 1);
+            }
+            if (watch != null) {
+                onWatch(msg);
+                return;
+            }
+            if (msg.startsWith("PRESENCE")) {
+                presenceMessages.increment();
+                presenceBytes.add(msg.length() + 1);
+            }
+            else if (msg.startsWith("HIT:") || msg.startsWith("MISS:")) {
+                complete(Measured.FIRE);
+                moves.increment();
+                if (msg.startsWith("HIT:") && hunt) queueNeighbours(lastShot);
+                if (ai != null) { pending = Measured.AI_MOVE; pendingSince = System.nanoTime(); }
+            }
+            else if (msg.startsWith("ENEMY_HIT:") || msg.startsWith("ENEMY_MISSED:")) {
+                complete(Measured.AI_MOVE);
+                fireNext();
+            }
+            else if (msg.equals("SHIP_PLACED")) {
+                complete(Measured.PLACE_SHIP);
+                if (tag != 0 && tag - firstShipTag != shipsPlaced) throw new IOException(name + ": ack #" + tag + " out of order");
+                if (++shipsPlaced == rules.fleet.length) setupDone();
+                else if (tag == 0) placeNext();
+            }
+            else if (msg.equals("FLEET_PLACED")) {
+                complete(Measured.PLACE_FLEET);
+                shipsPlaced = rules.fleet.length;
+                setupDone();
+            }
+            else if (msg.startsWith("GAME_STARTED:")) {
+                if (msg.endsWith("Your turn")) fireNext();
+            }
+            else if (msg.startsWith("RULES:")) {
+                nextRules = Rules.parse(msg.substring(6));
+            }
+            else if (msg.startsWith("GAME_START:")) {
+                complete(ai != null ? Measured.PLAY_AI : opponent == null ? Measured.QUICKPLAY : Measured.CHALLENGE);
+                rules = nextRules != null ? nextRules : Rules.CLASSIC;
+                nextRules = null;
+                newMatch();
+                setupSince = System.nanoTime();
+                placeFleet();
+            }
+            else if (msg.startsWith("GAME_OVER")) {
+                if (ai != null) {
+                    pending = null;
+                    games.increment();
+                    if (running) send(Measured.PLAY_AI, playAi());
+                } else if (opponent == null) {
+                    if (msg.startsWith("GAME_OVER:YOU_WON")) games.increment();
+                    if (running) send(Measured.QUICKPLAY, "QUICKPLAY");
+                } else if (challenger) {
+                    games.increment();
+                    if (running) send(Measured.CHALLENGE, challenge());
+                }
+            }
+            else if (msg.startsWith("CHALLENGE_FROM:")) {
+                writeLine("CHALLENGE_ACCEPTED:" + msg.substring("CHALLENGE_FROM:".length()));
+            }
+            else if (msg.equals("ERROR:Game over")) {
+                // The loser answers the final ENEMY_HIT before it sees GAME_OVER, expected
+                pending = null;
+            }
+            else if (msg.startsWith("ERROR")) {
+                errors.increment();
+                if (errors.sum() <= 10) System.out.println(name + ": " + msg);
+                if (msg.contains("Player not found")) {
+                    Thread.sleep(10);
+                    send(Measured.CHALLENGE, challenge());
+                } else if (pending == Measured.FIRE && msg.contains("Already fired")) {
+                    fireNext();
+                }
+            }
+        }
+
+        // Viewer: count what arrives, watch the next match once this one is over
+        private void onWatch(String msg) throws IOException, InterruptedException {
+            if (msg.startsWith("SPECTATING:") || msg.startsWith("WATCH")) watchMessages.increment();
+            if (msg.startsWith("WATCH_END:")) watchDropped.increment();
+            if (msg.startsWith("WATCH_OVER:") || msg.startsWith("WATCH_END:") || msg.startsWith("ERROR")) {
+                // ERROR: between two matches the bot is not playing, try again shortly
+                if (msg.startsWith("ERROR")) Thread.sleep(5);
+                if (running) writeLine("SPECTATE:" + watch);
+            }
+        }
+
+        // --- Fleet placement ---
+
+        private String challenge() { return "CHALLENGE:" + opponent + (mode.classic() ? "" : ":" + mode.spec()); }
+
+        private String playAi() { return "PLAY_AI:" + ai + (mode.classic() ? "" : ":" + mode.spec()); }
+
+        private void newMatch() throws IOException {
+            fleet = rules.randomFleet(random);
+            if (fleet == null) throw new IOException(name + ": no room for the fleet of " + rules.spec());
+            shipsPlaced = 0;
+            int cells = rules.size * rules.size;
+            if (cells <= SHUFFLED_CELLS) {
+                if (targets == null || targets.length != cells) targets = new int[cells];
+                for (int i = 0; i < targets.length; i++) targets[i] = i;
+                // Both strategies search in random order, hunt additionally follows up on hits
+                for (int i = targets.length - 1; i > 0; i--) {
+                    int j = random.nextInt(i + 1);
+                    int t = targets[i]; targets[i] = targets[j]; targets[j] = t;
+                }
+            } else {
+                targets = null;
+            }
+            nextTarget = 0;
+            fired.clear();
+            huntQueue.clear();
+        }
+
+        private void placeFleet() throws IOException {
+            if (placement == Placement.FLEET) {
+                StringBuilder line = new StringBuilder("PLACE_FLEET:");
+                for (int[] ship : fleet) {
+                    if (line.length() > 12) line.append(';');
+                    line.append(placement(ship));
+                }
+                // Too long for a line / frame: ship by ship instead
+                boolean fits = binary ? BinaryProtocol.encodeCommand(line.toString()) != null : line.length() < ConnectionEngine.MAX_LINE;
+                if (fits) { send(Measured.PLACE_FLEET, line.toString()); return; }
+            }
+            if (placement == Placement.SHIP) { placeNext(); return; }
+            // Pipelined: every ship now, the acks come back in order with their ids
+            firstShipTag = nextTag;
+            for (int[] ship : fleet) queueLine("#" + nextTag++ + " PLACE_SHIP:" + placement(ship));
+            out.flush();
+        }
+
+        private void placeNext() throws IOException {
+            if (shipsPlaced >= rules.fleet.length) return;
+            send(Measured.PLACE_SHIP, "PLACE_SHIP:" + placement(fleet[shipsPlaced]));
+        }
+
+        private String placement(int[] ship) { return rules.cell(ship[0], ship[1]) + "," + (ship[2] == 1 ? "V" : "H"); }
+
+        private void setupDone() {
+            latencies.get(Measured.SETUP).record((System.nanoTime() - setupSince) / 1000);
+        }
+
+        // --- Targeting ---
+
+        private void fireNext() throws IOException {
+            int cell = -1, n = rules.size;
+            while (!huntQueue.isEmpty() && cell < 0) {
+                int candidate = huntQueue.poll();
+                if (!fired.get(candidate)) cell = candidate;
+            }
+            while (cell < 0 && targets != null && nextTarget < targets.length) {
+                int candidate = targets[nextTarget++];
+                if (!fired.get(candidate)) cell = candidate;
+            }
+            if (cell < 0 && targets == null) { // big board: a random cell, the next free one after it
+                int candidate = fired.nextClearBit(random.nextInt(n * n));
+                cell = candidate < n * n ? candidate : fired.nextClearBit(0);
+                if (cell >= n * n) cell = -1;
+            }
+            if (cell < 0) return; // board exhausted, the game must be over
+            fired.set(cell);
+            lastShot = cell;
+            send(Measured.FIRE, "FIRE:" + rules.cell(cell / n, cell % n));
+        }
+
+        private void queueNeighbours(int cell) {
+            int n = rules.size, row = cell / n, col = cell % n;
+            if (row > 0) huntQueue.add(cell - n);
+            if (row < n - 1) huntQueue.add(cell + n);
+            if (col > 0) huntQueue.add(cell - 1);
+            if (col < n - 1) huntQueue.add(cell + 1);
+        }
+
+        // --- Wire ---
+
+        private void send(Measured type, String line) throws IOException {
+            pending = type;
+            pendingSince = System.nanoTime();
+            writeLine(line);
+        }
+
+        private void complete(Measured type) {
+            if (pending != type) return;
+            latencies.get(type).record((System.nanoTime() - pendingSince) / 1000);
+            pending = null;
+        }
+
+        private String awaitReply(String prefix) throws IOException {
+            String msg;
+            while ((msg = read()) != null) {
+                if (msg.startsWith(prefix)) {
+                    complete(pending);
+                    return msg;
+                }
+            }
+            throw new EOFException("connection closed");
+        }
+
+        private void writeLine(String line) throws IOException {
+            queueLine(line);
+            out.flush();
+        }
+
+        // Buffered only, for several commands in one write
+        private void queueLine(String line) throws IOException {
+            if (binary && !line.equals(BinaryProtocol.HANDSHAKE)) {
+                out.write(BinaryProtocol.encodeCommand(line));
+            } else {
+                out.write((line + "\n").getBytes("UTF-8"));
+            }
+        }
+
+        private String read() throws IOException {
+            return binary ? BattleShipClient.readFrame(in) : BattleShipClient.readLine(in);
+        }
+
+        void close() {
+            try { if (socket != null) socket.close(); } catch (IOException e) {}
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/**
+ * Log.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * Asynchronous server log. Handler threads never format or write anything: a log call
+ * claims a slot in a bounded ring buffer, stores the message template and up to four
+ * arguments there and returns. One background thread ("log-writer") formats the events,
+ * batches them and writes them to a rolling file. When the ring is full the event is
+ * dropped and counted instead of blocking the caller; the writer reports the count.
+ *
+ * Messages use "{}" placeholders, e.g. Log.info("{} joined from {}", user, address).
+ * A Throwable as last argument is printed with its stack trace.
+ *
+ * Settings: --log-level=debug|info|warn|error|off (info), --log-file=server.log ("-" for
+ * the console), --log-max-mb=16 and --log-files=5 (rolling), --log-buffer=16384 (events),
+ * --log-sample=50 (only every 50th FIRE / PLACE_SHIP of a client is logged at info).
+ */
+
+package battleship;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+public final class Log {
+    private Log() {}
+
+    public enum Level { DEBUG, INFO, WARN, ERROR, OFF }
+
+    private static final Level LEVEL = parseLevel(ServerConfig.get("log-level", "info"));
+    static final int SAMPLE = Math.max(1, ServerConfig.getInt("log-sample", 50));
+    private static final String FILE = ServerConfig.get("log-file", "server.log");
+    private static final long MAX_BYTES = ServerConfig.getInt("log-max-mb", 16) * 1024L * 1024L;
+    private static final int MAX_FILES = Math.max(1, ServerConfig.getInt("log-files", 5));
+
+    // EVENT -> One ring slot, overwritten once the writer has consumed it
+    private static final class Event {
+        long time;
+        Level level;
+        String thread;
+        String format;
+        Object a, b, c, d;
+    }
+
+    // MPSC ring: producers claim sequence numbers, published[slot] = sequence + 1 once the
+    // slot is filled, the single writer consumes in order and frees slots via `consumed`
+    private static final int CAPACITY = Integer.highestOneBit(Math.max(64, ServerConfig.getInt("log-buffer", 16384)));
+    private static final int MASK = CAPACITY - 1;
+    private static final Event[] ring = new Event[CAPACITY];
+    private static final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+    private static final AtomicLong claimed = new AtomicLong();
+    private static volatile long consumed = 0;
+    private static volatile boolean writerParked = false;
+    private static volatile boolean stopping = false;
+
+    static final LongAdder dropped = new LongAdder();
+
+    private static final Thread writer;
+    static {
+        for (int i = 0; i < CAPACITY; i++) ring[i] = new Event();
+        writer = new Thread(Log::writeLoop, "log-writer");
+        writer.setDaemon(true);
+        if (LEVEL != Level.OFF) {
+            writer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(Log::close));
+        }
+    }
+
+    public static boolean enabled(Level level) { return level.compareTo(LEVEL) >= 0 && LEVEL != Level.OFF; }
+
+    public static void debug(String format, Object... args) { log(Level.DEBUG, format, args); }
+    public static void info(String format, Object... args) { log(Level.INFO, format, args); }
+    public static void warn(String format, Object... args) { log(Level.WARN, format, args); }
+    public static void error(String format, Object... args) { log(Level.ERROR, format, args); }
+
+    // Overloads without varargs for the hot paths, so nothing but the boxed values is allocated
+    public static void log(Level level, String format, Object a) { log(level, format, a, null, null, null); }
+    public static void log(Level level, String format, Object a, Object b) { log(level, format, a, b, null, null); }
+    public static void log(Level level, String format, Object a, Object b, Object c) { log(level, format, a, b, c, null); }
+
+    private static void log(Level level, String format, Object[] args) {
+        if (!enabled(level)) return;
+        if (args.length > 4) throw new IllegalArgumentException("at most 4 log arguments");
+        log(level, format, args.length > 0 ? args[0] : null, args.length > 1 ? args[1] : null,
+                args.length > 2 ? args[2] : null, args.length > 3 ? args[3] : null);
+    }
+
+    public static void log(Level level, String format, Object a, Object b, Object c, Object d) {
+        if (!enabled(level)) return;
+        long seq;
+        do {
+            seq = claimed.get();
+            if (seq - consumed >= CAPACITY) { // full: never make a handler wait for the disk
+                dropped.increment();
+                return;
+            }
+        } while (!claimed.compareAndSet(seq, seq + 1));
+
+        int slot = (int) seq & MASK;
+        Event e = ring[slot];
+        e.time = System.currentTimeMillis();
+        e.level = level;
+        e.thread = Thread.currentThread().getName();
+        e.format = format;
+        e.a = a; e.b = b; e.c = c; e.d = d;
+        published.set(slot, seq + 1);
+        if (writerParked) LockSupport.unpark(writer);
+    }
+
+    // Drains what is queued (called on shutdown)
+    static void close() {
+        stopping = true;
+        LockSupport.unpark(writer);
+        try { writer.join(2000); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+
+    // --- Writer thread ---
+
+    private static final DateTimeFormatter TIME =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    private static final int BATCH_BYTES = 64 * 1024;
+
+    private static OutputStream out;
+    private static long fileBytes;
+
+    private static void writeLoop() {
+        StringBuilder batch = new StringBuilder(BATCH_BYTES + 1024);
+        long reportedDrops = 0;
+        try {
+            open();
+            while (true) {
+                long seq = consumed;
+                int slot = (int) seq & MASK;
+                if (published.get(slot) == seq + 1) {
+                    Event e = ring[slot];
+                    format(e, batch);
+                    e.a = e.b = e.c = e.d = null; // don't keep arguments alive
+                    consumed = seq + 1;
+                    if (batch.length() < BATCH_BYTES) continue;
+                }
+
+                // Ring empty (or batch full): report drops, write the batch, then wait
+                long drops = dropped.sum();
+                if (drops != reportedDrops) {
+                    batch.append(TIME.format(Instant.now())).append(" WARN  [log-writer] ")
+                            .append(drops - reportedDrops).append(" log events dropped (buffer full)\n");
+                    reportedDrops = drops;
+                }
+                if (batch.length() > 0) {
+                    write(batch);
+                    batch.setLength(0);
+                    continue;
+                }
+                if (stopping) break;
+                writerParked = true;
+                if (published.get((int) consumed & MASK) != consumed + 1) LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+                writerParked = false;
+            }
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Log writer stopped: " + e.getMessage());
+        }
+    }
+
+    // Events arrive in bursts within the same millisecond, so the timestamp is formatted once
+    private static long lastTime = -1;
+    private static String lastTimeText;
+
+    private static void format(Event e, StringBuilder sb) {
+        if (e.time != lastTime) {
+            lastTime = e.time;
+            lastTimeText = TIME.format(Instant.ofEpochMilli(e.time));
+        }
+        sb.append(lastTimeText).append(' ');
+        String level = e.level.name();
+        sb.append(level);
+        for (int i = level.length(); i < 6; i++) sb.append(' ');
+        sb.append('[').append(e.thread).append("] ");
+
+        Object[] args = {e.a, e.b, e.c, e.d};
+        int next = 0, from = 0;
+        String f = e.format;
+        int at;
+        while ((at = f.indexOf("{}", from)) >= 0) {
+            sb.append(f, from, at).append(next < args.length ? args[next++] : "{}");
+            from = at + 2;
+        }
+        sb.append(f, from, f.length()).append('\n');
+        for (Object arg : args) {
+            if (arg instanceof Throwable) {
+                StringWriter trace = new StringWriter();
+                ((Throwable) arg).printStackTrace(new PrintWriter(trace));
+                sb.append(trace);
+            }
+        }
+    }
+
+    private static void write(StringBuilder batch) throws IOException {
+        byte[] bytes = batch.toString().getBytes(StandardCharsets.UTF_8);
+        out.write(bytes);
+        out.flush();
+        fileBytes += bytes.length;
+        if (fileBytes >= MAX_BYTES && !FILE.equals("-")) roll();
+    }
+
+    private static void open() throws IOException {
+        if (FILE.equals("-")) {
+            out = new FileOutputStream(FileDescriptor.out);
+            return;
+        }
+        Path path = Paths.get(FILE);
+        fileBytes = Files.exists(path) ? Files.size(path) : 0;
+        out = new BufferedOutputStream(Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND), BATCH_BYTES);
+    }
+
+    // server.log -> server.log.1 -> ... -> server.log.<MAX_FILES - 1>, the oldest is deleted
+    private static void roll() throws IOException {
+        out.close();
+        for (int i = MAX_FILES - 1; i >= 1; i--) {
+            Path from = Paths.get(i == 1 ? FILE : FILE + "." + (i - 1));
+            if (Files.exists(from)) Files.move(from, Paths.get(FILE + "." + i), StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (MAX_FILES == 1) Files.deleteIfExists(Paths.get(FILE));
+        open();
+    }
+
+    private static Level parseLevel(String name) {
+        try { return Level.valueOf(name.trim().toUpperCase()); } catch (IllegalArgumentException e) { return Level.INFO; }
+    }
+
+    static String describe() {
+        return LEVEL == Level.OFF ? "off" : LEVEL.name().toLowerCase() + " -> " + (FILE.equals("-") ? "console" : FILE);
+    }
+}
@@ -0,0 +1,581 @@
+/**
+ * MatchJournal.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * Binary record of every match: who played, every ship placed, every shot and how it
+ * ended. All sessions append to one log in --journal-dir=matches, cut into segments of
+ * --journal-segment-mb=64 (00000001.journal, 00000002.journal, ...). The current segment
+ * is memory mapped and an append takes its room with a compare-and-set on the segment's
+ * position, then writes it with a few stores into the page cache: no lock, no syscall
+ * and no allocation, so the game shards don't wait for each other. The "match-journal"
+ * thread maps the next segment ahead of time (a full segment is swapped for it under a
+ * lock only the rolls and START take) and forces the data to disk every
+ * --journal-sync-ms=1000 (0 = leave it to the OS). Every start of the server begins a
+ * new segment.
+ *
+ * Segment: [int magic "BSMJ"][int version][int segment number][int first game id], then
+ * records. The low 4 bits of a record's first byte are its type, 0 = end of the data:
+ *
+ *     START  [type | rules << 4][int game][long start ms][u8 len][player 1][u8 len][player 2]
+ *            rules: + [u16 size][u16 ships][u16 length]... (not the classic game, see Rules)
+ *     PLACE  [type | player 2 << 4 | vertical << 5][int game][u8 ship][u8 cell]     7 bytes
+ *     SHOT   [type | player 2 << 4 | hit << 5][int game][u8 cell]                  6 bytes
+ *     END    [type | winner << 4][int game][int duration ms][u8 len][reason]
+ *
+ * cell is row * 10 + col. A PLACE or SHOT off the 10x10 corner of a larger board is
+ * wide (type | 1 << 6): PLACE [u16 ship][u16 row][u16 col] (11 bytes), SHOT [u16 row]
+ * [u16 col] (9 bytes).
+ *
+ * The type byte is written last, a record cut short by a crash is never seen (nor what
+ * other threads wrote after it). Game ids are handed out with their START under the roll
+ * lock, so the START of game N is in the last segment whose first game id is <= N. A
+ * segment mapped ahead but never used has first game id 0. REPLAY:N reads a finished game back on the "journal-reader" thread;
+ * JournalScan goes through a whole directory offline.
+ */
+
+package battleship;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+public final class MatchJournal {
+
+    static final int MAGIC = 0x42534D4A; // "BSMJ"
+    static final int VERSION = 1;
+    static final int HEADER = 16;
+    static final int START = 1, PLACE = 2, SHOT = 3, END = 4;
+    static final int RULES = 1 << 4, WIDE = 1 << 6;
+    private static final int MAX_RECORD = 1 + 4 + 8 + 2 * (1 + 255) + 4 + 2 * Rules.MAX_SHIPS;
+
+    // The server's journal. Disabled until open(): benchmarks and tools don't write one,
+    // but game ids are still handed out.
+    static volatile MatchJournal SERVER = new MatchJournal(null, 0, 0);
+
+    private final Path dir;           // null: disabled
+    private final int segmentBytes;
+    private final long syncMs;
+
+    // SEGMENT -> One mapped segment file. Appends take room by moving `position` on with
+    // a CAS, so any number of threads write into it side by side.
+    private static final class Segment {
+        final int number;
+        final MappedByteBuffer map;
+        final AtomicInteger position = new AtomicInteger(HEADER);
+
+        Segment(int number, MappedByteBuffer map) { this.number = number; this.map = map; }
+
+        // Start of room for a record, -1 when the segment is full (keeps a 0 after the last record)
+        int reserve(int length) {
+            while (true) {
+                int pos = position.get();
+                if (pos + length >= map.capacity()) return -1;
+                if (position.compareAndSet(pos, pos + length)) return pos;
+            }
+        }
+
+        // The type byte last: until it is there the record does not exist
+        void commit(int pos, int type) {
+            VarHandle.releaseFence();
+            map.put(pos, (byte) type);
+        }
+    }
+
+    private volatile Segment current;  // null: disabled or failed
+    // Guarded by `this` (the rolls and START)
+    private int segment = 0;
+    private int nextGameId = 1;
+    private final List<int[]> segments = new ArrayList<>(); // {segment number, first game id}
+    // Guarded by `spares`: the next segment, mapped ahead by the sync thread
+    private final Object spares = new Object();
+    private Segment spare;
+    private int prepared = 0; // highest segment number with a file
+
+    private final Set<Integer> live = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<MappedByteBuffer> retired = new ConcurrentLinkedQueue<>();
+    private GameEngine.Shard reader;
+    private Thread sync;
+
+    MatchJournal(Path dir, int segmentBytes, long syncMs) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.syncMs = syncMs;
+    }
+
+    // Opens --journal-dir (none: --journal-dir=off) and makes it the server's journal
+    static void open() {
+        String dir = ServerConfig.get("journal-dir", "matches");
+        if (dir.isEmpty() || dir.equalsIgnoreCase("off")) return;
+        MatchJournal journal;
+        try {
+            journal = openAt(Paths.get(dir), Math.max(1, ServerConfig.getInt("journal-segment-mb", 64)) << 20,
+                    ServerConfig.getInt("journal-sync-ms", 1000));
+        } catch (IOException e) {
+            Log.error("Match journal disabled, {} could not be opened", dir, e);
+            return;
+        }
+        SERVER = journal;
+        System.out.println("Match journal: " + dir + " (" + journal.segments.size() + " segments, next game " + journal.nextGameId + ")");
+    }
+
+    // A journal in any directory, also used by the benchmarks
+    static MatchJournal openAt(Path dir, int segmentBytes, long syncMs) throws IOException {
+        MatchJournal journal = new MatchJournal(dir, segmentBytes, syncMs);
+        journal.recover();
+        journal.start();
+        return journal;
+    }
+
+    boolean enabled() { return dir != null; }
+
+
+    // --- Appending (any thread, mostly the game shards) ---
+
+    // Each append takes room in the current segment and writes its record there; when the
+    // segment is full it rolls to the next one and tries again.
+
+    // New game: its id, also when nothing is written
+    int start(String player1, String player2) { return start(player1, player2, Rules.CLASSIC); }
+
+    // Under the roll lock, so the START lands in a segment whose first game id is <= id
+    synchronized int start(String player1, String player2, Rules rules) {
+        int id = nextGameId++;
+        byte[] a = name(player1), b = name(player2);
+        int length = 1 + 4 + 8 + 1 + a.length + 1 + b.length;
+        int extra = rules.classic() ? 0 : 4 + 2 * rules.fleet.length;
+        for (Segment seg; (seg = current) != null; roll(seg)) {
+            int pos = seg.reserve(length + extra);
+            if (pos < 0) continue;
+            MappedByteBuffer map = seg.map;
+            map.putInt(pos + 1, id);
+            map.putLong(pos + 5, System.currentTimeMillis());
+            map.put(pos + 13, (byte) a.length);
+            map.put(pos + 14, a);
+            map.put(pos + 14 + a.length, (byte) b.length);
+            map.put(pos + 15 + a.length, b);
+            if (extra > 0) {
+                map.putShort(pos + length, (short) rules.size);
+                map.putShort(pos + length + 2, (short) rules.fleet.length);
+                for (int i = 0; i < rules.fleet.length; i++) map.putShort(pos + length + 4 + 2 * i, (short) rules.fleet[i]);
+            }
+            seg.commit(pos, START | (extra > 0 ? RULES : 0));
+            live.add(id);
+            break;
+        }
+        return id;
+    }
+
+    void place(int game, boolean player2, int ship, int row, int col, boolean vertical) {
+        boolean wide = row >= BitBoard.SIZE || col >= BitBoard.SIZE || ship > 255;
+        for (Segment seg; (seg = current) != null; roll(seg)) {
+            int pos = seg.reserve(wide ? 11 : 7);
+            if (pos < 0) continue;
+            MappedByteBuffer map = seg.map;
+            map.putInt(pos + 1, game);
+            if (wide) {
+                map.putShort(pos + 5, (short) ship);
+                map.putShort(pos + 7, (short) row);
+                map.putShort(pos + 9, (short) col);
+            } else {
+                map.put(pos + 5, (byte) ship);
+                map.put(pos + 6, (byte) (row * BitBoard.SIZE + col));
+            }
+            seg.commit(pos, PLACE | (player2 ? 1 << 4 : 0) | (vertical ? 1 << 5 : 0) | (wide ? WIDE : 0));
+            return;
+        }
+    }
+
+    void shot(int game, boolean player2, boolean hit, int row, int col) {
+        boolean wide = row >= BitBoard.SIZE || col >= BitBoard.SIZE;
+        for (Segment seg; (seg = current) != null; roll(seg)) {
+            int pos = seg.reserve(wide ? 9 : 6);
+            if (pos < 0) continue;
+            MappedByteBuffer map = seg.map;
+            map.putInt(pos + 1, game);
+            if (wide) {
+                map.putShort(pos + 5, (short) row);
+                map.putShort(pos + 7, (short) col);
+            } else {
+                map.put(pos + 5, (byte) (row * BitBoard.SIZE + col));
+            }
+            seg.commit(pos, SHOT | (player2 ? 1 << 4 : 0) | (hit ? 1 << 5 : 0) | (wide ? WIDE : 0));
+            return;
+        }
+    }
+
+    // winner: 1 or 2, 0 when nobody won
+    void end(int game, int winner, String reason, long durationMs) {
+        if (current == null) { live.remove(game); return; }
+        byte[] r = name(reason);
+        int length = 1 + 4 + 4 + 1 + r.length;
+        for (Segment seg; (seg = current) != null; roll(seg)) {
+            int pos = seg.reserve(length);
+            if (pos < 0) continue;
+            MappedByteBuffer map = seg.map;
+            map.putInt(pos + 1, game);
+            map.putInt(pos + 5, (int) Math.min(Integer.MAX_VALUE, durationMs));
+            map.put(pos + 9, (byte) r.length);
+            map.put(pos + 10, r);
+            seg.commit(pos, END | winner << 4);
+            break;
+        }
+        live.remove(game); // after the END, a REPLAY from now on finds it
+    }
+
+    private static byte[] name(String s) {
+        byte[] bytes = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+        return bytes.length <= 255 ? bytes : java.util.Arrays.copyOf(bytes, 255);
+    }
+
+    // Swaps the full segment for the next one. The first thread to find it full does it,
+    // the others find the new one in place. Normally the sync thread has mapped it already
+    // and this is a few stores; otherwise it is mapped here.
+    private synchronized void roll(Segment full) {
+        if (current != full) return;
+        retired.add(full.map); // forced and let go by the sync thread
+        try {
+            install(takeSpare());
+        } catch (IOException e) {
+            Log.error("Match journal stopped, no new segment in {}", dir, e);
+            current = null;
+        }
+        LockSupport.unpark(sync); // map the one after
+    }
+
+    // Holding `this`: the next segment becomes the current one, starting at nextGameId
+    private void install(Segment next) {
+        next.map.putInt(12, nextGameId);
+        segment = next.number;
+        segments.add(new int[]{next.number, nextGameId});
+        current = next;
+    }
+
+    private Segment takeSpare() throws IOException {
+        synchronized (spares) {
+            if (spare == null) prepareSpare();
+            Segment next = spare;
+            spare = null;
+            return next;
+        }
+    }
+
+    // Holding `spares`: creates and maps the next segment file, first game id 0 until it
+    // is installed
+    private void prepareSpare() throws IOException {
+        int number = ++prepared;
+        MappedByteBuffer map;
+        try (FileChannel channel = FileChannel.open(segmentPath(dir, number),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes); // grows the (sparse) file
+        }
+        map.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, number).putInt(12, 0);
+        spare = new Segment(number, map);
+    }
+
+    static Path segmentPath(Path dir, int segment) { return dir.resolve(String.format("%08d.journal", segment)); }
+
+
+    // --- Recovery ---
+
+    // Finds the segments and the next game id, then starts a new segment. The last one
+    // may end in records other threads finished after one a crash cut short, so nothing
+    // is appended to it any more.
+    private synchronized void recover() throws IOException {
+        Files.createDirectories(dir);
+        for (Path file : segmentFiles(dir)) {
+            prepared = Math.max(prepared, Integer.parseInt(file.getFileName().toString().substring(0, 8)));
+            int[] header = readHeader(file);
+            if (header == null) { Log.warn("Match journal: {} is not a segment, skipped", file); continue; }
+            if (header[1] == 0) { Files.delete(file); continue; } // mapped ahead, never used
+            segments.add(header);
+        }
+        if (!segments.isEmpty()) {
+            int[] last = segments.get(segments.size() - 1);
+            nextGameId = last[1];
+            try (FileChannel channel = FileChannel.open(segmentPath(dir, last[0]), StandardOpenOption.READ)) {
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                readSegment(map, map.capacity(), new Record(), r -> {
+                    if (r.type == START) nextGameId = Math.max(nextGameId, r.game + 1);
+                    return true;
+                });
+            }
+        }
+        install(takeSpare());
+    }
+
+    static List<Path> segmentFiles(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(f -> f.getFileName().toString().matches("\\d{8}\\.journal")).sorted().toList();
+        }
+    }
+
+    // {segment number, first game id}, null if the file is no segment
+    private static int[] readHeader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            while (header.hasRemaining() && channel.read(header) >= 0) { }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) return null;
+            return new int[]{header.getInt(8), header.getInt(12)};
+        }
+    }
+
+
+    // --- Sync thread: maps the next segment ahead, forces the data ---
+
+    private void start() {
+        reader = new GameEngine.Shard("journal-reader", Metrics.replayTasks);
+        reader.start();
+        sync = new Thread(this::syncLoop, "match-journal");
+        sync.setDaemon(true);
+        sync.start();
+    }
+
+    private void syncLoop() {
+        long pause = TimeUnit.MILLISECONDS.toNanos(syncMs > 0 ? syncMs : 1000);
+        while (true) {
+            try {
+                synchronized (spares) {
+                    if (spare == null && current != null) prepareSpare();
+                }
+                for (MappedByteBuffer old; (old = retired.poll()) != null; ) if (syncMs > 0) old.force();
+                Segment now = current;
+                if (syncMs > 0 && now != null) now.map.force();
+            } catch (IOException | RuntimeException e) {
+                Log.error("Match journal sync failed", e);
+            }
+            LockSupport.parkNanos(pause); // or until a roll took the spare
+            if (Thread.interrupted()) return;
+        }
+    }
+
+
+    // --- Reading ---
+
+    // RECORD -> One decoded record, reused while scanning
+    static final class Record {
+        int type, game;
+        int player;            // PLACE / SHOT: 1 or 2
+        int ship, row, col;    // PLACE: ship index; PLACE / SHOT: the cell
+        boolean vertical, hit;
+        long startedAt;        // START, epoch ms
+        String player1, player2;
+        Rules rules;           // START
+        int winner;            // END: 1, 2 or 0
+        int durationMs;
+        String reason;
+    }
+
+    interface Visitor { boolean visit(Record record); }
+
+    // Decodes the records between the header and limit (or the first 0), returns where it
+    // stopped. Stops early when the visitor returns false.
+    static int readSegment(ByteBuffer buf, int limit, Record r, Visitor visitor) {
+        int pos = HEADER;
+        while (pos < limit) {
+            int first = buf.get(pos) & 0xFF;
+            VarHandle.acquireFence(); // pairs with Segment.commit: the rest is there once the type is
+            int type = first & 0x0F;
+            int length;
+            if (type == START) {
+                if (pos + 14 > limit) break;
+                int a = buf.get(pos + 13) & 0xFF;
+                if (pos + 15 + a > limit) break;
+                int b = buf.get(pos + 14 + a) & 0xFF;
+                length = 15 + a + b;
+                if (pos + length > limit) break;
+                r.rules = Rules.CLASSIC;
+                if ((first & RULES) != 0) {
+                    if (pos + length + 4 > limit) break;
+                    int size = buf.getShort(pos + length) & 0xFFFF, ships = buf.getShort(pos + length + 2) & 0xFFFF;
+                    if (pos + length + 4 + 2 * ships > limit) break;
+                    int[] fleet = new int[ships];
+                    for (int i = 0; i < ships; i++) fleet[i] = buf.getShort(pos + length + 4 + 2 * i) & 0xFFFF;
+                    length += 4 + 2 * ships;
+                    Rules rules = Rules.of(size, fleet);
+                    if (rules != null) r.rules = rules;
+                }
+                r.startedAt = buf.getLong(pos + 5);
+                r.player1 = string(buf, pos + 14, a);
+                r.player2 = string(buf, pos + 15 + a, b);
+            } else if (type == PLACE) {
+                boolean wide = (first & WIDE) != 0;
+                length = wide ? 11 : 7;
+                if (pos + length > limit) break;
+                if (wide) {
+                    r.ship = buf.getShort(pos + 5) & 0xFFFF;
+                    r.row = buf.getShort(pos + 7) & 0xFFFF;
+                    r.col = buf.getShort(pos + 9) & 0xFFFF;
+                } else {
+                    r.ship = buf.get(pos + 5) & 0xFF;
+                    int cell = buf.get(pos + 6) & 0xFF;
+                    r.row = cell / BitBoard.SIZE;
+                    r.col = cell % BitBoard.SIZE;
+                }
+                r.vertical = (first & 1 << 5) != 0;
+            } else if (type == SHOT) {
+                boolean wide = (first & WIDE) != 0;
+                length = wide ? 9 : 6;
+                if (pos + length > limit) break;
+                if (wide) {
+                    r.row = buf.getShort(pos + 5) & 0xFFFF;
+                    r.col = buf.getShort(pos + 7) & 0xFFFF;
+                } else {
+                    int cell = buf.get(pos + 5) & 0xFF;
+                    r.row = cell / BitBoard.SIZE;
+                    r.col = cell % BitBoard.SIZE;
+                }
+                r.hit = (first & 1 << 5) != 0;
+            } else if (type == END) {
+                if (pos + 10 > limit) break;
+                length = 10 + (buf.get(pos + 9) & 0xFF);
+                if (pos + length > limit) break;
+                r.winner = first >> 4 & 3;
+                r.durationMs = buf.getInt(pos + 5);
+                r.reason = string(buf, pos + 10, length - 10);
+            } else {
+                break; // 0: end of the data
+            }
+            r.type = type;
+            r.game = buf.getInt(pos + 1);
+            r.player = (first & 1 << 4) != 0 ? 2 : 1;
+            pos += length;
+            if (!visitor.visit(r)) break;
+        }
+        return pos;
+    }
+
+    private static String string(ByteBuffer buf, int pos, int length) {
+        byte[] bytes = new byte[length];
+        buf.get(pos, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Every segment of a directory in order, read-only (JournalScan)
+    static void scan(Path dir, Visitor visitor) throws IOException {
+        Record record = new Record();
+        for (Path file : segmentFiles(dir)) {
+            if (readHeader(file) == null) continue;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                readSegment(map, map.capacity(), record, visitor);
+            }
+        }
+    }
+
+
+    // --- REPLAY ---
+
+    // Streams a finished game to the client, on the reader thread
+    void replay(int game, BattleShipServer.ClientHandler client) {
+        if (!enabled()) { client.sendMessage("ERROR:No match journal on this server"); return; }
+        if (live.contains(game)) { client.sendMessage("ERROR:Game " + game + " is still running"); return; }
+        reader.submit(() -> {
+            try {
+                Rules[] rules = {Rules.CLASSIC};
+                if (!replay(game, r -> {
+                    if (r.type == START) rules[0] = r.rules;
+                    client.sendMessage(describe(r, rules[0]));
+                    return true;
+                })) {
+                    client.sendMessage("ERROR:No game " + game);
+                }
+            } catch (IOException e) {
+                Log.error("Replay of game {} failed", game, e);
+                client.sendMessage("ERROR:Replay failed");
+            }
+        });
+    }
+
+    // Visits the records of one game in order, false if its START is not in the journal.
+    // A game cut off by a crash gets a made up END (nobody, "Unfinished"). A record another
+    // thread is still writing stops a scan (its type byte is still 0), so a finished game
+    // whose END was not reached is read again a few times, skipping what was visited.
+    boolean replay(int game, Visitor visitor) throws IOException {
+        int from = -1;
+        List<int[]> known;
+        synchronized (this) {
+            for (int i = 0; i < segments.size(); i++) if (segments.get(i)[1] <= game) from = i;
+            known = new ArrayList<>(segments.subList(Math.max(0, from), segments.size()));
+        }
+        if (from < 0 || game >= nextGameId()) return false;
+
+        boolean[] state = new boolean[2]; // {started, ended}
+        int[] visited = new int[2];       // {this scan, all scans}
+        Record record = new Record();
+        Visitor filter = r -> {
+            if (r.game != game) return true;
+            if (r.type == START) state[0] = true;
+            if (!state[0]) return true;
+            if (visited[0]++ == visited[1]) { visitor.visit(r); visited[1]++; }
+            if (r.type == END) state[1] = true;
+            return !state[1];
+        };
+        for (int attempt = 0; attempt < 3 && !state[1]; attempt++) {
+            if (attempt > 0) Thread.yield();
+            state[0] = false;
+            visited[0] = 0;
+            for (int[] seg : known) {
+                Path file = segmentPath(dir, seg[0]);
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    readSegment(map, map.capacity(), record, filter);
+                }
+                if (!state[0] || state[1]) break; // START is in the first segment or nowhere
+            }
+            if (!state[0] || live.contains(game)) break;
+        }
+        if (state[0] && !state[1]) {
+            record.type = END;
+            record.game = game;
+            record.winner = 0;
+            record.reason = "Unfinished";
+            visitor.visit(record);
+        }
+        return state[0];
+    }
+
+    synchronized int nextGameId() { return nextGameId; }
+
+    // The text line a REPLAY sends for a record of a game played by these rules.
+    // START of a non classic game ends in :<size>:<ships>, like RULES.
+    static String describe(Record r, Rules rules) {
+        switch (r.type) {
+            case START:
+                return "REPLAY:" + r.game + ":" + r.player1 + "," + r.player2 + ":" + r.startedAt
+                        + (r.rules.classic() ? "" : ":" + r.rules.spec());
+            case PLACE:
+                return "REPLAY_PLACE:" + r.player + ":" + rules.cell(r.row, r.col) + "," + (r.vertical ? "V" : "H");
+            case SHOT:
+                return "REPLAY_SHOT:" + r.player + ":" + (r.hit ? "HIT:" : "MISS:") + rules.cell(r.row, r.col);
+            default:
+                return "REPLAY_END:" + r.winner + ":" + r.reason;
+        }
+    }
+
+    static void report(Metrics.Report report) {
+        MatchJournal journal = SERVER;
+        if (!journal.enabled()) { report.add("journal", "off"); return; }
+        synchronized (journal) {
+            report.add("journal_segment", journal.segment);
+            report.add("journal_segment_bytes", journal.current == null ? 0 : journal.current.position.get());
+            report.add("journal_games_total", journal.nextGameId - 1);
+        }
+        report.add("journal_live_games", journal.live.size());
+    }
+}
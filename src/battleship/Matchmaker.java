@@ -0,0 +1,124 @@
+/**
+ * Matchmaker.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * Quick match: QUICKPLAY puts the player in a queue and the "matchmaker" thread pairs the
+ * waiting players in rounds (--match-interval-ms=20) and starts their games directly,
+ * instead of the PLAYER_LIST / CHALLENGE / CHALLENGE_ACCEPTED round trips.
+ * Handlers only append to a lock-free queue; everything else happens on this one thread.
+ *
+ * Players also get an (in-memory) Elo rating from their results. With --rating-bucket=200
+ * only players of the same 200 point band are paired, until one of them has waited
+ * --bucket-wait-ms=3000, then the nearest rating is good enough.
+ */
+
+package battleship;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+public final class Matchmaker {
+
+    private static final long INTERVAL_MS = Math.max(1, ServerConfig.getInt("match-interval-ms", 20));
+    private static final int BUCKET = ServerConfig.getInt("rating-bucket", 0); // 0 = ratings ignored
+    private static final long BUCKET_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(ServerConfig.getInt("bucket-wait-ms", 3000));
+
+    // Elo ratings by user, kept while the server runs
+    static final int START_RATING = 1000;
+    private static final ConcurrentHashMap<String, Integer> ratings = new ConcurrentHashMap<>();
+
+    // The server's queue, the thread starts with the first QUICKPLAY
+    static final Matchmaker SERVER = new Matchmaker().start("matchmaker");
+
+    // New entries from the handlers, taken over by the matchmaker thread every round
+    private final Queue<BattleShipServer.ClientHandler> arrivals = new ConcurrentLinkedQueue<>();
+    private final List<BattleShipServer.ClientHandler> waiting = new ArrayList<>(); // round() only
+    private volatile int waitingCount = 0;
+
+    // Without start() nothing pairs on its own, benchmarks call round() themselves
+    Matchmaker() {}
+
+    private Matchmaker start(String threadName) {
+        Thread thread = new Thread(this::run, threadName);
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    // Called by the handler after it marked itself as queued
+    void enqueue(BattleShipServer.ClientHandler player) { arrivals.add(player); }
+
+    int waiting() { return waitingCount; }
+
+    static int rating(String user) { return user == null ? START_RATING : ratings.getOrDefault(user, START_RATING); }
+
+    // Elo update, K = 32. Called by the game shards when a match has a winner.
+    static void recordResult(String winner, String loser) {
+        if (winner == null || loser == null) return;
+        if (AiOpponent.isBot(winner) || AiOpponent.isBot(loser)) return; // practice, not rated
+        int w = rating(winner), l = rating(loser);
+        double expected = 1 / (1 + Math.pow(10, (l - w) / 400.0));
+        int change = (int) Math.round(32 * (1 - expected));
+        ratings.merge(winner, START_RATING + change, (old, ignored) -> old + change);
+        ratings.merge(loser, START_RATING - change, (old, ignored) -> old - change);
+    }
+
+    private void run() {
+        while (true) {
+            try {
+                Thread.sleep(INTERVAL_MS);
+                round(System.nanoTime());
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                Log.error("Matchmaking round failed", e);
+            }
+        }
+    }
+
+    // One batch: take the arrivals, drop who left, pair the rest
+    void round(long now) {
+        for (BattleShipServer.ClientHandler p; (p = arrivals.poll()) != null; ) waiting.add(p);
+        waiting.removeIf(p -> !p.stillQueued());
+        // A player that left the queue through a challenge and came back is in here twice
+        if (waiting.size() > 1) {
+            List<BattleShipServer.ClientHandler> unique = new ArrayList<>(new LinkedHashSet<>(waiting));
+            waiting.clear();
+            waiting.addAll(unique);
+        }
+        if (BUCKET > 0) waiting.sort(Comparator.comparingInt(p -> p.queuedRating)); // neighbours = nearest ratings
+
+        List<BattleShipServer.ClientHandler> leftOver = new ArrayList<>();
+        int i = 0;
+        while (i + 1 < waiting.size()) {
+            BattleShipServer.ClientHandler first = waiting.get(i), second = waiting.get(i + 1);
+            if (BUCKET > 0 && first.queuedRating / BUCKET != second.queuedRating / BUCKET
+                    && now - first.queuedAt < BUCKET_WAIT_NANOS && now - second.queuedAt < BUCKET_WAIT_NANOS) {
+                leftOver.add(first); // nobody in its band yet, try again next round
+                i++;
+                continue;
+            }
+            BattleShipServer.ClientHandler busy = BattleShipServer.ClientHandler.startGame(first, second, true);
+            if (busy == null) {
+                Metrics.quickplayWait.record(now - first.queuedAt);
+                Metrics.quickplayWait.record(now - second.queuedAt);
+            }
+            else if (busy == first) leftOver.add(second); // the busy one left the queue, the other waits on
+            else leftOver.add(first);
+            i += 2;
+        }
+        if (i < waiting.size()) leftOver.add(waiting.get(i));
+        waiting.clear();
+        waiting.addAll(leftOver);
+        waitingCount = waiting.size();
+    }
+}
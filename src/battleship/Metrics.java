@@ -0,0 +1,249 @@
+/**
+ * Metrics.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * In-process server metrics, cheap enough to stay on all the time: counters are
+ * LongAdders (striped, no contention between handler threads) and command latencies go
+ * into lock-free LatencyHistograms. Everything else (connections, queue depths, threads,
+ * event loops) is only computed when somebody asks for a report.
+ * The report is plain "name value" lines. Admins get it with the STATS command
+ * (--admins=alice,bob), and --metrics-port=9090 serves it over HTTP on localhost:
+ *
+ *     curl http://127.0.0.1:9090/metrics
+ */
+
+package battleship;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class Metrics {
+    private Metrics() {}
+
+    private static final long START = System.nanoTime();
+
+    // --- Counters, incremented from any thread ---
+    static final LongAdder connectionsAccepted = new LongAdder();
+    static final LongAdder sessionsStarted = new LongAdder();
+    static final LongAdder sessionsFinished = new LongAdder();
+    static final LongAdder logins = new LongAdder();
+    static final LongAdder loginFailures = new LongAdder();
+    static final LongAdder registrations = new LongAdder();
+    static final LongAdder registrationFailures = new LongAdder();
+    static final LongAdder commands = new LongAdder();
+    static final LongAdder sessionsAbandoned = new LongAdder();
+    static final LongAdder turnTimeouts = new LongAdder();
+    static final LongAdder idleTimeouts = new LongAdder();
+    static final LongAdder challengesExpired = new LongAdder();
+    static final LongAdder quickplayMatches = new LongAdder();
+    static final LongAdder presenceBatches = new LongAdder();
+    static final LongAdder presenceBytes = new LongAdder();
+    static final LongAdder presenceResyncs = new LongAdder();
+    static final LongAdder spectatorsJoined = new LongAdder();
+    static final LongAdder spectatorsDropped = new LongAdder();
+    static final LongAdder spectatorMessages = new LongAdder();
+    static final LongAdder aiGames = new LongAdder();
+    static final LongAdder aiRefused = new LongAdder();
+    static final LongAdder aiDegraded = new LongAdder();
+    static final LongAdder aiSamples = new LongAdder();
+    static final LongAdder clusterLinesSent = new LongAdder();
+    static final LongAdder clusterLinesReceived = new LongAdder();
+    static final LongAdder clusterLinkDrops = new LongAdder();
+    static final LongAdder clusterLinkOverflows = new LongAdder(); // of the drops: queue full
+    static final LongAdder clusterGamesHosted = new LongAdder();
+
+    // Time spent in the handler per command (nanoseconds), indexed by Opcode.ordinal()
+    private static final LatencyHistogram[] commandLatency = new LatencyHistogram[CommandDecoder.Opcode.values().length];
+    static {
+        for (int i = 0; i < commandLatency.length; i++) commandLatency[i] = new LatencyHistogram("ns");
+    }
+    // Cluster LOGIN: asking the name's home node for the login, see Cluster
+    static final LatencyHistogram clusterClaims = new LatencyHistogram("ns");
+    // REGISTER is answered by the journal writer, this is dispatch until the reply
+    static final LatencyHistogram registerCommit = new LatencyHistogram("ns");
+    // Time a game shard spends on one task (a move or a placement), see GameEngine
+    static final LatencyHistogram gameTasks = new LatencyHistogram("ns");
+    // One event (or snapshot) written to all viewers of a match, see Spectators
+    static final LatencyHistogram spectatorTasks = new LatencyHistogram("ns");
+    // One REPLAY read back from the match journal
+    static final LatencyHistogram replayTasks = new LatencyHistogram("ns");
+    // Time the timer thread spends on one tick of the wheel
+    static final LatencyHistogram timerTicks = new LatencyHistogram("ns");
+    // QUICKPLAY until the matchmaker paired the player
+    static final LatencyHistogram quickplayWait = new LatencyHistogram("ns");
+    // Bot turn: the reply that gave it the turn until its FIRE was worked out, see AiOpponent
+    static final LatencyHistogram aiMoves = new LatencyHistogram("ns");
+
+    private static volatile ConnectionEngine engine;
+    private static volatile Set<String> admins = new HashSet<>();
+
+    // Per second rates over the last RATE_WINDOW seconds, sampled by the "metrics" thread
+    private static final int RATE_WINDOW = 10;
+    private static final LongAdder[] RATED = {logins, registrations, commands, sessionsStarted};
+    private static final long[][] samples = new long[RATE_WINDOW + 1][RATED.length];
+    private static int sampleCount = 0;
+
+    public static void recordCommand(CommandDecoder.Opcode op, long nanos) {
+        commands.increment();
+        commandLatency[op.ordinal()].record(nanos);
+    }
+
+    static boolean isAdmin(String user) { return user != null && admins.contains(user); }
+
+    // Starts the rate sampler and, if configured, the HTTP endpoint
+    public static void start(ConnectionEngine serverEngine) {
+        engine = serverEngine;
+        admins = new HashSet<>(Arrays.asList(ServerConfig.get("admins", "").split(",")));
+        admins.remove("");
+
+        Thread sampler = new Thread(() -> {
+            while (true) {
+                sample();
+                try { Thread.sleep(1000); } catch (InterruptedException e) { return; }
+            }
+        }, "metrics");
+        sampler.setDaemon(true);
+        sampler.start();
+
+        int httpPort = ServerConfig.getInt("metrics-port", 0);
+        if (httpPort > 0) {
+            try {
+                startHttp(httpPort);
+                System.out.println("Metrics on http://127.0.0.1:" + httpPort + "/metrics");
+            } catch (IOException e) {
+                System.out.println("Metrics endpoint not started: " + e.getMessage());
+            }
+        }
+    }
+
+    // Local only: bound to the loopback address, read-only GET /metrics
+    private static void startHttp(int port) throws IOException {
+        HttpServer http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 16);
+        http.createContext("/metrics", exchange -> {
+            byte[] body = (String.join("\n", report()) + "\n").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) { out.write(body); }
+        });
+        http.start(); // default executor: one background thread, requests are rare
+    }
+
+    private static synchronized void sample() {
+        long[] row = samples[sampleCount++ % samples.length];
+        for (int i = 0; i < RATED.length; i++) row[i] = RATED[i].sum();
+    }
+
+    // Average per second of RATED[index] over the sampled window
+    private static synchronized double rate(int index) {
+        if (sampleCount < 2) return 0;
+        int span = Math.min(sampleCount - 1, RATE_WINDOW);
+        long newest = samples[(sampleCount - 1) % samples.length][index];
+        long oldest = samples[(sampleCount - 1 - span) % samples.length][index];
+        return (newest - oldest) / (double) span;
+    }
+
+    // REPORT -> Collects "name value" lines, engines add their own with add()
+    static final class Report {
+        final List<String> lines = new ArrayList<>();
+
+        void add(String name, Object value) { lines.add(name + " " + value); }
+    }
+
+    public static List<String> report() {
+        Report r = new Report();
+        r.add("uptime_seconds", TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - START));
+
+        // Connections and players
+        r.add("connections_active", ConnectionEngine.openConnections.size());
+        r.add("connections_total", connectionsAccepted.sum());
+        r.add("players_online", BattleShipServer.onlinePlayers.size());
+        r.add("presence_subscribers", Presence.subscribers());
+        r.add("presence_batches_total", presenceBatches.sum());
+        r.add("presence_bytes_total", presenceBytes.sum());
+        r.add("presence_resyncs_total", presenceResyncs.sum());
+        r.add("spectators_joined_total", spectatorsJoined.sum());
+        r.add("spectators_dropped_total", spectatorsDropped.sum());
+        r.add("spectator_messages_total", spectatorMessages.sum());
+        r.add("spectator_queue", Spectators.queued());
+        if (spectatorTasks.count() > 0) r.add("spectator_task_latency", spectatorTasks.summary());
+        r.add("sessions_active", sessionsStarted.sum() - sessionsFinished.sum());
+        r.add("sessions_total", sessionsStarted.sum());
+        r.add("sessions_per_second", String.format("%.1f", rate(3)));
+        r.add("sessions_abandoned_total", sessionsAbandoned.sum());
+        r.add("quickplay_waiting", Matchmaker.SERVER.waiting());
+        r.add("quickplay_matches_total", quickplayMatches.sum());
+        if (quickplayWait.count() > 0) r.add("quickplay_wait", quickplayWait.summary());
+        AiOpponent.report(r);
+        Cluster.report(r);
+
+        // Timeouts
+        r.add("timers_active", TimerWheel.SERVER.size());
+        r.add("turn_timeouts_total", turnTimeouts.sum());
+        r.add("idle_timeouts_total", idleTimeouts.sum());
+        r.add("challenges_expired_total", challengesExpired.sum());
+        if (timerTicks.count() > 0) r.add("timer_tick_latency", timerTicks.summary());
+
+        // Accounts
+        r.add("logins_total", logins.sum());
+        r.add("logins_per_second", String.format("%.1f", rate(0)));
+        r.add("login_failures_total", loginFailures.sum());
+        r.add("registrations_total", registrations.sum());
+        r.add("registrations_per_second", String.format("%.1f", rate(1)));
+        r.add("registration_failures_total", registrationFailures.sum());
+        r.add("users_registered", BattleShipServer.UserDatabase.size());
+
+        // Outbound queues (walks the open connections, only done for a report)
+        long queued = 0, deepest = 0;
+        for (ConnectionEngine.QueuedConnection c : ConnectionEngine.openConnections) {
+            int pending = c.pendingBytes();
+            queued += pending;
+            deepest = Math.max(deepest, pending);
+        }
+        r.add("outbound_queued_bytes", queued);
+        r.add("outbound_deepest_queue_bytes", deepest);
+        r.add("outbound_dropped_messages", ConnectionEngine.droppedMessages.sum());
+        r.add("slow_consumer_disconnects", ConnectionEngine.slowConsumerDisconnects.sum());
+        r.add("log_events_dropped", Log.dropped.sum());
+
+        // JVM
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        r.add("threads_live", threads.getThreadCount());
+        r.add("threads_peak", threads.getPeakThreadCount());
+        Runtime rt = Runtime.getRuntime();
+        r.add("heap_used_bytes", rt.totalMemory() - rt.freeMemory());
+        r.add("heap_max_bytes", rt.maxMemory());
+        ConnectionEngine e = engine;
+        if (e != null) e.report(r);
+        GameEngine.report(r);
+        MatchJournal.report(r);
+        if (replayTasks.count() > 0) r.add("replay_latency", replayTasks.summary());
+
+        // Commands
+        r.add("commands_total", commands.sum());
+        r.add("commands_per_second", String.format("%.1f", rate(2)));
+        for (CommandDecoder.Opcode op : CommandDecoder.Opcode.values()) {
+            LatencyHistogram h = commandLatency[op.ordinal()];
+            if (h.count() > 0) r.add("command_latency{" + op + "}", h.summary());
+        }
+        if (registerCommit.count() > 0) r.add("register_commit_latency", registerCommit.summary());
+        if (gameTasks.count() > 0) r.add("game_task_latency", gameTasks.summary());
+        return r.lines;
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * Presence.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * Live lobby for clients that send PRESENCE:ON. They get the current players once, in
+ * pages, and from then on only what changed:
+ *
+ *     PRESENCE_SNAPSHOT:1/3:+alice,*bob,...    (+ in the lobby, * playing)
+ *     PRESENCE:+carol,-alice,*dave              (joined / back in the lobby, left, playing)
+ *
+ * Handlers only note the name that changed. Every --presence-ms=200 the "presence" thread
+ * looks those names up in onlinePlayers (the source of truth), encodes one batch for both
+ * protocols and hands the same bytes to every subscriber. A delta always wins over a
+ * snapshot entry, so the client can apply them in any order.
+ * Throttling: snapshot pages only go out while a subscriber has less than half of
+ * --presence-backlog-kb=64 queued, and a subscriber that falls further behind gets
+ * PRESENCE_RESET and a fresh snapshot instead of an ever growing queue.
+ * PLAYER_LIST is paged the same way once it outgrows one page (PLAYER_LIST:1/3:alice,...),
+ * a single page stays the old PLAYER_LIST:alice,bob.
+ * In a cluster the round also sends our own players' changes to the other nodes, and
+ * their players are listed here with the state their node last sent (see Cluster).
+ */
+
+package battleship;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public final class Presence {
+    private Presence() {}
+
+    private static final long INTERVAL_MS = Math.max(10, ServerConfig.getInt("presence-ms", 200));
+    private static final int BACKLOG = ServerConfig.getInt("presence-backlog-kb", 64) * 1024;
+    private static final int PAGE_BYTES = 3000; // stays well below BinaryProtocol.MAX_FRAME
+
+    private static final BinaryProtocol.Shared RESET = new BinaryProtocol.Shared("PRESENCE_RESET");
+
+    // Names whose presence changed since the last round (duplicates are fine)
+    private static final Queue<String> changed = new ConcurrentLinkedQueue<>();
+    private static final Map<BattleShipServer.ClientHandler, Subscriber> subscribers = new ConcurrentHashMap<>();
+
+    // PLAYER_LIST reply, rebuilt at most once per round
+    private static volatile boolean listDirty = true;
+    private static List<BinaryProtocol.Shared> cachedList;
+    private static long listBuiltAt;
+
+    static {
+        Thread thread = new Thread(Presence::run, "presence");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // SUBSCRIBER -> Where a subscriber is in its snapshot, presence thread only
+    private static final class Subscriber {
+        List<BinaryProtocol.Shared> snapshot; // null: needs one (new or reset)
+        int nextPage;
+        boolean reset;
+    }
+
+    // Login, logout, game started or ended
+    static void changed(String name) {
+        if (name == null || AiOpponent.isBot(name)) return; // bots are never listed
+        changed.add(name);
+        listDirty = true;
+    }
+
+    static void subscribe(BattleShipServer.ClientHandler client) { subscribers.put(client, new Subscriber()); }
+
+    static void unsubscribe(BattleShipServer.ClientHandler client) { subscribers.remove(client); }
+
+    static int subscribers() { return subscribers.size(); }
+
+    // The old full list, shared by everyone asking within the same round
+    static synchronized List<BinaryProtocol.Shared> playerList() {
+        long now = System.nanoTime();
+        if (cachedList == null || (listDirty && now - listBuiltAt >= INTERVAL_MS * 1_000_000)) {
+            listDirty = false;
+            listBuiltAt = now;
+            List<StringBuilder> bodies = cut(everyone(), false, false);
+            List<BinaryProtocol.Shared> list = new ArrayList<>(bodies.size());
+            for (int i = 0; i < bodies.size(); i++) {
+                String page = bodies.size() == 1 ? "" : (i + 1) + "/" + bodies.size() + ":";
+                list.add(new BinaryProtocol.Shared("PLAYER_LIST:" + page + bodies.get(i)));
+            }
+            cachedList = list;
+        }
+        return cachedList;
+    }
+
+    private static void run() {
+        while (true) {
+            try {
+                Thread.sleep(INTERVAL_MS);
+                round();
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                Log.error("Presence round failed", e);
+            }
+        }
+    }
+
+    private static void round() {
+        // One batch of deltas, each name once with its state right now
+        LinkedHashSet<String> names = new LinkedHashSet<>();
+        for (String name; (name = changed.poll()) != null; ) names.add(name);
+        List<BinaryProtocol.Shared> deltas = names.isEmpty() ? List.of() : pages("PRESENCE:", names);
+        if (!names.isEmpty() && Cluster.enabled()) Cluster.publish(names);
+        int deltaBytes = 0;
+        for (BinaryProtocol.Shared d : deltas) deltaBytes += d.length();
+        if (!deltas.isEmpty()) Metrics.presenceBatches.increment();
+
+        List<BinaryProtocol.Shared> snapshot = null; // built once for all who need one this round
+        for (Map.Entry<BattleShipServer.ClientHandler, Subscriber> entry : subscribers.entrySet()) {
+            BattleShipServer.ClientHandler client = entry.getKey();
+            Subscriber sub = entry.getValue();
+            if (client.isClosed()) { subscribers.remove(client); continue; }
+
+            if (!deltas.isEmpty()) {
+                if (client.pendingBytes() + deltaBytes > BACKLOG) {
+                    // Not reading fast enough: skip the deltas, start over when it has caught up
+                    if (sub.snapshot != null) Metrics.presenceResyncs.increment();
+                    sub.snapshot = null;
+                    sub.reset = true;
+                    continue;
+                }
+                for (BinaryProtocol.Shared d : deltas) client.sendShared(d);
+                Metrics.presenceBytes.add(deltaBytes);
+            }
+
+            if (sub.snapshot == null) {
+                if (client.pendingBytes() >= BACKLOG / 2) continue;
+                if (snapshot == null) snapshot = pages("PRESENCE_SNAPSHOT:", everyone());
+                if (sub.reset) client.sendShared(RESET);
+                sub.snapshot = snapshot;
+                sub.nextPage = 0;
+                sub.reset = false;
+            }
+            while (sub.nextPage < sub.snapshot.size() && client.pendingBytes() < BACKLOG / 2) {
+                BinaryProtocol.Shared page = sub.snapshot.get(sub.nextPage++);
+                client.sendShared(page);
+                Metrics.presenceBytes.add(page.length());
+            }
+        }
+    }
+
+    // "+name" / "*name" / "-name" entries cut into lines of at most PAGE_BYTES. Snapshot
+    // pages are numbered (PRESENCE_SNAPSHOT:2/5:...) so the client knows when it has all.
+    private static List<BinaryProtocol.Shared> pages(String prefix, Iterable<String> names) {
+        boolean snapshot = prefix.equals("PRESENCE_SNAPSHOT:");
+        List<StringBuilder> bodies = cut(names, !snapshot, true);
+
+        List<BinaryProtocol.Shared> lines = new ArrayList<>(bodies.size());
+        for (int i = 0; i < bodies.size(); i++) {
+            String head = snapshot ? prefix + (i + 1) + "/" + bodies.size() + ":" : prefix;
+            lines.add(new BinaryProtocol.Shared(head + bodies.get(i)));
+        }
+        return lines;
+    }
+
+    // Comma separated entries, at most PAGE_BYTES of UTF-8 per page (REGISTER keeps ','
+    // out of names, see UserDatabase.checkCredentials). Deltas list "-name" for players
+    // that left, the snapshot and PLAYER_LIST skip them; PLAYER_LIST has no state char.
+    private static List<StringBuilder> cut(Iterable<String> names, boolean withGone, boolean states) {
+        List<StringBuilder> bodies = new ArrayList<>();
+        StringBuilder body = new StringBuilder();
+        for (String name : names) {
+            char state = state(name);
+            if (!withGone && state == '-') continue; // left while we were iterating
+            if (body.length() + name.length() * 3 + 2 > PAGE_BYTES) { bodies.add(body); body = new StringBuilder(); }
+            if (body.length() > 0) body.append(',');
+            if (states) body.append(state);
+            body.append(name);
+        }
+        if (body.length() > 0 || bodies.isEmpty()) bodies.add(body);
+        return bodies;
+    }
+
+    private static char state(String name) {
+        BattleShipServer.ClientHandler player = BattleShipServer.onlinePlayers.get(name);
+        if (player == null) return Cluster.enabled() ? Cluster.remoteState(name) : '-';
+        return player.inGame() ? '*' : '+';
+    }
+
+    // Our players and, in a cluster, those of the other nodes
+    private static Collection<String> everyone() {
+        if (!Cluster.enabled()) return BattleShipServer.onlinePlayers.keySet();
+        LinkedHashSet<String> names = new LinkedHashSet<>(BattleShipServer.onlinePlayers.keySet());
+        names.addAll(Cluster.remoteNames());
+        return names;
+    }
+}
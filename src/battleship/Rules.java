@@ -0,0 +1,141 @@
+/**
+ * Rules.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * Board size and fleet of one match. CLASSIC is the 10x10 game with ships of 5, 4, 3, 2
+ * and 1; a challenger may propose another mode with CHALLENGE:bob:<size>[:<ship,ship,..>]
+ * (e.g. CHALLENGE:bob:100:5,5,4,4,3,3), which bob accepts with the challenge. Players of
+ * a non classic game get RULES:<size>:<ships> just before GAME_START.
+ *
+ * Rows are named by letter on boards of up to 16 rows ("B,5") and by number on larger
+ * ones ("120,5"); commands accept both.
+ */
+
+package battleship;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+public final class Rules {
+    public static final int MIN_SIZE = 5;
+    public static final int MAX_SIZE = 1000;
+    public static final int MAX_SHIPS = 1000;
+    public static final int LETTER_ROWS = 16; // also the limit of BinaryProtocol's packed cells
+
+    public static final Rules CLASSIC = new Rules(BitBoard.SIZE, new int[]{5, 4, 3, 2, 1});
+
+    static final String ERR_MODE = "ERROR:Expected <size>[:<ship sizes>] with a size of " + MIN_SIZE + "-" + MAX_SIZE
+            + ", at most " + MAX_SHIPS + " ships and ships covering at most half of the board";
+
+    public final int size;
+    public final int[] fleet;     // ship lengths in placement order
+    public final int fleetCells;
+
+    private Rules(int size, int[] fleet) {
+        this.size = size;
+        this.fleet = fleet;
+        int cells = 0;
+        for (int length : fleet) cells += length;
+        this.fleetCells = cells;
+    }
+
+    // "<size>" (classic fleet) or "<size>:<ship,ship,...>", null if not a valid mode
+    public static Rules parse(String spec) {
+        if (spec == null || spec.isEmpty()) return CLASSIC;
+        String[] parts = spec.split(":", 2);
+        try {
+            int size = Integer.parseInt(parts[0].trim());
+            int[] fleet = CLASSIC.fleet;
+            if (parts.length > 1) {
+                String[] lengths = parts[1].split(",");
+                if (lengths.length > MAX_SHIPS) return null;
+                fleet = new int[lengths.length];
+                for (int i = 0; i < lengths.length; i++) fleet[i] = Integer.parseInt(lengths[i].trim());
+            }
+            return of(size, fleet);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public static Rules of(int size, int[] fleet) {
+        if (size < MIN_SIZE || size > MAX_SIZE || fleet.length == 0 || fleet.length > MAX_SHIPS) return null;
+        long cells = 0;
+        for (int length : fleet) {
+            if (length < 1 || length > size) return null;
+            cells += length;
+        }
+        if (cells > (long) size * size / 2) return null;
+        if (size == CLASSIC.size && Arrays.equals(fleet, CLASSIC.fleet)) return CLASSIC;
+        return new Rules(size, fleet.clone());
+    }
+
+    public boolean classic() { return this == CLASSIC; }
+
+    public boolean inBounds(int row, int col) { return row >= 0 && row < size && col >= 0 && col < size; }
+
+    // Rows by letter up to LETTER_ROWS, by number above (the binary protocol goes wide there)
+    public boolean letterRows() { return size <= LETTER_ROWS; }
+
+    // "B,5" or "120,5"
+    public String cell(int row, int col) {
+        return (letterRows() ? String.valueOf((char) ('A' + row)) : String.valueOf(row)) + "," + col;
+    }
+
+    // Random placement gives up on a ship after ATTEMPTS tries and starts the layout over,
+    // after TRIES tries in all there is none (a fleet that fills half the board can box
+    // itself in, e.g. many single cells scattered before two full rows)
+    private static final int ATTEMPTS = 100;
+    private static final int TRIES = 100_000;
+
+    // A random layout of the fleet: {row, col, vertical} per ship (in fleet order), no
+    // overlaps. The longest ships go first, they are the hard ones to fit. Null if no
+    // layout was found within TRIES.
+    public int[][] randomFleet(Random random) {
+        Integer[] order = new Integer[fleet.length];
+        for (int s = 0; s < order.length; s++) order[s] = s;
+        Arrays.sort(order, (a, b) -> fleet[b] - fleet[a]);
+        BitSet used = new BitSet(size * size);
+        int[][] layout = new int[fleet.length][];
+        int tries = 0;
+        layouts:
+        while (tries < TRIES) {
+            used.clear();
+            for (int s : order) {
+                int length = fleet[s];
+                for (int attempt = 0; ; attempt++) {
+                    if (attempt == ATTEMPTS || ++tries > TRIES) continue layouts;
+                    boolean vertical = random.nextBoolean();
+                    int row = random.nextInt(vertical ? size - length + 1 : size);
+                    int col = random.nextInt(vertical ? size : size - length + 1);
+                    int step = vertical ? size : 1, first = row * size + col;
+                    boolean free = true;
+                    for (int i = 0; i < length && free; i++) free = !used.get(first + i * step);
+                    if (!free) continue;
+                    for (int i = 0; i < length; i++) used.set(first + i * step);
+                    layout[s] = new int[]{row, col, vertical ? 1 : 0};
+                    break;
+                }
+            }
+            return layout;
+        }
+        return null;
+    }
+
+    // "100:5,4,3", what RULES: and CHALLENGE_FROM: carry
+    public String spec() {
+        StringBuilder sb = new StringBuilder().append(size).append(':');
+        for (int i = 0; i < fleet.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(fleet[i]);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() { return spec(); }
+}
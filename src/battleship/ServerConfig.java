@@ -0,0 +1,53 @@
+/**
+ * ServerConfig.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * Startup settings for the Battleship server. Every value can be given as a system
+ * property (-Dbattleship.engine=nio) or as a program argument (--engine=nio), the
+ * argument wins when both are present.
+ */
+
+package battleship;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class ServerConfig {
+    private static final String PREFIX = "battleship.";
+    private static final Map<String, String> overrides = new HashMap<>();
+
+    // Reads "--key=value" program arguments, anything else is ignored
+    public static void load(String[] args) {
+        for (String arg : args) {
+            if (!arg.startsWith("--")) continue;
+            int eq = arg.indexOf('=');
+            if (eq < 0) overrides.put(arg.substring(2), "true");
+            else overrides.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+    }
+
+    public static String get(String key, String def) {
+        String value = overrides.get(key);
+        if (value == null) value = System.getProperty(PREFIX + key);
+        return value != null ? value : def;
+    }
+
+    public static int getInt(String key, int def) {
+        String value = get(key, null);
+        if (value == null) return def;
+        try { return Integer.parseInt(value.trim()); } catch (NumberFormatException e) { return def; }
+    }
+
+    // --- Server settings ---
+    public static int port() { return getInt("port", 8888); }
+
+    // Connection engine: "nio" (selector event loops), "virtual" (virtual thread per
+    // connection, JDK 21+) or "thread" (the original platform thread per connection)
+    public static String engine() { return get("engine", "nio"); }
+
+    // Number of selector event loops used by the "nio" engine
+    public static int eventLoops() { return getInt("loops", Runtime.getRuntime().availableProcessors()); }
+}
@@ -0,0 +1,103 @@
+/**
+ * SparseBoard.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * Board of any size up to 1000x1000 (1M cells) without a per-cell array:
+ *   - ships: open addressing hash from cell (row * size + col) to ship number, as big
+ *            as the fleet, not the board
+ *   - shots: a bit set cut into pages of 4096 cells (512 bytes), a page is only
+ *            allocated once somebody fires into it
+ * An empty 1000x1000 board with a classic fleet is about 1.5 KB, a board shot at
+ * everywhere 125 KB. A shot is one page lookup plus, on a ship page, a hash probe.
+ */
+
+package battleship;
+
+public final class SparseBoard extends Board {
+    private static final int PAGE_BITS = 12; // 4096 cells = 64 longs per page
+
+    // Ship cells: keys hold cell + 1 (0 = empty slot), values the ship number
+    private int[] keys = new int[32];
+    private int[] values = new int[32];
+    private int used = 0;
+
+    private final long[][] shotPages;
+
+    public SparseBoard(int size) {
+        super(size);
+        shotPages = new long[(size * size + (1 << PAGE_BITS) - 1) >> PAGE_BITS][];
+    }
+
+    @Override
+    protected boolean place(int row, int col, int length, boolean vertical, int ship) {
+        int step = vertical ? size : 1;
+        int first = row * size + col;
+        for (int i = 0, cell = first; i < length; i++, cell += step) {
+            if (owner(cell) >= 0) return false;
+        }
+        for (int i = 0, cell = first; i < length; i++, cell += step) put(cell, ship);
+        return true;
+    }
+
+    @Override
+    protected int shoot(int row, int col) {
+        int cell = row * size + col;
+        long[] page = shotPages[cell >> PAGE_BITS];
+        if (page == null) page = shotPages[cell >> PAGE_BITS] = new long[1 << (PAGE_BITS - 6)];
+        int index = (cell >> 6) & ((1 << (PAGE_BITS - 6)) - 1);
+        long bit = 1L << cell;
+        if ((page[index] & bit) != 0) return -2;
+        page[index] |= bit;
+        int ship = owner(cell);
+        return ship >= 0 ? ship : -1;
+    }
+
+    @Override
+    public boolean hasShip(int row, int col) { return owner(row * size + col) >= 0; }
+
+    @Override
+    public boolean wasFiredAt(int row, int col) {
+        int cell = row * size + col;
+        long[] page = shotPages[cell >> PAGE_BITS];
+        return page != null && (page[(cell >> 6) & ((1 << (PAGE_BITS - 6)) - 1)] & (1L << cell)) != 0;
+    }
+
+    // --- Cell -> ship hash (linear probing) ---
+
+    private int owner(int cell) {
+        int mask = keys.length - 1;
+        for (int i = mix(cell) & mask; ; i = (i + 1) & mask) {
+            int key = keys[i];
+            if (key == 0) return -1;
+            if (key == cell + 1) return values[i];
+        }
+    }
+
+    private void put(int cell, int ship) {
+        if ((used + 1) * 2 > keys.length) grow();
+        int mask = keys.length - 1;
+        int i = mix(cell) & mask;
+        while (keys[i] != 0) i = (i + 1) & mask;
+        keys[i] = cell + 1;
+        values[i] = ship;
+        used++;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys, oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        used = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) put(oldKeys[i] - 1, oldValues[i]);
+        }
+    }
+
+    private static int mix(int cell) {
+        int h = cell * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Spectators.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * SPECTATE:player lets anyone watch that player's match live. A new viewer first gets a
+ * snapshot, then every event of the match:
+ *
+ *     SPECTATING:alice,bob:TURN:alice    (players, then SETUP / TURN:name)
+ *     WATCH_BOARD:1:....X..O.....        (alice's grid, row by row: . unknown, X hit, O miss)
+ *     WATCH_BOARD:2:.........O...
+ *     WATCH:START                        (both fleets placed)
+ *     WATCH:1:HIT:B,5                    (player 1 fired at B,5 on player 2's grid)
+ *     WATCH_OVER:alice                   (winner, or "nobody"), then both WATCH_BOARDs
+ *                                        again with the ships shown (S)
+ *
+ * Ships stay hidden until the game is over. Events are encoded once per match (the shot
+ * events of classic games even once per server) and the same bytes are queued for every
+ * viewer. Boards above MAX_SIZE cells a side can't be watched, the grids would be too big.
+ * The game shard never writes to viewers: it hands the event to the "spectators" thread,
+ * which owns the viewer lists, so a slow viewer can't hold up a move. A viewer with more
+ * than --spectator-backlog-kb=64 queued is dropped (WATCH_END) and may SPECTATE again.
+ */
+
+package battleship;
+
+import java.util.ArrayList;
+import java.util.List;
+
+final class Spectators {
+    private Spectators() {}
+
+    private static final int BACKLOG = ServerConfig.getInt("spectator-backlog-kb", 64) * 1024;
+    static final int MAX_SIZE = 50;
+
+    private static final GameEngine.Shard FANOUT = new GameEngine.Shard("spectators", Metrics.spectatorTasks);
+    static {
+        FANOUT.start();
+    }
+
+    // WATCH:<1|2>:<HIT|MISS>:<cell> for every shooter, result and cell, built once
+    private static final BinaryProtocol.Shared[][][] SHOTS = new BinaryProtocol.Shared[2][2][BitBoard.SIZE * BitBoard.SIZE];
+    static {
+        for (int shooter = 0; shooter < 2; shooter++) {
+            for (int hit = 0; hit < 2; hit++) {
+                for (int cell = 0; cell < BitBoard.SIZE * BitBoard.SIZE; cell++) {
+                    SHOTS[shooter][hit][cell] = new BinaryProtocol.Shared("WATCH:" + (shooter + 1) + ":" + (hit == 1 ? "HIT:" : "MISS:")
+                            + (char) ('A' + cell / BitBoard.SIZE) + "," + cell % BitBoard.SIZE);
+                }
+            }
+        }
+    }
+    static final BinaryProtocol.Shared START = new BinaryProtocol.Shared("WATCH:START");
+    private static final BinaryProtocol.Shared TOO_SLOW = new BinaryProtocol.Shared("WATCH_END:Too slow");
+
+    static BinaryProtocol.Shared shot(Rules rules, boolean byPlayer1, boolean hit, int row, int col) {
+        if (rules.classic()) return SHOTS[byPlayer1 ? 0 : 1][hit ? 1 : 0][row * BitBoard.SIZE + col];
+        return new BinaryProtocol.Shared("WATCH:" + (byPlayer1 ? 1 : 2) + ":" + (hit ? "HIT:" : "MISS:") + rules.cell(row, col));
+    }
+
+    // Grid of one player as seen by a spectator, ships only once revealed
+    static String board(Board board, boolean showShips) {
+        StringBuilder sb = new StringBuilder(board.size * board.size);
+        for (int r = 0; r < board.size; r++) {
+            for (int c = 0; c < board.size; c++) {
+                boolean ship = board.hasShip(r, c);
+                if (board.wasFiredAt(r, c)) sb.append(ship ? 'X' : 'O');
+                else sb.append(ship && showShips ? 'S' : '.');
+            }
+        }
+        return sb.toString();
+    }
+
+    static int queued() { return FANOUT.queued(); }
+
+
+    // --- Called by the game shard that owns the session ---
+
+    // Snapshot first, then the viewer is on the list: nothing published later is missed
+    static void watch(BattleShipServer.GameSession session, BattleShipServer.ClientHandler viewer, List<BinaryProtocol.Shared> snapshot) {
+        FANOUT.submit(() -> {
+            if (viewer.watching() != session) return; // changed its mind meanwhile
+            for (BinaryProtocol.Shared msg : snapshot) viewer.sendShared(msg);
+            session.viewers.add(viewer);
+            Metrics.spectatorsJoined.increment();
+        });
+    }
+
+    static void publish(BattleShipServer.GameSession session, BinaryProtocol.Shared event) {
+        FANOUT.submit(() -> deliver(session, event));
+    }
+
+    // Last events of a match, the viewers are released afterwards
+    static void finish(BattleShipServer.GameSession session, List<BinaryProtocol.Shared> events) {
+        FANOUT.submit(() -> {
+            for (BinaryProtocol.Shared event : events) deliver(session, event);
+            for (BattleShipServer.ClientHandler viewer : session.viewers) viewer.stopWatching(session);
+            session.viewers.clear();
+        });
+    }
+
+
+    // --- Spectators thread ---
+
+    private static void deliver(BattleShipServer.GameSession session, BinaryProtocol.Shared event) {
+        List<BattleShipServer.ClientHandler> viewers = session.viewers;
+        if (viewers.isEmpty()) return;
+        List<BattleShipServer.ClientHandler> gone = null;
+        for (BattleShipServer.ClientHandler viewer : viewers) {
+            if (viewer.isClosed() || viewer.watching() != session) {
+                (gone == null ? gone = new ArrayList<>() : gone).add(viewer);
+            } else if (viewer.pendingBytes() > BACKLOG) {
+                viewer.stopWatching(session);
+                viewer.sendShared(TOO_SLOW);
+                Metrics.spectatorsDropped.increment();
+                (gone == null ? gone = new ArrayList<>() : gone).add(viewer);
+            } else {
+                viewer.sendShared(event);
+            }
+        }
+        if (gone != null) viewers.removeAll(gone);
+        Metrics.spectatorMessages.add(viewers.size());
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * TimerWheel.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * Hashed timing wheel for the server's timeouts (turn clocks, idle connections, pending
+ * challenges). A ring of buckets, each one tick wide; a timeout goes into the bucket of
+ * its deadline with the number of full turns of the wheel still to wait. Scheduling and
+ * cancelling are O(1) and only touch a lock-free queue, the "timer" thread moves them
+ * into the wheel and on every tick looks at one bucket only, however many timeouts there
+ * are. Precision is one tick (--timer-tick-ms=100), plenty for timeouts counted in seconds.
+ *
+ * Expired tasks run on the timer thread and must be short: hand real work to a game
+ * shard or a connection instead.
+ */
+
+package battleship;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+public final class TimerWheel {
+
+    // The server's timer, the thread starts with the first use
+    static final TimerWheel SERVER = new TimerWheel(
+            TimeUnit.MILLISECONDS.toNanos(Math.max(1, ServerConfig.getInt("timer-tick-ms", 100))), 512, System::nanoTime)
+            .start("timer");
+
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final LongSupplier clock;
+    private final long origin;
+
+    // Handed over to the timer thread, which owns the buckets
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+
+    private long tick = 0;               // next tick to process, timer thread only
+    private volatile int count = 0;      // timeouts in the wheel, written by the timer thread only
+
+    // The clock is a parameter so benchmarks can drive a wheel without waiting for real time
+    TimerWheel(long tickNanos, int wheelSize, LongSupplier clock) {
+        this.tickNanos = tickNanos;
+        this.wheel = new Bucket[Integer.highestOneBit(Math.max(16, wheelSize))];
+        this.mask = wheel.length - 1;
+        for (int i = 0; i < wheel.length; i++) wheel[i] = new Bucket();
+        this.clock = clock;
+        this.origin = clock.getAsLong();
+    }
+
+    private TimerWheel start(String threadName) {
+        Thread thread = new Thread(this::run, threadName);
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    // Runs task once after the delay unless the returned Timeout is cancelled first
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(this, task, clock.getAsLong() + unit.toNanos(Math.max(0, delay)));
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    public int size() { return count; }
+
+    long nextTickTime() { return origin + (tick + 1) * tickNanos; }
+
+
+    // --- Timer thread ---
+
+    private void run() {
+        while (true) {
+            long due = nextTickTime();
+            long wait;
+            while ((wait = due - clock.getAsLong()) > 0) LockSupport.parkNanos(wait);
+            long start = System.nanoTime();
+            tick(due);
+            Metrics.timerTicks.record(System.nanoTime() - start);
+        }
+    }
+
+    // One tick: take in new and cancelled timeouts, then expire the current bucket.
+    // `now` is the time of this tick, callers make sure it has been reached.
+    void tick(long now) {
+        for (Timeout t; (t = cancelled.poll()) != null; ) unlink(t);
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout t = scheduled.poll();
+            if (t == null) break;
+            if (t.state == Timeout.PENDING) link(t);
+        }
+
+        Bucket bucket = wheel[(int) (tick & mask)];
+        Timeout t = bucket.head;
+        while (t != null) {
+            Timeout next = t.next;
+            if (t.rounds <= 0 && t.deadline <= now) {
+                unlink(t);
+                t.expire();
+            } else if (t.state == Timeout.CANCELLED) {
+                unlink(t);
+            } else {
+                t.rounds--;
+            }
+            t = next;
+        }
+        tick++;
+    }
+
+    private void link(Timeout t) {
+        long ticks = (t.deadline - origin + tickNanos - 1) / tickNanos; // first tick at or after the deadline
+        long target = Math.max(ticks, tick);                            // already due: current bucket
+        t.rounds = (target - tick) / wheel.length;
+        Bucket bucket = wheel[(int) (target & mask)];
+        t.bucket = bucket;
+        t.prev = bucket.tail;
+        if (bucket.tail == null) bucket.head = t; else bucket.tail.next = t;
+        bucket.tail = t;
+        count++;
+    }
+
+    private void unlink(Timeout t) {
+        Bucket bucket = t.bucket;
+        if (bucket == null) return; // never linked, or already removed
+        if (t.prev == null) bucket.head = t.next; else t.prev.next = t.next;
+        if (t.next == null) bucket.tail = t.prev; else t.next.prev = t.prev;
+        t.prev = t.next = null;
+        t.bucket = null;
+        count--;
+    }
+
+    // BUCKET -> Doubly linked list of the timeouts of one slot
+    private static final class Bucket {
+        Timeout head, tail;
+    }
+
+
+    // TIMEOUT -> Handle of one scheduled task. cancel() may be called from any thread.
+    public static final class Timeout {
+        private static final int PENDING = 0, CANCELLED = 1, EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final TimerWheel timer;
+        private final Runnable task;
+        private final long deadline;
+        private volatile int state = PENDING;
+
+        // Wheel position, timer thread only
+        private long rounds;
+        private Bucket bucket;
+        private Timeout prev, next;
+
+        private Timeout(TimerWheel timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        // False if it already ran (or was cancelled before)
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, PENDING, CANCELLED)) return false;
+            timer.cancelled.add(this); // unlinked by the timer thread on its next tick
+            return true;
+        }
+
+        public boolean isExpired() { return state == EXPIRED; }
+
+        private void expire() {
+            if (!STATE.compareAndSet(this, PENDING, EXPIRED)) return;
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Log.error("Timer task failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,391 @@
+/**
+ * UserJournal.java
+ * --------------------------------------------------------------------------------------
+ * Assessment: CCS3320 Network Computing
+ * Student IDs: [CSY23077], [CSY23107]
+ * --------------------------------------------------------------------------------------
+ * Description:
+ * Persistence for the UserDatabase. The registered users live in two files:
+ *   - the snapshot (users.txt, one "user:pass" per line, same format as always)
+ *   - the journal (users.txt.journal), new registrations appended as checksummed records
+ * A single writer thread owns a long-lived FileChannel on the journal. Registrations are
+ * queued and written in batches (group commit): one write and at most one fsync for
+ * everything that arrived while the previous batch was on disk. Once the journal grows
+ * past a limit (or periodically) the writer renames it to users.txt.journal.compacting and
+ * starts a new one; a "user-journal-compact" thread then writes the old snapshot plus the
+ * renamed journal into a fresh snapshot and deletes the renamed file. So registrations
+ * don't wait for the rewrite, and only records that were written make it into the
+ * snapshot (never a registration still in the queue).
+ * A batch whose write or fsync fails is cut off the journal again before its registrations
+ * are refused, so a refused record never comes back on the next start. If even that fails
+ * the journal stops and refuses everything after it.
+ * On startup the snapshot is read through a memory map and both journals are replayed; a
+ * torn or corrupt journal tail left by a crash is cut off.
+ */
+
+package battleship;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+
+public class UserJournal {
+
+    // When a batch is forced to disk before its registrations are acknowledged
+    public enum FsyncPolicy {
+        ALWAYS,   // fsync every batch, a REGISTER_SUCCESS survives power loss
+        INTERVAL, // fsync at most every fsync-ms, acknowledged once written to the OS
+        NEVER     // leave it to the OS page cache
+    }
+
+    // Receives the records found on disk while recovering
+    public interface RecordSink { void accept(String user, String pass); }
+
+    private static final int HEADER = 8;               // int length + int crc32
+    private static final int MAX_RECORD = 64 * 1024;
+    private static final int MAP_CHUNK = 256 << 20;    // snapshot is mapped 256MB at a time
+
+    private final Path snapshotPath;
+    private final Path journalPath;
+    private final Path compactingPath; // a journal being folded into the snapshot
+    private final FsyncPolicy policy;
+    private final long fsyncIntervalNanos;
+    private final long compactBytes;
+    private final long compactIntervalNanos;
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private FileChannel channel;
+    private Thread writer;
+    private volatile boolean running = false;
+    private volatile boolean compacting = false;
+
+    private static final class Pending {
+        final String user, pass;
+        final CompletableFuture<Boolean> done = new CompletableFuture<>();
+        Pending(String user, String pass) { this.user = user; this.pass = pass; }
+    }
+
+    public UserJournal(String snapshotFile, FsyncPolicy policy, long fsyncIntervalMs,
+                       long compactBytes, long compactIntervalMs) {
+        this.snapshotPath = Paths.get(snapshotFile);
+        this.journalPath = Paths.get(snapshotFile + ".journal");
+        this.compactingPath = Paths.get(snapshotFile + ".journal.compacting");
+        this.policy = policy;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMs);
+        this.compactBytes = compactBytes;
+        this.compactIntervalNanos = TimeUnit.MILLISECONDS.toNanos(compactIntervalMs);
+    }
+
+    // Settings from ServerConfig: --fsync=always|interval|never --fsync-ms --compact-mb --compact-s
+    public static UserJournal fromConfig(String snapshotFile) {
+        FsyncPolicy policy = FsyncPolicy.valueOf(ServerConfig.get("fsync", "interval").toUpperCase());
+        return new UserJournal(snapshotFile, policy,
+                ServerConfig.getInt("fsync-ms", 50),
+                ServerConfig.getInt("compact-mb", 16) * 1024L * 1024L,
+                ServerConfig.getInt("compact-s", 600) * 1000L);
+    }
+
+    // Rough number of records on disk, used to presize the in-memory index
+    public long estimateRecords() {
+        try {
+            long bytes = 0;
+            for (Path path : new Path[]{snapshotPath, compactingPath, journalPath}) {
+                if (Files.exists(path)) bytes += Files.size(path);
+            }
+            return bytes / 16;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    // --- Recovery ---
+
+    // Reads the snapshot and replays the journals into sink (the one a crash left behind
+    // in the middle of a compaction first), then opens the journal for appending (after
+    // cutting off a torn tail). Returns the number of journal records.
+    public long recover(RecordSink sink) throws IOException {
+        if (!Files.exists(snapshotPath)) Files.createFile(snapshotPath);
+        loadSnapshot(sink);
+
+        long[] records = new long[1];
+        RecordSink counted = (user, pass) -> { records[0]++; sink.accept(user, pass); };
+        if (Files.exists(compactingPath)) {
+            try (FileChannel old = FileChannel.open(compactingPath, StandardOpenOption.READ)) { replay(old, counted); }
+        }
+        channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        long good = replay(channel, counted);
+        if (good < size) {
+            Log.warn("User journal: dropping {} bytes of torn/corrupt tail", size - good);
+            channel.truncate(good);
+            channel.force(true);
+        }
+        channel.position(good);
+        return records[0];
+    }
+
+    // Passes the journal's records to sink, returns where the last good one ends
+    private static long replay(FileChannel journal, RecordSink sink) throws IOException {
+        long good = 0;
+        long size = journal.size();
+        if (size == 0) return 0;
+        MappedByteBuffer map = journal.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        byte[] scratch = new byte[256];
+        CRC32 crc = new CRC32();
+        while (map.remaining() >= HEADER) {
+            int length = map.getInt();
+            int checksum = map.getInt();
+            if (length <= 0 || length > MAX_RECORD || length > map.remaining()) break;
+            if (scratch.length < length) scratch = new byte[length];
+            map.get(scratch, 0, length);
+            crc.reset();
+            crc.update(scratch, 0, length);
+            if ((int) crc.getValue() != checksum) break;
+            if (!acceptLine(scratch, 0, length, sink)) break;
+            good = map.position();
+        }
+        return good;
+    }
+
+    // Parses "user:pass" lines out of a memory map of the snapshot. The map is copied
+    // into a heap array a slice at a time so the line scan runs over a plain byte[].
+    private void loadSnapshot(RecordSink sink) throws IOException {
+        try (FileChannel in = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            long size = in.size();
+            byte[] slice = new byte[1 << 20];
+            int carried = 0; // bytes of an unfinished line at the start of slice
+            for (long position = 0; position < size; position += MAP_CHUNK) {
+                MappedByteBuffer map = in.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_CHUNK, size - position));
+                while (map.hasRemaining()) {
+                    if (carried == slice.length) slice = Arrays.copyOf(slice, slice.length * 2); // huge line
+                    int n = Math.min(map.remaining(), slice.length - carried);
+                    map.get(slice, carried, n);
+                    int end = carried + n;
+                    int lineStart = 0;
+                    for (int i = carried; i < end; i++) {
+                        if (slice[i] != '\n') continue;
+                        acceptLine(slice, lineStart, i - lineStart, sink);
+                        lineStart = i + 1;
+                    }
+                    carried = end - lineStart;
+                    System.arraycopy(slice, lineStart, slice, 0, carried);
+                }
+            }
+            if (carried > 0) acceptLine(slice, 0, carried, sink); // final line without a newline
+        }
+    }
+
+    // "user:pass" (an optional '\r' is ignored). Returns false for a malformed record.
+    private static boolean acceptLine(byte[] buf, int off, int len, RecordSink sink) {
+        if (len > 0 && buf[off + len - 1] == '\r') len--;
+        int colon = -1;
+        for (int i = off; i < off + len; i++) {
+            if (buf[i] == ':') { colon = i; break; }
+        }
+        if (colon <= off) return false;
+        sink.accept(new String(buf, off, colon - off, StandardCharsets.UTF_8),
+                new String(buf, colon + 1, off + len - colon - 1, StandardCharsets.UTF_8));
+        return true;
+    }
+
+    // --- Appending ---
+
+    public void start() {
+        running = true;
+        writer = new Thread(this::writeLoop, "user-journal");
+        writer.setDaemon(true);
+        writer.start();
+        if (Files.exists(compactingPath)) startCompaction(); // left over from a crash
+    }
+
+    // Queues a record, the future completes once its batch has been written
+    // (and forced to disk with FsyncPolicy.ALWAYS); false if the write failed.
+    public CompletableFuture<Boolean> append(String user, String pass) {
+        Pending pending = new Pending(user, pass);
+        if (!running) { pending.done.complete(false); return pending.done; }
+        queue.add(pending);
+        if (!running && queue.remove(pending)) pending.done.complete(false); // stopped meanwhile
+        return pending.done;
+    }
+
+    // Writes what is left and forces it to disk. A compaction still running is left to
+    // finish on the next start.
+    public void close() {
+        running = false;
+        if (writer != null) {
+            // No interrupt(): it would close the FileChannel under the writer
+            try { writer.join(5000); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        }
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        CRC32 crc = new CRC32();
+        long lastSync = System.nanoTime();
+        long lastCompaction = System.nanoTime();
+        boolean dirty = false;
+
+        while (running || !queue.isEmpty()) {
+            long mark = -1; // where the batch starts in the journal
+            try {
+                Pending first = queue.poll(10, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch);
+                    mark = channel.position();
+                    buffer = writeBatch(batch, buffer, crc);
+                    dirty = true;
+                }
+                long now = System.nanoTime();
+                if (dirty && (policy == FsyncPolicy.ALWAYS || (policy == FsyncPolicy.INTERVAL && now - lastSync >= fsyncIntervalNanos))) {
+                    channel.force(false);
+                    dirty = false;
+                    lastSync = now;
+                }
+                for (Pending p : batch) p.done.complete(true);
+                batch.clear();
+
+                if (!compacting && (channel.size() >= compactBytes || (channel.size() > 0 && now - lastCompaction >= compactIntervalNanos))) {
+                    rotate();
+                    dirty = false;
+                    lastCompaction = System.nanoTime();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                Log.error("User journal write failed", e);
+                // Appending after a torn record would lose everything after it on replay,
+                // and a batch refused while it is still on disk would come back on restart
+                if (!cutBack(mark) || !channel.isOpen()) {
+                    Log.error("User journal stopped, registrations are refused until a restart");
+                    running = false;
+                    queue.drainTo(batch);
+                }
+                for (Pending p : batch) p.done.complete(false);
+                batch.clear();
+            }
+        }
+        try {
+            channel.force(true);
+            channel.close();
+        } catch (IOException e) {
+            Log.error("User journal close failed", e);
+        }
+    }
+
+    // Takes the journal back to `mark` (-1: nothing of the batch was written)
+    private boolean cutBack(long mark) {
+        if (mark < 0) return true;
+        try {
+            channel.truncate(mark);
+            channel.position(mark);
+            channel.force(false);
+            return true;
+        } catch (IOException e) {
+            Log.error("User journal could not cut off a failed batch", e);
+            return false;
+        }
+    }
+
+    // Encodes the whole batch into one buffer and writes it with as few syscalls as possible
+    private ByteBuffer writeBatch(List<Pending> batch, ByteBuffer buffer, CRC32 crc) throws IOException {
+        buffer.clear();
+        for (Pending p : batch) {
+            byte[] record = (p.user + ":" + p.pass).getBytes(StandardCharsets.UTF_8);
+            if (buffer.remaining() < HEADER + record.length) {
+                if (buffer.position() > 0) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) channel.write(buffer);
+                    buffer.clear();
+                }
+                if (buffer.capacity() < HEADER + record.length) buffer = ByteBuffer.allocateDirect(HEADER + record.length);
+            }
+            crc.reset();
+            crc.update(record, 0, record.length);
+            buffer.putInt(record.length).putInt((int) crc.getValue()).put(record);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        return buffer;
+    }
+
+    // Writer thread: hands the journal to the compaction and starts an empty one. A
+    // journal whose compaction failed is retried first, the current one keeps growing.
+    private void rotate() throws IOException {
+        if (!Files.exists(compactingPath)) {
+            channel.force(true);
+            channel.close();
+            try {
+                Files.move(journalPath, compactingPath, StandardCopyOption.ATOMIC_MOVE);
+            } finally { // the new journal, or the old one again if it could not be moved
+                channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                channel.position(channel.size());
+            }
+        }
+        startCompaction();
+    }
+
+    private void startCompaction() {
+        compacting = true;
+        Thread thread = new Thread(this::compact, "user-journal-compact");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Writes the snapshot and the renamed journal to a new snapshot, swaps it in atomically,
+    // then deletes the renamed journal. A crash in between only means some records exist
+    // in both files, which replays fine.
+    private void compact() {
+        long start = System.nanoTime();
+        Path tmp = Paths.get(snapshotPath + ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 FileChannel in = FileChannel.open(snapshotPath, StandardOpenOption.READ);
+                 FileChannel journal = FileChannel.open(compactingPath, StandardOpenOption.READ)) {
+                long size = in.size();
+                for (long done = 0; done < size; ) done += in.transferTo(done, size - done, out);
+                BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(out), StandardCharsets.UTF_8), 1 << 16);
+                if (size > 0 && !endsWithNewline(in, size)) bw.newLine();
+                IOException[] failure = new IOException[1];
+                replay(journal, (user, pass) -> {
+                    if (failure[0] != null) return;
+                    try {
+                        bw.write(user);
+                        bw.write(':');
+                        bw.write(pass);
+                        bw.newLine();
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                });
+                if (failure[0] != null) throw failure[0];
+                bw.flush();
+                out.force(true);
+            }
+            Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(compactingPath);
+            Log.info("User journal compacted in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException e) {
+            Log.error("User journal compaction failed", e);
+        } finally {
+            compacting = false;
+        }
+    }
+
+    private static boolean endsWithNewline(FileChannel in, long size) throws IOException {
+        ByteBuffer last = ByteBuffer.allocate(1);
+        in.read(last, size - 1);
+        return last.get(0) == '\n';
+    }
+}